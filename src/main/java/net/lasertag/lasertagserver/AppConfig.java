@@ -1,13 +1,30 @@
 package net.lasertag.lasertagserver;
 
+import net.lasertag.lasertagserver.core.DaemonThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ThreadFactory;
+
 @Configuration
 public class AppConfig {
+
+	// same switch Spring Boot uses for Tomcat and @Scheduled, so one property flips the whole server
+	@Value("${spring.threads.virtual.enabled:false}")
+	private boolean virtualThreads;
+
+	// short background jobs only, such as saving state or an archive write
 	@Bean(name = "daemonExecutor")
-	public ThreadPoolTaskExecutor daemonExecutor() {
+	public AsyncTaskExecutor daemonExecutor() {
+		if (virtualThreads) {
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Async-");
+			executor.setVirtualThreads(true);
+			return executor;
+		}
 		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
 		executor.setCorePoolSize(4);
 		executor.setMaxPoolSize(10);
@@ -18,4 +35,21 @@ public class AppConfig {
 		return executor;
 	}
 
+	// a thread of its own for each loop that runs as long as the server, so none of them holds a pool thread
+	@Bean(name = "loopThreadFactory")
+	public ThreadFactory loopThreadFactory() {
+		if (virtualThreads) {
+			return Thread.ofVirtual().name("Loop-", 1).factory();
+		}
+		return new DaemonThreadFactory("Loop-");
+	}
+
+	@Bean(name = "schedulerThreadFactory")
+	public ThreadFactory schedulerThreadFactory() {
+		if (virtualThreads) {
+			return Thread.ofVirtual().name("DaemonScheduler", 1).factory();
+		}
+		return new DaemonThreadFactory("DaemonScheduler");
+	}
+
 }
@@ -0,0 +1,162 @@
+package net.lasertag.lasertagserver;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.core.*;
+import net.lasertag.lasertagserver.history.MatchHistory;
+import net.lasertag.lasertagserver.replay.MatchRecorder;
+import net.lasertag.lasertagserver.replication.ReplicationRole;
+import net.lasertag.lasertagserver.replication.ReplicationService;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import net.lasertag.lasertagserver.telemetry.PacketInspector;
+import net.lasertag.lasertagserver.telemetry.Tracer;
+import net.lasertag.lasertagserver.web.SseEventService;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The web app's side of {@link LasertagEngine}: builds it, the match history, the recorder and replication from
+ * {@code lasertag.*} properties, exposes the engine's parts as beans for the controllers, plugs in the SSE console, the
+ * match history and every {@link MatchObserver} bean, and starts it, then replication, once all singletons exist
+ * (before the web server accepts requests).
+ */
+@Configuration
+@Slf4j
+public class EngineConfiguration {
+
+	@Bean(destroyMethod = "close")
+	public LasertagEngine lasertagEngine(@Qualifier("daemonExecutor") AsyncTaskExecutor daemonExecutor,
+										 @Qualifier("loopThreadFactory") ThreadFactory loopThreadFactory,
+										 @Qualifier("schedulerThreadFactory") ThreadFactory schedulerThreadFactory,
+										 @Value("${lasertag.presets.directory:presets}") String presetsDirectory,
+										 @Value("${lasertag.log.packets:false}") boolean logPackets,
+										 @Value("${lasertag.outbound.rate-per-second:100}") int outboundRatePerSecond,
+										 @Value("${lasertag.outbound.burst:20}") int outboundBurst,
+										 @Value("${lasertag.ingress.duplicate-window-ms:500}") long duplicateWindowMillis,
+										 @Value("${lasertag.reconnect.resync-after-ms:3000}") long resyncAfterMillis,
+										 @Value("${lasertag.replication.role:none}") ReplicationRole replicationRole,
+										 @Value("${lasertag.startup.first-packet-budget-ms:0}") long firstPacketBudgetMillis) {
+		var config = new EngineConfig(Path.of(presetsDirectory), logPackets, outboundRatePerSecond, outboundBurst,
+			duplicateWindowMillis, resyncAfterMillis, replicationRole == ReplicationRole.STANDBY, firstPacketBudgetMillis);
+		var engine = new LasertagEngine(config, daemonExecutor, loopThreadFactory, schedulerThreadFactory);
+		if (daemonExecutor instanceof ThreadPoolTaskExecutor pool) {
+			engine.getMetrics().registerGauge("lasertag_daemon_executor_queue_depth", () -> pool.getThreadPoolExecutor().getQueue().size());
+		}
+		return engine;
+	}
+
+	@Bean(initMethod = "init", destroyMethod = "close")
+	public MatchHistory matchHistory(LasertagEngine engine, @Qualifier("daemonExecutor") AsyncTaskExecutor daemonExecutor,
+									 @Value("${lasertag.history.file:history/matches.ltmh}") String archiveFile) {
+		return new MatchHistory(engine.getActorRegistry(), daemonExecutor, Path.of(archiveFile));
+	}
+
+	@Bean(initMethod = "init")
+	public MatchRecorder matchRecorder(LasertagEngine engine, @Qualifier("daemonExecutor") AsyncTaskExecutor daemonExecutor,
+									   @Value("${lasertag.replay.directory:replays}") String directory) {
+		return new MatchRecorder(engine.getActorRegistry(), daemonExecutor, Path.of(directory));
+	}
+
+	@Bean(destroyMethod = "close")
+	public ReplicationService replicationService(LasertagEngine engine,
+												 @Qualifier("loopThreadFactory") ThreadFactory loopThreadFactory,
+												 @Value("${lasertag.replication.role:none}") ReplicationRole role,
+												 @Value("${lasertag.replication.host:127.0.0.1}") String host,
+												 @Value("${lasertag.replication.port:9879}") int port,
+												 @Value("${lasertag.replication.failover-after-ms:600}") int failoverAfterMillis) {
+		return new ReplicationService(role, host, port, failoverAfterMillis, engine.getGame(), engine.getActorRegistry(),
+			engine.getGameSettings(), engine.getUdpServer(), engine.getMetrics(), loopThreadFactory);
+	}
+
+	@Bean
+	public SmartInitializingSingleton lasertagEngineStarter(LasertagEngine engine, SseEventService sseEventService,
+															MatchHistory matchHistory, List<MatchObserver> matchObservers,
+															ReplicationService replicationService) {
+		return () -> {
+			engine.setConsole(sseEventService);
+			engine.setMatchArchiver(matchHistory);
+			engine.setMatchObservers(matchObservers);
+			try {
+				engine.start();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			// after the engine has loaded its own state, or that would overwrite what a standby got from the primary
+			replicationService.start();
+		};
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void logLanIp() {
+		String webConsoleUrl = "http://" + LanIpUtils.findLanIp().orElse("<unknown>") + ":8080";
+		log.info("Web console is available at: {}", webConsoleUrl);
+	}
+
+	@Bean
+	public Metrics metrics(LasertagEngine engine) {
+		return engine.getMetrics();
+	}
+
+	@Bean
+	public Tracer tracer(LasertagEngine engine) {
+		return engine.getTracer();
+	}
+
+	@Bean
+	public PacketInspector packetInspector(LasertagEngine engine) {
+		return engine.getPacketInspector();
+	}
+
+	@Bean
+	public ActorRegistry actorRegistry(LasertagEngine engine) {
+		return engine.getActorRegistry();
+	}
+
+	@Bean
+	public PresetRepository presetRepository(LasertagEngine engine) {
+		return engine.getPresetRepository();
+	}
+
+	@Bean
+	public GameSettings gameSettings(LasertagEngine engine) {
+		return engine.getGameSettings();
+	}
+
+	@Bean
+	public UdpServer udpServer(LasertagEngine engine) {
+		return engine.getUdpServer();
+	}
+
+	@Bean
+	public MatchAnalytics matchAnalytics(LasertagEngine engine) {
+		return engine.getMatchAnalytics();
+	}
+
+	@Bean
+	public PlayerTimeSeries playerTimeSeries(LasertagEngine engine) {
+		return engine.getPlayerTimeSeries();
+	}
+
+	@Bean
+	public Game game(LasertagEngine engine) {
+		return engine.getGame();
+	}
+
+	@Bean
+	public MatchQueue matchQueue(LasertagEngine engine) {
+		return engine.getMatchQueue();
+	}
+
+}
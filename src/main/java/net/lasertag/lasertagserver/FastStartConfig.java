@@ -0,0 +1,28 @@
+package net.lasertag.lasertagserver;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * With the {@code fast-start} profile everything is lazily initialized (see {@code application-fast-start.properties})
+ * except the engine and the beans it is started with, so devices are served before the web console has created its
+ * controllers and MVC infrastructure; those are built on the first request instead.
+ */
+@Configuration
+@Profile(LasertagServerApplication.FAST_START_PROFILE)
+public class FastStartConfig {
+
+	private static final String APP_PACKAGE = "net.lasertag.lasertagserver";
+	private static final String WEB_PACKAGE = APP_PACKAGE + ".web";
+
+	@Bean
+	public static LazyInitializationExcludeFilter eagerEngineBeans() {
+		return (beanName, beanDefinition, beanType) -> {
+			String packageName = beanType.getPackageName();
+			return packageName.startsWith(APP_PACKAGE) && !packageName.startsWith(WEB_PACKAGE);
+		};
+	}
+
+}
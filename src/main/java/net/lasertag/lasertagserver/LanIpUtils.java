@@ -33,6 +33,19 @@ public final class LanIpUtils {
 		return Optional.empty();
 	}
 
+	public static Optional<NetworkInterface> findLanInterface() {
+		Optional<String> lanIp = findLanIp();
+		if (lanIp.isEmpty()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.ofNullable(NetworkInterface.getByInetAddress(InetAddress.getByName(lanIp.get())));
+		}
+		catch (Exception e) {
+			return Optional.empty();
+		}
+	}
+
 	private static List<InetAddress> findCandidateIpv4Addresses() {
 		List<InetAddress> result = new ArrayList<>();
 
@@ -5,18 +5,28 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 import javax.swing.*;
+import java.util.Arrays;
 
 @SpringBootApplication
 @EnableScheduling
 public class LasertagServerApplication {
 
-	public static void main(String[] args) throws Exception {
-		UIManager.setLookAndFeel(
-			UIManager.getSystemLookAndFeelClassName());
+	public static final String FAST_START_PROFILE = "fast-start";
 
+	public static void main(String[] args) throws Exception {
 		SpringApplicationBuilder builder = new SpringApplicationBuilder(LasertagServerApplication.class);
-		builder.headless(false);
+		if (!isFastStart()) {
+			// loading Swing costs a few hundred ms, a fast start skips it
+			UIManager.setLookAndFeel(
+				UIManager.getSystemLookAndFeelClassName());
+			builder.headless(false);
+		}
 		builder.run(args);
 	}
 
+	private static boolean isFastStart() {
+		String profiles = System.getProperty("spring.profiles.active", System.getenv("SPRING_PROFILES_ACTIVE"));
+		return profiles != null && Arrays.asList(profiles.split(",")).contains(FAST_START_PROFILE);
+	}
+
 }
@@ -2,28 +2,35 @@ package net.lasertag.lasertagserver.core;
 
 import lombok.Getter;
 import net.lasertag.lasertagserver.model.*;
-import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-@Component
 @Getter
 public class ActorRegistry {
 
 	private final List<Actor> actors = new ArrayList<>();
+	// actors indexed by type ordinal and id, for lookups on the packet path
+	private final Actor[][] actorsByType = new Actor[Actor.Type.values().length][];
+	private final Zone[] zones = new Zone[ZONE_COUNT];
 
 	public static final int PLAYER_COUNT = 6; // should be configurable
 	public static final int RESPAWN_POINT_COUNT = PLAYER_COUNT;
+	public static final int ZONE_COUNT = 4;
 
 	private List<Integer> respawnPointsIds = new ArrayList<>(RESPAWN_POINT_COUNT);
-	private final Map<Integer, Integer> teamScores = new HashMap<>();
+	public static final int TEAM_COUNT = Messaging.TEAM_CYAN + 1;
+	// indexed by team id, -1 for a team without players in the match; written by the game, read by the web and replication threads
+	private final int[] teamScores = new int[TEAM_COUNT];
+	private final ReentrantLock teamScoreLock = new ReentrantLock();
 
 	public ActorRegistry() {// this should be in config screen before running the game
 		for (int i = 0; i < PLAYER_COUNT; i++) {
 			actors.add(new Player(i, "Player-%d".formatted(i), 100));
 		}
+		Arrays.fill(teamScores, -1);
 		for (int i = 0; i < RESPAWN_POINT_COUNT; i++) {
 			respawnPointsIds.add(i);
 		}
@@ -31,6 +38,15 @@ public class ActorRegistry {
 			actors.add(new Dispenser(i, Actor.Type.AMMO));
 			actors.add(new Dispenser(i, Actor.Type.HEALTH));
 		}
+		for (int i = 0; i < ZONE_COUNT; i++) {
+			zones[i] = new Zone(i);
+			actors.add(zones[i]);
+		}
+		for (Actor.Type type : Actor.Type.values()) {
+			var ofType = streamByType(type).toList();
+			actorsByType[type.ordinal()] = new Actor[ofType.stream().mapToInt(Actor::getId).max().orElse(-1) + 1];
+			ofType.forEach(actor -> actorsByType[type.ordinal()][actor.getId()] = actor);
+		}
 	}
 
 	public Stream<Actor> streamByType(Actor.Type type) {
@@ -52,42 +68,104 @@ public class ActorRegistry {
 	}
 
 	public Actor getActorByTypeAndId(Actor.Type type, int id) {
-		return actors.stream()
-			.filter(actor -> actor.getType() == type && actor.getId() == id)
-			.findFirst()
-			.orElseThrow(() -> new NoSuchElementException("Actor not found: type:" + type + ", id: " + id));
+		var actor = findActor(type, id);
+		if (actor == null) {
+			throw new NoSuchElementException("Actor not found: type:" + type + ", id: " + id);
+		}
+		return actor;
 	}
 
-	public Actor getActorByMessage(Messaging.MessageFromClient message) {
-		var id = message.getActorId();
-		var type = message.getTypeId();
-		if (type == MessageType.HEALTH_DISPENSER_PING.id()) {
-			return getActorByTypeAndId(Actor.Type.HEALTH, id);
-		} else if (type == MessageType.AMMO_DISPENSER_PING.id()) {
-			return getActorByTypeAndId(Actor.Type.AMMO, id);
-		} else {
-			return getActorByTypeAndId(Actor.Type.PLAYER, id);
-		}
+	/**
+	 * The actor of that type and id, or null if there is none.
+	 */
+	public Actor findActor(Actor.Type type, int id) {
+		var ofType = actorsByType[type.ordinal()];
+		return id >= 0 && id < ofType.length ? ofType[id] : null;
 	}
 
 	public LinkedHashMap<Integer, Integer> getTeamScores() {
 		// teamId -> score, sorted by highest score
-		return teamScores.entrySet().stream()
-			.sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-			.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+		int[] scores = copyTeamScores();
+		var sorted = new LinkedHashMap<Integer, Integer>();
+		IntStream.range(0, TEAM_COUNT)
+			.filter(team -> scores[team] >= 0)
+			.boxed()
+			.sorted(Comparator.comparingInt((Integer team) -> scores[team]).reversed())
+			.forEach(team -> sorted.put(team, scores[team]));
+		return sorted;
+	}
+
+	/**
+	 * Every team's score at one instant, indexed by team id, -1 for a team not in play.
+	 */
+	public int[] copyTeamScores() {
+		teamScoreLock.lock();
+		try {
+			return teamScores.clone();
+		} finally {
+			teamScoreLock.unlock();
+		}
 	}
 
-	public void incrementTeamScore(int teamId) {
-		teamScores.merge(teamId, 1, Integer::sum);
+	/**
+	 * Adds to a team's score and returns the new one, or -1 for a team id out of range. A team that had no players at
+	 * the start of the match starts from 0.
+	 */
+	public int addTeamScore(int teamId, int points) {
+		if (teamId < 0 || teamId >= TEAM_COUNT) {
+			return -1;
+		}
+		teamScoreLock.lock();
+		try {
+			teamScores[teamId] = Math.max(0, teamScores[teamId]) + points;
+			return teamScores[teamId];
+		} finally {
+			teamScoreLock.unlock();
+		}
+	}
+
+	/**
+	 * Score of a team in play, or -1 if the team has no score entry.
+	 */
+	public int getTeamScore(int teamId) {
+		if (teamId < 0 || teamId >= TEAM_COUNT) {
+			return -1;
+		}
+		teamScoreLock.lock();
+		try {
+			return teamScores[teamId];
+		} finally {
+			teamScoreLock.unlock();
+		}
+	}
+
+	/**
+	 * Sets a team's score as replicated from a primary, -1 removes the team.
+	 */
+	public void restoreTeamScore(int teamId, int score) {
+		if (teamId < 0 || teamId >= TEAM_COUNT) {
+			return;
+		}
+		teamScoreLock.lock();
+		try {
+			teamScores[teamId] = Math.max(-1, score);
+		} finally {
+			teamScoreLock.unlock();
+		}
 	}
 
 	public void resetTeamScores() {
-		teamScores.clear();
-		// Initialize scores for all teams that have players
-		streamPlayers()
-			.map(Player::getTeamId)
-			.distinct()
-			.forEach(teamId -> teamScores.put(teamId, 0));
+		teamScoreLock.lock();
+		try {
+			Arrays.fill(teamScores, -1);
+			// Initialize scores for all teams that have players, settings only let known teams through
+			streamPlayers()
+				.mapToInt(Player::getTeamId)
+				.filter(teamId -> teamId >= 0 && teamId < TEAM_COUNT)
+				.forEach(teamId -> teamScores[teamId] = 0);
+		} finally {
+			teamScoreLock.unlock();
+		}
 	}
 
 	public Player getPlayerById(int id) {
@@ -105,13 +183,18 @@ public class ActorRegistry {
 	}
 
 	public int getLeadTeam() {
-		var teamScores = getTeamScores();
-		var maxScore = teamScores.values().stream().max(Integer::compareTo).orElse(0);
-		var leadTeams = teamScores.entrySet().stream()
-			.filter(entry -> Objects.equals(entry.getValue(), maxScore))
-			.map(Map.Entry::getKey)
-			.toList();
-		return leadTeams.size() == 1 ? leadTeams.get(0) : -1;
+		int[] scores = copyTeamScores();
+		int leadTeam = -1;
+		int maxScore = -1;
+		for (int team = 0; team < TEAM_COUNT; team++) {
+			if (scores[team] > maxScore) {
+				maxScore = scores[team];
+				leadTeam = team;
+			} else if (scores[team] == maxScore && maxScore >= 0) {
+				leadTeam = -1;
+			}
+		}
+		return leadTeam;
 	}
 
 	public List<Integer> shuffledRespawnPointIds() {
@@ -0,0 +1,149 @@
+package net.lasertag.lasertagserver.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands console updates to a thread of their own, so the SSE fan-out to every browser never runs on the UDP thread
+ * or under the match lock. Updates of one kind are coalesced: a slow console gets the latest state when it catches
+ * up rather than every step in between.
+ */
+public class ConsoleSender implements GameConsole {
+
+	private static final Logger log = LoggerFactory.getLogger(ConsoleSender.class);
+
+	private volatile GameConsole target = GameConsole.NONE;
+	private volatile boolean running;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition pending = lock.newCondition();
+	// the latest update of each kind not sent yet
+	private boolean refreshPending;
+	private boolean isPlaying;
+	private boolean timeLeftPending;
+	private int timeLeft;
+	private Object analytics;
+	private Map<String, List<Integer>> cooling;
+
+	public void setTarget(GameConsole target) {
+		this.target = target;
+	}
+
+	public void start(ThreadFactory threadFactory) {
+		running = true;
+		threadFactory.newThread(this::run).start();
+	}
+
+	public void stop() {
+		lock.lock();
+		try {
+			running = false;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void refreshUI(boolean isPlaying) {
+		lock.lock();
+		try {
+			this.refreshPending = true;
+			this.isPlaying = isPlaying;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void sendGameTimeLeft(int timeLeft) {
+		lock.lock();
+		try {
+			this.timeLeftPending = true;
+			this.timeLeft = timeLeft;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void sendAnalyticsUpdate(Object analytics) {
+		lock.lock();
+		try {
+			this.analytics = analytics;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// every pickup produces one, so they are coalesced like the rest
+	@Override
+	public void sendDispenserCooldowns(Map<String, List<Integer>> cooling) {
+		lock.lock();
+		try {
+			this.cooling = cooling;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void run() {
+		while (true) {
+			boolean refresh;
+			boolean playing;
+			boolean sendTimeLeft;
+			int time;
+			Object analyticsToSend;
+			Map<String, List<Integer>> coolingToSend;
+			lock.lock();
+			try {
+				while (running && !refreshPending && !timeLeftPending && analytics == null && cooling == null) {
+					pending.awaitUninterruptibly();
+				}
+				if (!running) {
+					return;
+				}
+				refresh = refreshPending;
+				playing = isPlaying;
+				sendTimeLeft = timeLeftPending;
+				time = timeLeft;
+				analyticsToSend = analytics;
+				coolingToSend = cooling;
+				refreshPending = false;
+				timeLeftPending = false;
+				analytics = null;
+				cooling = null;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				var console = target;
+				if (refresh) {
+					console.refreshUI(playing);
+				}
+				if (sendTimeLeft) {
+					console.sendGameTimeLeft(time);
+				}
+				if (analyticsToSend != null) {
+					console.sendAnalyticsUpdate(analyticsToSend);
+				}
+				if (coolingToSend != null) {
+					console.sendDispenserCooldowns(coolingToSend);
+				}
+			} catch (RuntimeException e) {
+				log.error("Console update failed: {}", e.getMessage(), e);
+			}
+		}
+	}
+
+}
@@ -1,11 +1,13 @@
 package net.lasertag.lasertagserver.core;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DaemonThreadFactory implements ThreadFactory {
 
 	private final String name;
-	private int counter = 0;
+	// loop threads are created from several threads
+	private final AtomicInteger counter = new AtomicInteger();
 
 	public DaemonThreadFactory(String name) {
 		this.name = name;
@@ -15,7 +17,7 @@ public class DaemonThreadFactory implements ThreadFactory {
 	public Thread newThread(Runnable r) {
 		Thread t = new Thread(r);
 		t.setDaemon(true);
-		t.setName(name + (++counter));
+		t.setName(name + counter.incrementAndGet());
 		return t;
 	}
 }
@@ -0,0 +1,167 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The server's own view of every dispenser's cooldown, so a GOT_HEALTH or GOT_AMMO that arrives before the dispenser
+ * is ready again is rejected before anything is sent. Cooldowns and usage counters live in flat arrays indexed by
+ * dispenser kind and id; checking, starting a cooldown and counting a use are a few array reads and writes.
+ * <p>
+ * Everything starts over with each match. {@link #expire} runs once a second and reports whether any cooldown has
+ * ended since, so the console can be told.
+ */
+public class DispenserCooldowns {
+
+	public record DispenserStats(Actor.Type type, int id, long uses, long rejectedUses, double utilization) {}
+
+	// dispensers are sent their timeout in these steps and enforce it rounded down, see UdpServer#sendSettingsToDispenser
+	public static final int TIMEOUT_STEP_SECONDS = 10;
+
+	private static final Actor.Type[] KINDS = {Actor.Type.HEALTH, Actor.Type.AMMO};
+
+	private final int slotsPerKind;
+	private final ReentrantLock lock = new ReentrantLock();
+	// 0 once the dispenser is ready and that was reported
+	private final long[] readyAtMillis;
+	private final long[] uses;
+	private final long[] rejectedUses;
+	private final long[] cooldownMillis;
+	private long since = System.currentTimeMillis();
+
+	public DispenserCooldowns(ActorRegistry actorRegistry) {
+		int slots = 0;
+		for (Actor.Type kind : KINDS) {
+			slots = Math.max(slots, actorRegistry.getActorCountByType(kind));
+		}
+		this.slotsPerKind = slots;
+		this.readyAtMillis = new long[KINDS.length * slots];
+		this.uses = new long[KINDS.length * slots];
+		this.rejectedUses = new long[KINDS.length * slots];
+		this.cooldownMillis = new long[KINDS.length * slots];
+	}
+
+	/**
+	 * Returns why the dispenser cannot be used yet, counting the attempt, or null if it is ready.
+	 */
+	public String checkReady(Actor.Type type, int id, long now) {
+		int slot = slot(type, id);
+		lock.lock();
+		try {
+			long remaining = readyAtMillis[slot] - now;
+			if (remaining <= 0) {
+				return null;
+			}
+			rejectedUses[slot]++;
+			return type.name().toLowerCase() + " dispenser " + id + " is cooling down for " + (remaining + 999) / 1000 + " s";
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts the cooldown the dispenser itself runs for the configured timeout, which is that rounded down to
+	 * {@link #TIMEOUT_STEP_SECONDS}.
+	 */
+	public void startCooldown(Actor.Type type, int id, int timeoutSeconds, long now) {
+		int slot = slot(type, id);
+		long timeoutMillis = timeoutSeconds / TIMEOUT_STEP_SECONDS * TIMEOUT_STEP_SECONDS * 1000L;
+		lock.lock();
+		try {
+			readyAtMillis[slot] = now + timeoutMillis;
+			uses[slot]++;
+			cooldownMillis[slot] += timeoutMillis;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Clears the cooldowns that have run out; true if there were any.
+	 */
+	public boolean expire(long now) {
+		boolean expired = false;
+		lock.lock();
+		try {
+			for (int slot = 0; slot < readyAtMillis.length; slot++) {
+				if (readyAtMillis[slot] != 0 && readyAtMillis[slot] <= now) {
+					readyAtMillis[slot] = 0;
+					expired = true;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return expired;
+	}
+
+	/**
+	 * Ids of the dispensers still cooling down, keyed like {@link ActorRegistry#getOnlineDispensers()}.
+	 */
+	public Map<String, List<Integer>> getCooling(long now) {
+		List<Integer> health = new ArrayList<>();
+		List<Integer> ammo = new ArrayList<>();
+		lock.lock();
+		try {
+			for (int id = 0; id < slotsPerKind; id++) {
+				if (readyAtMillis[slot(Actor.Type.HEALTH, id)] > now) {
+					health.add(id);
+				}
+				if (readyAtMillis[slot(Actor.Type.AMMO, id)] > now) {
+					ammo.add(id);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return Map.of("health", health, "ammo", ammo);
+	}
+
+	/**
+	 * Uses, early uses rejected and the share of the match each dispenser spent cooling down.
+	 */
+	public List<DispenserStats> getStats(long now) {
+		List<DispenserStats> stats = new ArrayList<>(readyAtMillis.length);
+		lock.lock();
+		try {
+			long elapsed = Math.max(1, now - since);
+			for (Actor.Type kind : KINDS) {
+				for (int id = 0; id < slotsPerKind; id++) {
+					int slot = slot(kind, id);
+					// the part of a running cooldown that is still ahead does not count yet
+					long cooled = cooldownMillis[slot] - Math.max(0, readyAtMillis[slot] - now);
+					stats.add(new DispenserStats(kind, id, uses[slot], rejectedUses[slot], Math.min(1.0, (double) cooled / elapsed)));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return stats;
+	}
+
+	/**
+	 * Makes every dispenser ready and starts the counters over, at the start of a match.
+	 */
+	public void reset(long now) {
+		lock.lock();
+		try {
+			Arrays.fill(readyAtMillis, 0);
+			Arrays.fill(uses, 0);
+			Arrays.fill(rejectedUses, 0);
+			Arrays.fill(cooldownMillis, 0);
+			since = now;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int slot(Actor.Type type, int id) {
+		return (type == Actor.Type.HEALTH ? 0 : slotsPerKind) + id;
+	}
+
+}
@@ -0,0 +1,26 @@
+package net.lasertag.lasertagserver.core;
+
+import java.nio.file.Path;
+
+/**
+ * Everything {@link LasertagEngine} is configured with. The web app fills it from {@code lasertag.*} properties;
+ * {@link #defaults()} matches the shipped {@code application.properties}.
+ *
+ * @param presetsDirectory        preset JSON files, cached and watched
+ * @param logPackets              log every gameplay datagram as text
+ * @param outboundRatePerSecond   per-destination budget for EVENT and STATE datagrams
+ * @param outboundBurst           burst allowance on top of the rate
+ * @param duplicateWindowMillis   identical packets from one actor within this window are re-sends
+ * @param resyncAfterMillis       a device silent this long is resynced on its next packet
+ * @param standby                 leave the device port unbound until a hot standby takes over
+ * @param firstPacketBudgetMillis warn when the first device packet is processed later than this after JVM start,
+ *                                0 only reports it
+ */
+public record EngineConfig(Path presetsDirectory, boolean logPackets, int outboundRatePerSecond, int outboundBurst,
+						   long duplicateWindowMillis, long resyncAfterMillis, boolean standby, long firstPacketBudgetMillis) {
+
+	public static EngineConfig defaults() {
+		return new EngineConfig(Path.of("presets"), false, 100, 20, 500, 3000, false, 0);
+	}
+
+}
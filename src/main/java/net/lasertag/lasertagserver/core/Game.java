@@ -1,116 +1,187 @@
 package net.lasertag.lasertagserver.core;
 
 import lombok.Getter;
+import lombok.Setter;
 import net.lasertag.lasertagserver.model.*;
-import net.lasertag.lasertagserver.web.SseEventService;
+import net.lasertag.lasertagserver.rules.RuleContext;
+import net.lasertag.lasertagserver.rules.RuleEngine;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import net.lasertag.lasertagserver.telemetry.Tracer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.stereotype.Component;
-
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-
-@Component
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The match: applies device events and console commands to the actors and tells the devices, the console and the
+ * {@link MatchObserver}s what changed. How a mode scores is left to the rule modules of its {@link RuleEngine},
+ * which act on the match through a {@link RuleContext}. The console, observers and archiver are plugged in by
+ * {@link LasertagEngine} before it starts.
+ * <p>
+ * Device events arrive on the UDP thread, rule ticks and the clock on the scheduler and console commands on web
+ * threads; all of them change scores and start or end the match under {@code matchLock}, so a match ends once.
+ */
 @Getter
 public class Game implements GameEventsListener {
 	private static final Logger log = LoggerFactory.getLogger(Game.class);
 
+	/**
+	 * Reads or writes the match state as a whole, see {@link #withMatchLock}.
+	 */
+	public interface MatchStateAccess {
+		void run() throws IOException;
+	}
+
 	public static final int MAX_HEALTH = 100;
+	// GAME_OVER goes out this long after a match ends
+	public static final long GAME_OVER_DELAY_MILLIS = 1000;
 
 	private final ActorRegistry actorRegistry;
 	private final UdpServer udpServer;
-	private final SseEventService sseEventService;
 	private final GameSettings gameSettings;
-	private final ScheduledExecutorService scheduler =
-		Executors.newScheduledThreadPool(2, new DaemonThreadFactory("DaemonScheduler"));
+	private final ScheduledExecutorService scheduler;
+	private final Tracer tracer;
+	private final MatchAnalytics matchAnalytics;
+	private final RuleEngine ruleEngine;
+	private final DispenserCooldowns dispenserCooldowns;
+	private final Rules rules = new Rules();
+	private final ReentrantLock matchLock = new ReentrantLock();
+	@Setter
+	private GameConsole console = GameConsole.NONE;
+	private MatchObserver matchObservers;
+	@Setter
+	private MatchArchiver matchArchiver = MatchArchiver.NONE;
 
 		
 	private volatile boolean isGamePlaying = false;
 	private int timeLeftSeconds = 0;
+	// set when a rule changed a team score or a zone owner, a rule tick refreshes the console once afterwards
+	private boolean rulesChangedScores;
 
-	public Game(ActorRegistry actorRegistry, UdpServer udpServer, 
-				SseEventService sseEventService, GameSettings gameSettings) {
+	public Game(ActorRegistry actorRegistry, UdpServer udpServer, GameSettings gameSettings, ThreadFactory schedulerThreadFactory,
+				Metrics metrics, Tracer tracer, MatchAnalytics matchAnalytics) {
 		this.actorRegistry = actorRegistry;
 		this.udpServer = udpServer;
-		this.sseEventService = sseEventService;
 		this.gameSettings = gameSettings;
+		this.scheduler = Executors.newScheduledThreadPool(2, schedulerThreadFactory);
+		this.tracer = tracer;
+		this.matchAnalytics = matchAnalytics;
+		this.matchObservers = new MatchObservers(List.of(matchAnalytics));
+		this.ruleEngine = new RuleEngine(metrics);
+		this.dispenserCooldowns = new DispenserCooldowns(actorRegistry);
+		metrics.registerGauge("lasertag_game_scheduler_queue_depth", () -> ((ScheduledThreadPoolExecutor) scheduler).getQueue().size());
 		udpServer.setGameEventsListener(this);
-		
+		registerHandlers(udpServer.getDispatcher());
 	}
 
-	@Override
-	public void onMessageFromPlayer(Player player, Messaging.MessageFromClient message) {
-		player.updateHealth(message.getHealth());
-		
-		var type = message.getTypeId();
-		if (type == MessageType.GOT_HIT.id() || type == MessageType.YOU_KILLED.id())  {
-			var hitByPlayer = actorRegistry.getPlayerById(message.getExtraValue());
-			if (type == MessageType.YOU_KILLED.id()) {
-				onPlayerKilled(player, hitByPlayer);
-			} else {
-				udpServer.sendEventToClient(MessageType.YOU_HIT_SOMEONE, hitByPlayer, (byte)player.getId());
-			}
-		} else if (type == MessageType.GOT_HEALTH.id()) {
-			useDispenser(player, Actor.Type.HEALTH, message.getExtraValue(), MessageType.GIVE_HEALTH_TO_PLAYER);
-		} else if (type == MessageType.GOT_AMMO.id()) {
-			useDispenser(player, Actor.Type.AMMO, message.getExtraValue(), MessageType.GIVE_AMMO_TO_PLAYER);
-		} else if (type == MessageType.FLAG_TAKEN.id()) {
-			player.setFlagCarrier(true);
-			broadcastFlagEvent(MessageType.FLAG_TAKEN, player);
-		} else if (type == MessageType.FLAG_CAPTURED.id()) {
-			actorRegistry.incrementTeamScore(player.getTeamId());
-			player.setFlagCarrier(false);
-			broadcastFlagEvent(MessageType.FLAG_CAPTURED, player);
+	public void setMatchObservers(List<MatchObserver> matchObservers) {
+		this.matchObservers = new MatchObservers(matchObservers);
+	}
+
+	void shutdown() {
+		scheduler.shutdownNow();
+	}
 
-			var teamScore = actorRegistry.getTeamScores().get(player.getTeamId());
-			if (teamScore >= getSettings().getFragLimit()) {
-				eventConsoleEndGame();
+	private void registerHandlers(MessageDispatcher dispatcher) {
+		MessageDispatcher.Validator<Player> knownShooter = (player, message, now) ->
+			actorRegistry.findActor(Actor.Type.PLAYER, message.getExtraValue()) == null ? "unknown shooter " + message.getExtraValue() : null;
+		dispatcher.register(MessageType.GOT_HIT, Actor.Type.PLAYER, knownShooter, playerEvent(true, this::onGotHit));
+		dispatcher.register(MessageType.YOU_KILLED, Actor.Type.PLAYER, knownShooter, playerEvent(true, (player, message, now) ->
+			onPlayerKilled(player, actorRegistry.getPlayerById(message.getExtraValue()), now)));
+		dispatcher.register(MessageType.GOT_HEALTH, Actor.Type.PLAYER, knownDispenser(Actor.Type.HEALTH), playerEvent(false, (player, message, now) ->
+			useDispenser(player, Actor.Type.HEALTH, message.getExtraValue(), MessageType.GIVE_HEALTH_TO_PLAYER, now)));
+		dispatcher.register(MessageType.GOT_AMMO, Actor.Type.PLAYER, knownDispenser(Actor.Type.AMMO), playerEvent(false, (player, message, now) ->
+			useDispenser(player, Actor.Type.AMMO, message.getExtraValue(), MessageType.GIVE_AMMO_TO_PLAYER, now)));
+		dispatcher.register(MessageType.RESPAWN, Actor.Type.PLAYER, MessageDispatcher.ACCEPT_ALL, playerEvent(true, (player, message, now) ->
+			matchObservers.onRespawn(player.getId(), now)));
+		dispatcher.register(MessageType.FLAG_TAKEN, Actor.Type.PLAYER, MessageDispatcher.ACCEPT_ALL, playerEvent(true, (player, message, now) ->
+			ruleEngine.onFlagTaken(rules, player, now)));
+		dispatcher.register(MessageType.FLAG_CAPTURED, Actor.Type.PLAYER, MessageDispatcher.ACCEPT_ALL, playerEvent(true, (player, message, now) ->
+			ruleEngine.onFlagCaptured(rules, player, now)));
+		int allTeams = (1 << (Messaging.TEAM_CYAN + 1)) - 1;
+		dispatcher.<Zone>register(MessageType.ZONE_STATE, Actor.Type.ZONE,
+			(zone, message, now) -> (message.getExtraValue() & ~allTeams) != 0 ? "unknown team in presence mask " + message.getExtraValue() : null,
+			(zone, message, now) -> zone.setPresenceMask(message.getExtraValue()));
+	}
+
+	// a pickup from a dispenser that is still cooling down is rejected before anything is sent
+	private MessageDispatcher.Validator<Player> knownDispenser(Actor.Type dispenserType) {
+		return (player, message, now) -> actorRegistry.findActor(dispenserType, message.getExtraValue()) == null
+			? "unknown " + dispenserType.name().toLowerCase() + " dispenser " + message.getExtraValue()
+			: dispenserCooldowns.checkReady(dispenserType, message.getExtraValue(), now);
+	}
+
+	/**
+	 * Wraps what every player event does: take the health the device reports, apply the event, then push the
+	 * snapshot (pickups skip it, the amount goes to the player directly) and refresh the console.
+	 */
+	private MessageDispatcher.Handler<Player> playerEvent(boolean sendsStats, MessageDispatcher.Handler<Player> handler) {
+		return (player, message, now) -> {
+			matchLock.lock();
+			try {
+				if (player.updateHealth(message.getHealth())) {
+					matchObservers.onHealthChanged(player.getId(), player.getHealth(), now);
+				}
+				handler.handle(player, message, now);
+				if (sendsStats) {
+					sendPlayerValuesSnapshotToAll(false);
+				}
+				refreshConsoleUI(isGamePlaying);
+			} finally {
+				matchLock.unlock();
 			}
-		}
+		};
+	}
 
-		if (type != MessageType.GOT_AMMO.id() && type != MessageType.GOT_HEALTH.id()) {
-			sendPlayerValuesSnapshotToAll(false);
-		}
-		refreshConsoleUI(isGamePlaying);
+	private void onGotHit(Player player, Messaging.MessageFromClient message, long now) {
+		var hitByPlayer = actorRegistry.getPlayerById(message.getExtraValue());
+		matchObservers.onHit(player.getId(), hitByPlayer.getId(), now);
+		udpServer.sendEventToClient(MessageType.YOU_HIT_SOMEONE, hitByPlayer, player.getId());
 	}
 
-	private void onPlayerKilled(Player player, Player hitByPlayer) {
+	private void onPlayerKilled(Player player, Player hitByPlayer, long now) {
 		hitByPlayer.setScore(hitByPlayer.getScore() + 1);
-		if (getGameType() == GameType.TEAM_DM) {
-			actorRegistry.incrementTeamScore(hitByPlayer.getTeamId());
-		}
-		udpServer.sendEventToClient(MessageType.YOU_SCORED, hitByPlayer, (byte)player.getId());
+		matchObservers.onKill(player.getId(), hitByPlayer.getId(), now);
+		udpServer.sendEventToClient(MessageType.YOU_SCORED, hitByPlayer, player.getId());
 		player.setAssignedRespawnPoint(actorRegistry.getRandomRespawnPointId());
-
-		// CTF flag carrier killed, drop the flag
-		if (getGameType() == GameType.CTF && player.isFlagCarrier()) {
-			player.setFlagCarrier(false);
-			broadcastFlagEvent(MessageType.FLAG_LOST, player);
-		}
-
-		var vitalScore = isTeamPlay() ? actorRegistry.getTeamScores().get(hitByPlayer.getTeamId()) : hitByPlayer.getScore();
-		if (vitalScore >= getSettings().getFragLimit()) {
-			eventConsoleEndGame();
-		}
+		ruleEngine.onKill(rules, player, hitByPlayer, now);
 	}
 
-	private void useDispenser(Player player, Actor.Type dispenserType, int dispenserId, MessageType messageToPlayerType) {
+	private void useDispenser(Player player, Actor.Type dispenserType, int dispenserId, MessageType messageToPlayerType, long now) {
 		var dispenser = (Dispenser) actorRegistry.getActorByTypeAndId(dispenserType, dispenserId);
+		dispenserCooldowns.startCooldown(dispenserType, dispenserId, dispenser.getDispenseTimeoutSec(), now);
+		matchObservers.onDispenserUsed(player.getId(), dispenserType, dispenserId, now);
 		udpServer.sendEventToClient(MessageType.DISPENSER_USED, dispenser);
-		udpServer.sendEventToClient(messageToPlayerType, player, (byte)dispenser.getAmount());
+		udpServer.sendEventToClient(messageToPlayerType, player, dispenser.getAmount());
+		console.sendDispenserCooldowns(dispenserCooldowns.getCooling(now));
 	}
 
 	@Override
 	public void eventConsoleStartGame(int timeMinutes, int fragLimit, GameType gameType) {
+		udpServer.runBatched(() -> startGame(timeMinutes, fragLimit, gameType));
+	}
+
+	private void startGame(int timeMinutes, int fragLimit, GameType gameType) {
+		matchLock.lock();
+		try {
+			startGameLocked(timeMinutes, fragLimit, gameType);
+		} finally {
+			matchLock.unlock();
+		}
+	}
+
+	private void startGameLocked(int timeMinutes, int fragLimit, GameType gameType) {
 		log.info("Starting game with timeLimitMinutes={}, fragLimit={}, gameType={}", timeMinutes, fragLimit, gameType);
-		getSettings().setTimeLimitMinutes(timeMinutes);
-		getSettings().setFragLimit(fragLimit);
-		getSettings().setGameType(gameType);
+		gameSettings.update(settings -> settings.withMatch(timeMinutes, fragLimit, gameType));
 		timeLeftSeconds = getSettings().getTimeLimitMinutes() * 60;
 
 		actorRegistry.resetTeamScores();
@@ -121,12 +192,23 @@ public class Game implements GameEventsListener {
 			player.setFlagCarrier(false);
 			player.setAssignedRespawnPoint(respawnPointsIt.next());
 		});
+		for (Zone zone : actorRegistry.getZones()) {
+			zone.setOwnerTeam(Zone.NO_TEAM);
+			if (zone.isOnline()) {
+				udpServer.sendEventToClient(MessageType.ZONE_CAPTURED, zone, zone.getId(), Zone.NO_TEAM);
+			}
+		}
 
+		long now = System.currentTimeMillis();
+		dispenserCooldowns.reset(now);
+		console.sendDispenserCooldowns(dispenserCooldowns.getCooling(now));
+		matchObservers.onMatchStarted(gameType, now);
+		ruleEngine.activate(gameType, rules, now);
 		setIsGamePlaying(true);
 		sendPlayerValuesSnapshotToAll(true);
 		actorRegistry.streamPlayers().forEach(player -> {
 			if (player.isOnline()) {
-				udpServer.sendEventToClient(MessageType.GAME_START, player, (byte) getGameType().ordinal(), (byte) getSettings().getTimeLimitMinutes());
+				udpServer.sendEventToClient(MessageType.GAME_START, player, getGameType().ordinal(), getSettings().getTimeLimitMinutes());
 			}
 		});
 		
@@ -134,18 +216,41 @@ public class Game implements GameEventsListener {
 
 	@Override
 	public void eventConsoleEndGame() {
-		
+		matchLock.lock();
+		try {
+			endGameLocked();
+		} finally {
+			matchLock.unlock();
+		}
+	}
+
+	private void endGameLocked() {
 		log.info("Ending game");
+		boolean wasPlaying = isGamePlaying;
 		setIsGamePlaying(false);
+		if (wasPlaying) {
+			matchObservers.onMatchEnded(System.currentTimeMillis());
+		}
 
 		Player leadPlayer = actorRegistry.getLeadPlayer();
 		int leadTeam = actorRegistry.getLeadTeam();
 		int winner = isTeamPlay() ? leadTeam : Optional.ofNullable(leadPlayer).map(Player::getId).orElse(-1);
-		scheduler.schedule(() -> {
+		if (wasPlaying) {
+			matchArchiver.archive(matchAnalytics.getLastSummary(), gameSettings.getCurrentPresetName(), getGameType(), winner);
+		}
+		// the final kill's trace continues into GAME_OVER
+		scheduler.schedule(tracer.wrap(() -> {
 			for (Player player : actorRegistry.getPlayers()) {
-				udpServer.sendEventToClient(MessageType.GAME_OVER, player, (byte)winner);
+				udpServer.sendEventToClient(MessageType.GAME_OVER, player, winner);
 			}
-		}, 1, TimeUnit.SECONDS);
+		}), GAME_OVER_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Tells the online players, between matches, when the next one starts and what it is, see {@link MatchQueue}.
+	 */
+	public void announceNextMatch(int secondsUntilStart, GameType gameType, int timeLimitMinutes) {
+		broadcast(MessageType.GAME_TIMER, secondsUntilStart, gameType.ordinal(), timeLimitMinutes);
 	}
 
 	@Override
@@ -158,20 +263,128 @@ public class Game implements GameEventsListener {
 		sendPlayerValuesSnapshotToAll(true);
 	}
 
+	// FULL_STATS with names carries game state, time left, flag carriers and every player's settings
+	@Override
+	public void onActorReconnected(Actor actor) {
+		if (actor instanceof Player player) {
+			udpServer.sendStatsToActor(player, true, isGamePlaying, getGameType().ordinal(), timeLeftSeconds);
+		} else if (actor instanceof Zone zone) {
+			udpServer.sendEventToClient(MessageType.ZONE_CAPTURED, zone, zone.getId(), zone.getOwnerTeam());
+		} else {
+			udpServer.sendSettingsToDispenser(actor);
+		}
+	}
+
 	@Override
 	public void onPlayerDataUpdated(Player player, boolean isNameUpdated) {
 		sendPlayerValuesSnapshotToAll(isNameUpdated);
 	}
 
-	@Scheduled(fixedDelay = 1000, initialDelay = 1000)
+	@Override
+	public void onRosterUpdated(boolean isNameUpdated) {
+		sendPlayerValuesSnapshotToAll(isNameUpdated);
+	}
+
+	/**
+	 * Runs the access under the match lock, so the scores, players and clock it sees or sets belong together; used
+	 * by replication.
+	 */
+	public void withMatchLock(MatchStateAccess access) throws IOException {
+		matchLock.lock();
+		try {
+			access.run();
+		} finally {
+			matchLock.unlock();
+		}
+	}
+
+	/**
+	 * Mirrors the match clock of the primary server on a standby.
+	 */
+	public void restoreReplicatedState(boolean playing, int timeLeftSeconds) {
+		matchLock.lock();
+		try {
+			this.timeLeftSeconds = timeLeftSeconds;
+			setIsGamePlaying(playing);
+		} finally {
+			matchLock.unlock();
+		}
+	}
+
+	/**
+	 * Called on a standby once it owns the device port: the match carries on from the replicated state (analytics and
+	 * the recording start over from here) and every online device gets the full state, in case it missed the last
+	 * changes of the old primary.
+	 */
+	public void onTakeOver() {
+		udpServer.runBatched(() -> {
+			matchLock.lock();
+			try {
+				if (isGamePlaying) {
+					long now = System.currentTimeMillis();
+					matchObservers.onMatchStarted(getGameType(), now);
+					ruleEngine.activate(getGameType(), rules, now);
+				}
+				for (Actor actor : actorRegistry.getActors()) {
+					if (actor.isOnline()) {
+						onActorReconnected(actor);
+					}
+				}
+			} finally {
+				matchLock.unlock();
+			}
+		});
+		refreshConsoleUI(isGamePlaying);
+	}
+
+	// every second, see LasertagEngine
 	public void updateGameTime() {
-		if (isGamePlaying) {
+		// a standby follows the primary's clock instead of running its own
+		if (!udpServer.isServing()) {
+			return;
+		}
+		matchLock.lock();
+		try {
+			if (!isGamePlaying) {
+				return;
+			}
 			timeLeftSeconds--;
 			if (timeLeftSeconds <= 0) {
-				eventConsoleEndGame();
+				endGameLocked();
 				return;
 			}
 			updateConsoleGameTime(timeLeftSeconds);
+		} finally {
+			matchLock.unlock();
+		}
+	}
+
+	// every second, see LasertagEngine
+	public void expireDispenserCooldowns() {
+		long now = System.currentTimeMillis();
+		if (dispenserCooldowns.expire(now)) {
+			console.sendDispenserCooldowns(dispenserCooldowns.getCooling(now));
+		}
+	}
+
+	// RuleEngine.TICK_HZ times a second, see LasertagEngine
+	public void tickRules() {
+		if (!isGamePlaying || !udpServer.isServing() || !ruleEngine.isTicking()) {
+			return;
+		}
+		matchLock.lock();
+		try {
+			// the match may have ended since the check above
+			if (!isGamePlaying) {
+				return;
+			}
+			ruleEngine.tick(rules, System.currentTimeMillis());
+			if (rulesChangedScores) {
+				rulesChangedScores = false;
+				refreshConsoleUI(isGamePlaying);
+			}
+		} finally {
+			matchLock.unlock();
 		}
 	}
 
@@ -187,20 +400,20 @@ public class Game implements GameEventsListener {
 	}
 
 
-	private void broadcastFlagEvent(MessageType flagEventType, Player player) {
+	private void broadcast(MessageType type, int... values) {
 		for (Player toPlayer : actorRegistry.getPlayers()) {
 			if (toPlayer.isOnline()) {
-				udpServer.sendEventToClient(flagEventType, toPlayer, (byte) player.getId());
+				udpServer.sendEventToClient(type, toPlayer, values);
 			}
 		}
 	}
 
 	private void refreshConsoleUI(boolean isPlaying) {
-		sseEventService.refreshUI(isPlaying);
+		console.refreshUI(isPlaying);
 	}
 
 	private void updateConsoleGameTime(int timeLeft) {
-		sseEventService.sendGameTimeLeft(timeLeft);
+		console.sendGameTimeLeft(timeLeft);
 	}
 
 	private GameType getGameType() {
@@ -211,8 +424,64 @@ public class Game implements GameEventsListener {
 		return gameSettings.getCurrent().getGameType().isTeamBased();
 	}
 
-	private GameSettingsPreset getSettings() {
+	private SettingsSnapshot getSettings() {
 		return gameSettings.getCurrent();
 	}
 
+	private final class Rules implements RuleContext {
+
+		@Override
+		public ActorRegistry getActorRegistry() {
+			return actorRegistry;
+		}
+
+		@Override
+		public MatchObserver getMatchObservers() {
+			return matchObservers;
+		}
+
+		@Override
+		public int getFragLimit() {
+			return getSettings().getFragLimit();
+		}
+
+		@Override
+		public void addTeamScore(int teamId, int points, long now) {
+			int score = actorRegistry.addTeamScore(teamId, points);
+			if (score < 0) {
+				return;
+			}
+			matchObservers.onTeamScoreChanged(teamId, score, now);
+			rulesChangedScores = true;
+			if (isGamePlaying && score >= getFragLimit()) {
+				endGameLocked();
+			}
+		}
+
+		@Override
+		public void endMatch() {
+			if (isGamePlaying) {
+				endGameLocked();
+			}
+		}
+
+		@Override
+		public void broadcast(MessageType type, int value) {
+			Game.this.broadcast(type, value);
+		}
+
+		@Override
+		public void captureZone(Zone zone, int teamId, long now) {
+			log.info("Zone {} captured by team {}", zone.getId(), teamId);
+			zone.setOwnerTeam(teamId);
+			if (zone.isOnline()) {
+				udpServer.sendEventToClient(MessageType.ZONE_CAPTURED, zone, zone.getId(), teamId);
+			}
+			Game.this.broadcast(MessageType.ZONE_CAPTURED, zone.getId(), teamId);
+			matchObservers.onZoneCaptured(zone.getId(), teamId, now);
+			rulesChangedScores = true;
+		}
+
+	}
+
 }
@@ -0,0 +1,25 @@
+package net.lasertag.lasertagserver.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the engine pushes what the operator console shows; the web app implements it with SSE. The defaults drop
+ * everything, which is what tests and headless runs want.
+ */
+public interface GameConsole {
+
+	GameConsole NONE = new GameConsole() {};
+
+	default void refreshUI(boolean isPlaying) {}
+
+	default void sendGameTimeLeft(int timeLeft) {}
+
+	default void sendAnalyticsUpdate(Object analytics) {}
+
+	/**
+	 * Ids of the dispensers cooling down, sent when a cooldown starts or runs out.
+	 */
+	default void sendDispenserCooldowns(Map<String, List<Integer>> cooling) {}
+
+}
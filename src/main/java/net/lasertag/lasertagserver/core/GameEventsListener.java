@@ -1,11 +1,9 @@
 package net.lasertag.lasertagserver.core;
 
-import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.model.Actor;
 import net.lasertag.lasertagserver.model.Player;
 
 public interface GameEventsListener {
-	void onMessageFromPlayer(Player player, Messaging.MessageFromClient message);
-
 	void eventConsoleStartGame(int timeMinutes, int fragLimit, GameType gameType);
 
 	void eventConsoleEndGame();
@@ -14,6 +12,14 @@ public interface GameEventsListener {
 
 	void onPlayerJoinedOrLeft();
 
+	/**
+	 * Sends the full current state to {@code actor} only, after it reconnected or was silent long enough to have
+	 * missed events.
+	 */
+	void onActorReconnected(Actor actor);
+
 	void onPlayerDataUpdated(Player player, boolean isNameUpdated);
 
+	void onRosterUpdated(boolean isNameUpdated);
+
 }
@@ -2,119 +2,148 @@ package net.lasertag.lasertagserver.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.lasertag.lasertagserver.model.Actor;
 import net.lasertag.lasertagserver.model.Dispenser;
-import org.springframework.stereotype.Component;
+import net.lasertag.lasertagserver.model.Player;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
-
-@Component
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the current {@link SettingsSnapshot}. Reads are a volatile load and never block; writers are serialized,
+ * publish a new version and then push only the fields that differ from the last applied version onto the actors.
+ */
 @Slf4j
 public class GameSettings {
 
-    private static final String PRESETS_DIR = "presets";
-    private static final String JSON_EXTENSION = ".json";
     private static final String STATE_FILE = "server-state.json";
     private static final String NEW_PRESET_NAME = "New...";
 
     private final ObjectMapper objectMapper;
     private final ActorRegistry actorRegistry;
+    private final PresetRepository presetRepository;
+    private final Executor daemonExecutor;
 
-    @Getter
-    private GameSettingsPreset current;
+    private final AtomicReference<SettingsSnapshot> current;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock stateFileLock = new ReentrantLock();
+    private SettingsSnapshot applied; // last version pushed to the actors, guarded by writeLock
 
     @Getter
-    private String currentPresetName = NEW_PRESET_NAME;
+    private volatile String currentPresetName = NEW_PRESET_NAME;
 
     public Map<String, Object> getAllSettingsWithMetadata() {
-        Map<String, Object> settings = new HashMap<>(current.getAllSettings());
+        Map<String, Object> settings = new HashMap<>(getCurrent().getAllSettings());
         settings.put("presetName", currentPresetName);
         return settings;
     }
 
-    public GameSettings(ActorRegistry actorRegistry) {
+    public GameSettings(ActorRegistry actorRegistry, PresetRepository presetRepository, Executor daemonExecutor) {
         this.actorRegistry = actorRegistry;
+        this.presetRepository = presetRepository;
+        this.daemonExecutor = daemonExecutor;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        this.current = new GameSettingsPreset();
+        this.current = new AtomicReference<>(SettingsSnapshot.fromPreset(new GameSettingsPreset(), 1));
     }
 
-    @PostConstruct
-    public void init() {
-        loadState();
+    public SettingsSnapshot getCurrent() {
+        return current.get();
     }
 
-    public void savePreset(String fileName) throws IOException {
-        Path presetsPath = Paths.get(PRESETS_DIR);
-        if (!Files.exists(presetsPath)) {
-            Files.createDirectories(presetsPath);
-            log.info("Created presets directory: {}", presetsPath.toAbsolutePath());
+    /**
+     * Publishes {@code change} applied to the current version and syncs the difference to the actors.
+     */
+    public SettingsUpdate update(UnaryOperator<SettingsSnapshot> change) {
+        writeLock.lock();
+        try {
+            var previous = current.get();
+            var next = change.apply(previous);
+            if (next == previous) {
+                return new SettingsUpdate(previous, List.of());
+            }
+            current.set(next);
+            return new SettingsUpdate(next, syncToActors());
+        } finally {
+            writeLock.unlock();
         }
-
-        String normalizedFileName = normalizeFileName(fileName);
-        Path filePath = presetsPath.resolve(normalizedFileName);
-        objectMapper.writeValue(filePath.toFile(), current);
-        log.info("Saved preset to: {}", filePath.toAbsolutePath());
-
-        currentPresetName = fileName;
-        saveState();
     }
 
-    public void loadPreset(String fileName) throws IOException {
-        String normalizedFileName = normalizeFileName(fileName);
-        Path filePath = Paths.get(PRESETS_DIR).resolve(normalizedFileName);
-
-        if (!Files.exists(filePath)) {
-            throw new IOException("Preset file not found: " + filePath.toAbsolutePath());
-        }
+    /**
+     * Installs the settings streamed by a primary server on its standby. Nothing is written to disk, the primary
+     * owns the state file.
+     */
+    public void applyReplicated(SettingsSnapshot settings, String presetName) {
+        update(previous -> settings);
+        currentPresetName = presetName;
+    }
 
-        current = objectMapper.readValue(filePath.toFile(), GameSettingsPreset.class);
-        log.info("Loaded preset from: {}", filePath.toAbsolutePath());
+    /**
+     * Restores the preset that was active when the server last ran.
+     */
+    public void init() {
+        loadState();
+    }
 
-        currentPresetName = fileName;
+    public void savePreset(String name) throws IOException {
+        presetRepository.save(name, getCurrent());
+        currentPresetName = name;
         saveState();
-        syncToActors();
     }
 
-    public List<String> listPresets() throws IOException {
-        Path presetsPath = Paths.get(PRESETS_DIR);
-        if (!Files.exists(presetsPath)) {
-            return List.of();
+    /**
+     * Switches to a cached preset; only the server state file is written, in the background.
+     */
+    public void loadPreset(String name) throws IOException {
+        var preset = presetRepository.get(name);
+        if (preset == null) {
+            throw new IOException("Preset not found or invalid: " + name);
         }
+        applyPreset(name, preset);
+        log.info("Loaded preset '{}'", name);
+    }
 
-        try (Stream<Path> files = Files.list(presetsPath)) {
-            return files
-                .filter(path -> path.toString().endsWith(JSON_EXTENSION))
-                .map(path -> path.getFileName().toString().replace(JSON_EXTENSION, ""))
-                .toList();
-        }
+    /**
+     * Publishes {@code settings}, resolved ahead of time from the preset {@code name}, as the next version.
+     */
+    public SettingsUpdate applyPreset(String name, SettingsSnapshot settings) {
+        var result = update(previous -> settings.withVersion(previous.getVersion() + 1));
+        currentPresetName = name;
+        saveState();
+        return result;
     }
 
-    private String normalizeFileName(String fileName) {
-        if (!fileName.endsWith(JSON_EXTENSION)) {
-            return fileName + JSON_EXTENSION;
-        }
-        return fileName;
+    public List<String> listPresets() {
+        return presetRepository.list();
     }
 
     private void saveState() {
-        try {
-            Path statePath = Paths.get(STATE_FILE);
-            objectMapper.writeValue(statePath.toFile(), Map.of("currentPresetName", currentPresetName));
-            log.info("Saved server state to: {}", statePath.toAbsolutePath());
-        } catch (IOException e) {
-            log.warn("Failed to save server state: {}", e.getMessage());
-        }
+        daemonExecutor.execute(() -> {
+            // the name is read under the lock so the last write always carries the latest preset
+            stateFileLock.lock();
+            try {
+                Path statePath = Paths.get(STATE_FILE);
+                PresetRepository.writeAtomically(statePath, objectMapper.writeValueAsBytes(Map.of("currentPresetName", currentPresetName)));
+                log.info("Saved server state to: {}", statePath.toAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Failed to save server state: {}", e.getMessage());
+            } finally {
+                stateFileLock.unlock();
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -137,29 +166,68 @@ public class GameSettings {
         }
     }
 
-    public void syncToActors() {
-        actorRegistry.streamPlayers().forEach(player -> {
-            GameSettingsPreset.PlayerSettings settings = current.getPlayerSettings(player.getId());
-            player.setName(settings.getName());
-            player.setBulletsMax(settings.getBulletsMax());
-            player.setDamage(settings.getDamage());
-            player.setTeamId(settings.getTeamId());
-        });
+    /**
+     * Applies the fields that changed since the last synced version to the players and dispensers, returning the
+     * actors that were touched.
+     */
+    public List<Actor> syncToActors() {
+        writeLock.lock();
+        try {
+            var next = current.get();
+            var previous = applied;
+            List<Actor> changed = new ArrayList<>();
+            for (Actor actor : actorRegistry.getActors()) {
+                boolean actorChanged = switch (actor) {
+                    case Player player -> syncPlayer(player, previous, next);
+                    case Dispenser dispenser -> syncDispenser(dispenser, previous, next);
+                    default -> false;
+                };
+                if (actorChanged) {
+                    changed.add(actor);
+                }
+            }
+            applied = next;
+            return changed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        actorRegistry.streamByType(Actor.Type.HEALTH).forEach(actor -> {
-            Dispenser dispenser = (Dispenser) actor;
-            var healthSettings = current.getHealthDispenserSettings();
-            dispenser.setDispenseTimeoutSec(healthSettings.getTimeout());
-            dispenser.setAmount(healthSettings.getAmount());
-        });
+    private static boolean syncPlayer(Player player, SettingsSnapshot previous, SettingsSnapshot next) {
+        var settings = next.getPlayerSettings(player.getId());
+        var before = previous == null ? null : previous.getPlayerSettings(player.getId());
+        if (settings == null || settings.equals(before)) {
+            return false;
+        }
+        if (before == null || !Objects.equals(before.name(), settings.name())) {
+            player.setName(settings.name());
+        }
+        if (before == null || before.bulletsMax() != settings.bulletsMax()) {
+            player.setBulletsMax(settings.bulletsMax());
+        }
+        if (before == null || before.damage() != settings.damage()) {
+            player.setDamage(settings.damage());
+        }
+        if (before == null || before.teamId() != settings.teamId()) {
+            player.setTeamId(settings.teamId());
+        }
+        return true;
+    }
 
-        actorRegistry.streamByType(Actor.Type.AMMO).forEach(actor -> {
-            Dispenser dispenser = (Dispenser) actor;
-            var ammoSettings = current.getAmmoDispenserSettings();
-            dispenser.setDispenseTimeoutSec(ammoSettings.getTimeout());
-            dispenser.setAmount(ammoSettings.getAmount());
-        });
+    private static boolean syncDispenser(Dispenser dispenser, SettingsSnapshot previous, SettingsSnapshot next) {
+        var settings = next.getDispenserSettings(dispenser.getType());
+        if (previous != null && settings.equals(previous.getDispenserSettings(dispenser.getType()))) {
+            return false;
+        }
+        dispenser.setDispenseTimeoutSec(settings.timeout());
+        dispenser.setAmount(settings.amount());
+        return true;
     }
 
+    /**
+     * The version that was published and the actors whose values changed because of it.
+     */
+    public record SettingsUpdate(SettingsSnapshot settings, List<Actor> changedActors) {}
+
 }
 
@@ -43,6 +43,7 @@ public class GameSettingsPreset {
 	private int fragLimit = 10;
 	private GameType gameType = GameType.DM;
 	private int timeLimitMinutes = 15;
+	private StatsDelivery statsDelivery = StatsDelivery.UNICAST;
 
 	public boolean isTeamPlay() {
 		return gameType.isTeamBased();
@@ -74,6 +75,7 @@ public class GameSettingsPreset {
 		general.put("fragLimit", fragLimit);
 		general.put("gameType", gameType.name());
 		general.put("timeLimitMinutes", timeLimitMinutes);
+		general.put("statsDelivery", statsDelivery.name());
 		allSettings.put("general", general);
 		allSettings.put("players", getAllPlayerSettings());
 		allSettings.put("dispensers", Map.of(
@@ -3,7 +3,9 @@ package net.lasertag.lasertagserver.core;
 public enum GameType {
     DM(false),
     TEAM_DM(true),
-    CTF(true);
+    CTF(true),
+    KING_OF_THE_HILL(true),
+    DOMINATION(true);
 
     private final boolean teamBased;
 
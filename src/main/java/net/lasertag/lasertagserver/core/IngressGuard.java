@@ -0,0 +1,179 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Admission check for inbound datagrams, run on the raw bytes before they are decoded. Each actor gets a token
+ * bucket per message class, and exact repeats of a recent non-ping packet from the same actor are dropped, so a
+ * flooding or re-sending device can't turn into extra hits, stats broadcasts and console refreshes.
+ * <p>
+ * Only the UDP receive thread calls {@link #admit}; the drop counters may be read from any thread.
+ */
+public class IngressGuard {
+
+	public enum IngressClass {
+		PING(5, 5),
+		COMBAT(20, 10),
+		PICKUP(2, 3),
+		OTHER(10, 10);
+
+		private final double tokensPerNano;
+		private final double burst;
+
+		IngressClass(int ratePerSecond, int burst) {
+			this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+			this.burst = burst;
+		}
+	}
+
+	private static final int MAX_ACTOR_ID = 64;
+	private static final int ACTOR_KINDS = 4; // player, health dispenser, ammo dispenser, zone
+	private static final int UNKNOWN_SLOT = ACTOR_KINDS * MAX_ACTOR_ID;
+	private static final int SLOTS = UNKNOWN_SLOT + 1;
+	private static final int CLASSES = IngressClass.values().length;
+	private static final int RECENT_EVENTS = 8;
+
+	private static final IngressClass[] CLASS_BY_TYPE_ID = new IngressClass[256];
+
+	static {
+		java.util.Arrays.fill(CLASS_BY_TYPE_ID, IngressClass.OTHER);
+		for (Byte pingId : Messaging.PING_GROUP) {
+			CLASS_BY_TYPE_ID[pingId & 0xFF] = IngressClass.PING;
+		}
+		for (MessageType type : new MessageType[] {MessageType.GOT_HIT, MessageType.YOU_KILLED, MessageType.RESPAWN,
+			MessageType.FLAG_TAKEN, MessageType.FLAG_CAPTURED}) {
+			CLASS_BY_TYPE_ID[type.id() & 0xFF] = IngressClass.COMBAT;
+		}
+		CLASS_BY_TYPE_ID[MessageType.GOT_HEALTH.id() & 0xFF] = IngressClass.PICKUP;
+		CLASS_BY_TYPE_ID[MessageType.GOT_AMMO.id() & 0xFF] = IngressClass.PICKUP;
+	}
+
+	private final long duplicateWindowNanos;
+
+	private final double[] tokens = new double[SLOTS * CLASSES];
+	private final long[] lastRefill = new long[SLOTS * CLASSES];
+	private final int[] recentKeys = new int[SLOTS * RECENT_EVENTS];
+	private final long[] recentTimes = new long[SLOTS * RECENT_EVENTS];
+	private final int[] recentNext = new int[SLOTS];
+
+	private final AtomicLongArray rateLimitedByActor = new AtomicLongArray(SLOTS);
+	private final AtomicLongArray duplicatesByActor = new AtomicLongArray(SLOTS);
+	private final AtomicLongArray rateLimitedByClass = new AtomicLongArray(CLASSES);
+
+	public IngressGuard(long duplicateWindowMillis) {
+		this.duplicateWindowNanos = TimeUnit.MILLISECONDS.toNanos(duplicateWindowMillis);
+		for (int slot = 0; slot < SLOTS; slot++) {
+			for (IngressClass ingressClass : IngressClass.values()) {
+				tokens[slot * CLASSES + ingressClass.ordinal()] = ingressClass.burst;
+			}
+		}
+	}
+
+	public boolean admit(byte[] data, int length, long now) {
+		if (length < 2) {
+			return true; // the decoder rejects it with a proper error
+		}
+		// compact frames carry the same message id with the compact flag set and, below 128, the same actor id byte
+		int typeId = Messaging.baseTypeId(data[0]) & 0xFF;
+		int slot = slotOf(typeId, data[1] & 0xFF);
+		var ingressClass = CLASS_BY_TYPE_ID[typeId];
+
+		if (!tryAcquire(slot, ingressClass, now)) {
+			rateLimitedByActor.incrementAndGet(slot);
+			rateLimitedByClass.incrementAndGet(ingressClass.ordinal());
+			return false;
+		}
+		if (ingressClass != IngressClass.PING && isDuplicate(slot, packKey(data, length), now)) {
+			duplicatesByActor.incrementAndGet(slot);
+			return false;
+		}
+		return true;
+	}
+
+	private boolean tryAcquire(int slot, IngressClass ingressClass, long now) {
+		int index = slot * CLASSES + ingressClass.ordinal();
+		long elapsed = lastRefill[index] == 0 ? 0 : now - lastRefill[index];
+		tokens[index] = Math.min(ingressClass.burst, tokens[index] + elapsed * ingressClass.tokensPerNano);
+		lastRefill[index] = now;
+		if (tokens[index] >= 1) {
+			tokens[index] -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isDuplicate(int slot, int key, long now) {
+		int base = slot * RECENT_EVENTS;
+		for (int i = 0; i < RECENT_EVENTS; i++) {
+			if (recentKeys[base + i] == key && recentTimes[base + i] != 0 && now - recentTimes[base + i] < duplicateWindowNanos) {
+				return true;
+			}
+		}
+		int next = recentNext[slot];
+		recentKeys[base + next] = key;
+		recentTimes[base + next] = now;
+		recentNext[slot] = (next + 1) % RECENT_EVENTS;
+		return false;
+	}
+
+	// gameplay packets are 4 bytes, so the key is the whole packet
+	private static int packKey(byte[] data, int length) {
+		int key = 0;
+		for (int i = 0; i < Math.min(length, 4); i++) {
+			key = (key << 8) | (data[i] & 0xFF);
+		}
+		return key;
+	}
+
+	private static int slotOf(int typeId, int actorId) {
+		if (actorId >= MAX_ACTOR_ID) {
+			return UNKNOWN_SLOT;
+		}
+		int kind = 0;
+		if (typeId == (MessageType.HEALTH_DISPENSER_PING.id() & 0xFF)) {
+			kind = 1;
+		} else if (typeId == (MessageType.AMMO_DISPENSER_PING.id() & 0xFF)) {
+			kind = 2;
+		} else if (typeId == (MessageType.ZONE_PING.id() & 0xFF) || typeId == (MessageType.ZONE_STATE.id() & 0xFF)) {
+			kind = 3;
+		}
+		return kind * MAX_ACTOR_ID + actorId;
+	}
+
+	private static String slotName(int slot) {
+		if (slot == UNKNOWN_SLOT) {
+			return "UNKNOWN";
+		}
+		String[] kinds = {"PLAYER", "HEALTH", "AMMO", "ZONE"};
+		return kinds[slot / MAX_ACTOR_ID] + "-" + (slot % MAX_ACTOR_ID);
+	}
+
+	public Stats getStats() {
+		List<ActorDrops> actors = new ArrayList<>();
+		for (int slot = 0; slot < SLOTS; slot++) {
+			long rateLimited = rateLimitedByActor.get(slot);
+			long duplicates = duplicatesByActor.get(slot);
+			if (rateLimited > 0 || duplicates > 0) {
+				actors.add(new ActorDrops(slotName(slot), rateLimited, duplicates));
+			}
+		}
+		List<ClassDrops> classes = new ArrayList<>();
+		for (IngressClass ingressClass : IngressClass.values()) {
+			classes.add(new ClassDrops(ingressClass.name(), rateLimitedByClass.get(ingressClass.ordinal())));
+		}
+		return new Stats(actors, classes);
+	}
+
+	public record ActorDrops(String actor, long rateLimited, long duplicates) {}
+
+	public record ClassDrops(String ingressClass, long rateLimited) {}
+
+	public record Stats(List<ActorDrops> actors, List<ClassDrops> classes) {}
+
+}
@@ -0,0 +1,156 @@
+package net.lasertag.lasertagserver.core;
+
+import lombok.Getter;
+import net.lasertag.lasertagserver.rules.GameRule;
+import net.lasertag.lasertagserver.rules.RuleEngine;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import net.lasertag.lasertagserver.telemetry.PacketInspector;
+import net.lasertag.lasertagserver.telemetry.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The game server without a container: protocol, actor registry, settings, rules and UDP transport wired by hand,
+ * with no reflection or classpath scanning, so tests, simulators and small deployments can run it directly:
+ * <pre>
+ * try (var engine = new LasertagEngine(EngineConfig.defaults(), executor, loopThreadFactory, schedulerThreadFactory)) {
+ *     engine.start();
+ *     ...
+ * }
+ * </pre>
+ * Plug in the console, extra match observers and the archiver between construction and {@link #start()}. Start
+ * loads the presets, restores the last preset, binds the device port (unless standby) and schedules the once a
+ * second tasks: match clock, connection timeouts, dispenser cooldowns, analytics publishing and time series
+ * sampling, plus the rule tick.
+ */
+@Getter
+public class LasertagEngine implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(LasertagEngine.class);
+
+	private final Metrics metrics;
+	private final Tracer tracer;
+	private final PacketInspector packetInspector;
+	private final ActorRegistry actorRegistry;
+	private final PresetRepository presetRepository;
+	private final GameSettings gameSettings;
+	private final UdpServer udpServer;
+	private final MatchAnalytics matchAnalytics;
+	private final PlayerTimeSeries playerTimeSeries;
+	private final Game game;
+	private final MatchQueue matchQueue;
+	private final ConsoleSender consoleSender = new ConsoleSender();
+	private final ThreadFactory loopThreadFactory;
+
+	private final ScheduledExecutorService ticker;
+	private boolean started;
+
+	/**
+	 * @param daemonExecutor short background jobs such as saving state; never a loop, those get a thread of their own
+	 * @param loopThreadFactory threads for the loops that run as long as the server: the UDP receive loop, the
+	 *                          outbound scheduler, the preset directory watch and the console sender
+	 */
+	public LasertagEngine(EngineConfig config, Executor daemonExecutor, ThreadFactory loopThreadFactory, ThreadFactory schedulerThreadFactory) {
+		this.metrics = new Metrics();
+		this.tracer = new Tracer();
+		this.packetInspector = new PacketInspector();
+		this.actorRegistry = new ActorRegistry();
+		this.presetRepository = new PresetRepository(loopThreadFactory, config.presetsDirectory());
+		this.gameSettings = new GameSettings(actorRegistry, presetRepository, daemonExecutor);
+		this.udpServer = new UdpServer(actorRegistry, gameSettings, loopThreadFactory, metrics, tracer, packetInspector, config);
+		this.matchAnalytics = new MatchAnalytics(actorRegistry);
+		this.playerTimeSeries = new PlayerTimeSeries(actorRegistry);
+		this.game = new Game(actorRegistry, udpServer, gameSettings, schedulerThreadFactory, metrics, tracer, matchAnalytics);
+		this.matchQueue = new MatchQueue(game, gameSettings, presetRepository, udpServer, metrics, game.getScheduler());
+		this.game.setMatchObservers(List.of(matchAnalytics, playerTimeSeries, matchQueue));
+		this.game.setConsole(consoleSender);
+		this.matchAnalytics.setConsole(consoleSender);
+		this.loopThreadFactory = loopThreadFactory;
+		this.ticker = Executors.newSingleThreadScheduledExecutor(schedulerThreadFactory);
+	}
+
+	/**
+	 * The console is fed through a {@link ConsoleSender}, never from the game's own threads.
+	 */
+	public void setConsole(GameConsole console) {
+		consoleSender.setTarget(console);
+	}
+
+	/**
+	 * Replaces the observers fed by {@link Game}; by default these are the engine's analytics and time series. The
+	 * {@link MatchQueue} is always kept.
+	 */
+	public void setMatchObservers(List<MatchObserver> matchObservers) {
+		List<MatchObserver> withQueue = new ArrayList<>(matchObservers);
+		// the queue is a MatchObserver bean too, so the Spring list may hold it already
+		if (!withQueue.contains(matchQueue)) {
+			withQueue.add(matchQueue);
+		}
+		game.setMatchObservers(withQueue);
+	}
+
+	public void setMatchArchiver(MatchArchiver matchArchiver) {
+		game.setMatchArchiver(matchArchiver);
+	}
+
+	/**
+	 * Adds a rule to every match, next to the module of its game type; see {@link RuleEngine}.
+	 */
+	public void addRule(GameRule rule) {
+		game.getRuleEngine().addRule(rule);
+	}
+
+	public void start() throws IOException {
+		if (started) {
+			return;
+		}
+		started = true;
+		long startNanos = System.nanoTime();
+		consoleSender.start(loopThreadFactory);
+		presetRepository.init();
+		gameSettings.init();
+		gameSettings.syncToActors();
+		udpServer.init();
+		every(1000, 1000, game::updateGameTime);
+		every(0, 1000, udpServer::checkConnectedClients);
+		every(1000, 1000, game::expireDispenserCooldowns);
+		every(0, 1000, matchAnalytics::publish);
+		every(0, PlayerTimeSeries.SAMPLE_INTERVAL_MILLIS, playerTimeSeries::sample);
+		every(RuleEngine.TICK_MILLIS, RuleEngine.TICK_MILLIS, game::tickRules);
+		log.info("Engine started in {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+	}
+
+	// a task that throws keeps its schedule, like @Scheduled
+	private void every(long initialDelayMillis, long periodMillis, Runnable task) {
+		ticker.scheduleWithFixedDelay(() -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				log.error("Scheduled task failed: {}", e.getMessage(), e);
+			}
+		}, initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void close() {
+		ticker.shutdownNow();
+		game.shutdown();
+		udpServer.stopUdpServer();
+		consoleSender.stop();
+		try {
+			presetRepository.close();
+		} catch (IOException e) {
+			log.warn("Cannot close preset watcher: {}", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running per-match aggregates, updated in place by {@link Game} as events arrive. Every counter lives in a
+ * fixed-size array indexed by player (or killer/victim pair, or dispenser), so an update is a few array writes and
+ * a snapshot never has to replay the match. Viewers get the numbers over SSE from a once a second publisher,
+ * never from the game thread.
+ */
+public class MatchAnalytics implements MatchObserver {
+
+	private static final int MAX_PLAYERS = 64;
+	private static final int MAX_DISPENSERS = 64;
+
+	private final ActorRegistry actorRegistry;
+	private volatile GameConsole console = GameConsole.NONE;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final int[] kills = new int[MAX_PLAYERS];
+	private final int[] deaths = new int[MAX_PLAYERS];
+	private final int[] hitsReceived = new int[MAX_PLAYERS];
+	private final int[] hitsDealt = new int[MAX_PLAYERS];
+	private final int[] currentStreak = new int[MAX_PLAYERS];
+	private final int[] bestStreak = new int[MAX_PLAYERS];
+	private final long[] aliveSince = new long[MAX_PLAYERS]; // 0 while dead
+	private final long[] timeAliveMillis = new long[MAX_PLAYERS];
+	private final int[] healthPickups = new int[MAX_PLAYERS];
+	private final int[] ammoPickups = new int[MAX_PLAYERS];
+	private final int[] flagTakes = new int[MAX_PLAYERS];
+	private final int[] flagCaptures = new int[MAX_PLAYERS];
+	private final long[] carryingSince = new long[MAX_PLAYERS]; // 0 while not carrying
+	private final long[] flagCarryMillis = new long[MAX_PLAYERS];
+	private final int[] killMatrix = new int[MAX_PLAYERS * MAX_PLAYERS]; // killer * MAX_PLAYERS + victim
+	private final int[] healthDispenserUses = new int[MAX_DISPENSERS];
+	private final int[] ammoDispenserUses = new int[MAX_DISPENSERS];
+
+	private long startedAtMillis;
+	private long endedAtMillis;
+	private boolean running;
+	private long version;
+
+	private long publishedVersion = -1;
+	private volatile MatchSnapshot lastSummary;
+
+	public MatchAnalytics(ActorRegistry actorRegistry) {
+		this.actorRegistry = actorRegistry;
+	}
+
+	public void setConsole(GameConsole console) {
+		this.console = console;
+	}
+
+	@Override
+	public void onMatchStarted(GameType gameType, long now) {
+		lock.lock();
+		try {
+			for (int[] counters : new int[][] {kills, deaths, hitsReceived, hitsDealt, currentStreak, bestStreak,
+				healthPickups, ammoPickups, flagTakes, flagCaptures, killMatrix, healthDispenserUses, ammoDispenserUses}) {
+				Arrays.fill(counters, 0);
+			}
+			for (long[] times : new long[][] {aliveSince, timeAliveMillis, carryingSince, flagCarryMillis}) {
+				Arrays.fill(times, 0);
+			}
+			startedAtMillis = now;
+			endedAtMillis = 0;
+			running = true;
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onMatchEnded(long now) {
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			for (int player = 0; player < MAX_PLAYERS; player++) {
+				stopAlive(player, now);
+				stopCarrying(player, now);
+			}
+			endedAtMillis = now;
+			running = false;
+			version++;
+			lastSummary = snapshot(now);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onHit(int victim, int shooter, long now) {
+		if (!isPlayerId(victim) || !isPlayerId(shooter)) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			hitsReceived[victim]++;
+			hitsDealt[shooter]++;
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onKill(int victim, int killer, long now) {
+		if (!isPlayerId(victim) || !isPlayerId(killer)) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			kills[killer]++;
+			deaths[victim]++;
+			killMatrix[killer * MAX_PLAYERS + victim]++;
+			currentStreak[killer]++;
+			bestStreak[killer] = Math.max(bestStreak[killer], currentStreak[killer]);
+			currentStreak[victim] = 0;
+			stopAlive(victim, now);
+			stopCarrying(victim, now);
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onRespawn(int player, long now) {
+		if (!isPlayerId(player)) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (running && aliveSince[player] == 0) {
+				aliveSince[player] = now;
+				version++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onDispenserUsed(int player, Actor.Type dispenserType, int dispenserId, long now) {
+		if (!isPlayerId(player) || dispenserId < 0 || dispenserId >= MAX_DISPENSERS) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			if (dispenserType == Actor.Type.HEALTH) {
+				healthPickups[player]++;
+				healthDispenserUses[dispenserId]++;
+			} else {
+				ammoPickups[player]++;
+				ammoDispenserUses[dispenserId]++;
+			}
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onFlagTaken(int player, long now) {
+		if (!isPlayerId(player)) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			flagTakes[player]++;
+			carryingSince[player] = now;
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onFlagCaptured(int player, long now) {
+		if (!isPlayerId(player)) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				return;
+			}
+			flagCaptures[player]++;
+			stopCarrying(player, now);
+			version++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onFlagLost(int player, long now) {
+		if (!isPlayerId(player)) {
+			return;
+		}
+		lock.lock();
+		try {
+			stopCarrying(player, now);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void stopAlive(int player, long now) {
+		if (aliveSince[player] != 0) {
+			timeAliveMillis[player] += now - aliveSince[player];
+			aliveSince[player] = 0;
+		}
+	}
+
+	private void stopCarrying(int player, long now) {
+		if (carryingSince[player] != 0) {
+			flagCarryMillis[player] += now - carryingSince[player];
+			carryingSince[player] = 0;
+		}
+	}
+
+	private static boolean isPlayerId(int id) {
+		return id >= 0 && id < MAX_PLAYERS;
+	}
+
+	// called every second by LasertagEngine; time alive and flag carry keep growing while a match runs, so a running
+	// match is published every tick
+	public void publish() {
+		MatchSnapshot snapshot;
+		lock.lock();
+		try {
+			if (!running && publishedVersion == version) {
+				return;
+			}
+			publishedVersion = version;
+			snapshot = snapshot(System.currentTimeMillis());
+		} finally {
+			lock.unlock();
+		}
+		console.sendAnalyticsUpdate(snapshot);
+	}
+
+	public MatchSnapshot getLiveSnapshot() {
+		lock.lock();
+		try {
+			return snapshot(System.currentTimeMillis());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Final numbers of the last finished match, or null if none finished since startup.
+	 */
+	public MatchSnapshot getLastSummary() {
+		return lastSummary;
+	}
+
+	private MatchSnapshot snapshot(long now) {
+		List<Player> players = actorRegistry.getPlayers().stream().filter(player -> isPlayerId(player.getId())).toList();
+		List<PlayerStats> playerStats = new ArrayList<>(players.size());
+		int[][] matrix = new int[players.size()][players.size()];
+		for (int row = 0; row < players.size(); row++) {
+			int id = players.get(row).getId();
+			long alive = timeAliveMillis[id] + (aliveSince[id] == 0 ? 0 : now - aliveSince[id]);
+			long carry = flagCarryMillis[id] + (carryingSince[id] == 0 ? 0 : now - carryingSince[id]);
+			playerStats.add(new PlayerStats(id, players.get(row).getName(), kills[id], deaths[id], hitsReceived[id],
+				hitsDealt[id], currentStreak[id], bestStreak[id], alive, healthPickups[id], ammoPickups[id],
+				flagTakes[id], flagCaptures[id], carry));
+			for (int column = 0; column < players.size(); column++) {
+				matrix[row][column] = killMatrix[id * MAX_PLAYERS + players.get(column).getId()];
+			}
+		}
+		List<DispenserStats> dispenserStats = new ArrayList<>();
+		for (int id = 0; id < MAX_DISPENSERS; id++) {
+			if (healthDispenserUses[id] > 0) {
+				dispenserStats.add(new DispenserStats(Actor.Type.HEALTH.name(), id, healthDispenserUses[id]));
+			}
+			if (ammoDispenserUses[id] > 0) {
+				dispenserStats.add(new DispenserStats(Actor.Type.AMMO.name(), id, ammoDispenserUses[id]));
+			}
+		}
+		return new MatchSnapshot(running, startedAtMillis, endedAtMillis, playerStats,
+			players.stream().map(Player::getId).toList(), matrix, dispenserStats);
+	}
+
+	public record PlayerStats(
+		int id,
+		String name,
+		int kills,
+		int deaths,
+		int hitsReceived,
+		int hitsDealt,
+		int currentStreak,
+		int bestStreak,
+		long timeAliveMillis,
+		int healthPickups,
+		int ammoPickups,
+		int flagTakes,
+		int flagCaptures,
+		long flagCarryMillis
+	) {}
+
+	public record DispenserStats(String type, int id, int uses) {}
+
+	/**
+	 * {@code killMatrix[i][j]} is how often {@code killMatrixIds[i]} killed {@code killMatrixIds[j]}.
+	 */
+	public record MatchSnapshot(
+		boolean running,
+		long startedAtMillis,
+		long endedAtMillis,
+		List<PlayerStats> players,
+		List<Integer> killMatrixIds,
+		int[][] killMatrix,
+		List<DispenserStats> dispensers
+	) {}
+
+}
@@ -0,0 +1,13 @@
+package net.lasertag.lasertagserver.core;
+
+/**
+ * Keeps the result of every finished match, called once per match on the thread that ended it.
+ */
+@FunctionalInterface
+public interface MatchArchiver {
+
+	MatchArchiver NONE = (summary, presetName, gameType, winner) -> {};
+
+	void archive(MatchAnalytics.MatchSnapshot summary, String presetName, GameType gameType, int winner);
+
+}
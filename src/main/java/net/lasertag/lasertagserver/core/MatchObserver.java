@@ -0,0 +1,35 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+
+/**
+ * Receives what happens during a match, in order, on the thread that applied it in {@link Game}.
+ * Implementations must be cheap, they run inline with packet handling.
+ */
+public interface MatchObserver {
+
+	default void onMatchStarted(GameType gameType, long now) {}
+
+	default void onMatchEnded(long now) {}
+
+	default void onHealthChanged(int player, int health, long now) {}
+
+	default void onHit(int victim, int shooter, long now) {}
+
+	default void onKill(int victim, int killer, long now) {}
+
+	default void onRespawn(int player, long now) {}
+
+	default void onDispenserUsed(int player, Actor.Type dispenserType, int dispenserId, long now) {}
+
+	default void onFlagTaken(int player, long now) {}
+
+	default void onFlagLost(int player, long now) {}
+
+	default void onFlagCaptured(int player, long now) {}
+
+	default void onTeamScoreChanged(int teamId, int score, long now) {}
+
+	default void onZoneCaptured(int zone, int teamId, long now) {}
+
+}
@@ -0,0 +1,102 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+
+import java.util.List;
+
+/**
+ * Fans every match event out to all {@link MatchObserver} beans, in registration order.
+ */
+class MatchObservers implements MatchObserver {
+
+	private final MatchObserver[] observers;
+
+	MatchObservers(List<MatchObserver> observers) {
+		this.observers = observers.toArray(new MatchObserver[0]);
+	}
+
+	@Override
+	public void onMatchStarted(GameType gameType, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onMatchStarted(gameType, now);
+		}
+	}
+
+	@Override
+	public void onMatchEnded(long now) {
+		for (MatchObserver observer : observers) {
+			observer.onMatchEnded(now);
+		}
+	}
+
+	@Override
+	public void onHealthChanged(int player, int health, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onHealthChanged(player, health, now);
+		}
+	}
+
+	@Override
+	public void onHit(int victim, int shooter, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onHit(victim, shooter, now);
+		}
+	}
+
+	@Override
+	public void onKill(int victim, int killer, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onKill(victim, killer, now);
+		}
+	}
+
+	@Override
+	public void onRespawn(int player, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onRespawn(player, now);
+		}
+	}
+
+	@Override
+	public void onDispenserUsed(int player, Actor.Type dispenserType, int dispenserId, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onDispenserUsed(player, dispenserType, dispenserId, now);
+		}
+	}
+
+	@Override
+	public void onFlagTaken(int player, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onFlagTaken(player, now);
+		}
+	}
+
+	@Override
+	public void onFlagLost(int player, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onFlagLost(player, now);
+		}
+	}
+
+	@Override
+	public void onFlagCaptured(int player, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onFlagCaptured(player, now);
+		}
+	}
+
+	@Override
+	public void onTeamScoreChanged(int teamId, int score, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onTeamScoreChanged(teamId, score, now);
+		}
+	}
+
+	@Override
+	public void onZoneCaptured(int zone, int teamId, long now) {
+		for (MatchObserver observer : observers) {
+			observer.onZoneCaptured(zone, teamId, now);
+		}
+	}
+
+}
@@ -0,0 +1,327 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs a list of matches back to back, each a preset with its own game type, limits and roster changes. While a
+ * match is on, the next entry is already resolved into the {@link SettingsSnapshot} it will run with. When the match
+ * ends, and once GAME_OVER is out, that snapshot is applied, only the players and dispensers it changes are synced,
+ * and the players get a GAME_TIMER counting down to the next start. So when the intermission is over, only GAME_START
+ * is left to send.
+ * <p>
+ * Starting a match by hand during an intermission stops the queue. The time from each queued match ending to the next
+ * one starting, and the part of it spent switching, go to {@link Metrics#recordMatchTransition}.
+ */
+public class MatchQueue implements MatchObserver {
+
+	private static final Logger log = LoggerFactory.getLogger(MatchQueue.class);
+
+	// the countdown goes out in one byte on legacy devices
+	public static final int MAX_INTERMISSION_SECONDS = 255;
+	// how long after GAME_OVER the next preset is applied, so devices see the result before the new roster
+	private static final long PRESYNC_DELAY_MILLIS = Game.GAME_OVER_DELAY_MILLIS + 250;
+
+	/**
+	 * Null match fields keep the preset's values. Roster entries change single players on top of the preset, and
+	 * their null fields keep the preset's values too.
+	 */
+	public record Entry(String presetName, GameType gameType, Integer timeLimitMinutes, Integer fragLimit,
+						Map<Integer, GameSettingsPreset.PlayerSettings> roster) {}
+
+	public enum Phase { IDLE, PLAYING, INTERMISSION }
+
+	/**
+	 * {@code currentIndex} is -1 until the first queued match starts. {@code nextStartMillis} is 0 unless an
+	 * intermission is on.
+	 */
+	public record Status(Phase phase, int currentIndex, List<Entry> entries, int intermissionSeconds, long nextStartMillis) {}
+
+	// the entry at index, resolved from its preset
+	private record Prepared(int index, SettingsSnapshot source, SettingsSnapshot settings) {}
+
+	private final Game game;
+	private final GameSettings gameSettings;
+	private final PresetRepository presetRepository;
+	private final UdpServer udpServer;
+	private final Metrics metrics;
+	private final ScheduledExecutorService scheduler;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private List<Entry> entries = List.of();
+	private int intermissionSeconds;
+	private Phase phase = Phase.IDLE;
+	private int currentIndex = -1;
+	private Prepared next;
+	private boolean starting;
+	private long matchEndedNanos; // 0 when the next start does not follow a queued match
+	private long switchNanos;
+	private long nextStartMillis;
+	private ScheduledFuture<?> pending;
+
+	public MatchQueue(Game game, GameSettings gameSettings, PresetRepository presetRepository, UdpServer udpServer,
+					  Metrics metrics, ScheduledExecutorService scheduler) {
+		this.game = game;
+		this.gameSettings = gameSettings;
+		this.presetRepository = presetRepository;
+		this.udpServer = udpServer;
+		this.metrics = metrics;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Replaces the queue. The first entry starts right away, or after the intermission that follows the match being
+	 * played. Every entry is resolved up front, so an unknown preset or player id is rejected here rather than
+	 * between two matches.
+	 */
+	public void start(List<Entry> entries, int intermissionSeconds) {
+		if (entries.isEmpty()) {
+			throw new IllegalArgumentException("The queue has no matches");
+		}
+		if (intermissionSeconds < 0 || intermissionSeconds > MAX_INTERMISSION_SECONDS) {
+			throw new IllegalArgumentException("Intermission must be 0 to " + MAX_INTERMISSION_SECONDS + " seconds");
+		}
+		for (int i = 0; i < entries.size(); i++) {
+			if (entries.get(i) == null) {
+				throw new IllegalArgumentException("Match " + (i + 1) + " of the queue is empty");
+			}
+			resolve(entries.get(i));
+		}
+		var copy = List.copyOf(entries);
+		lock.lock();
+		try {
+			cancelPending();
+			this.entries = copy;
+			this.intermissionSeconds = intermissionSeconds;
+			this.currentIndex = -1;
+			this.next = prepare(0);
+			if (game.isGamePlaying()) {
+				phase = Phase.PLAYING;
+			} else {
+				phase = Phase.INTERMISSION;
+				matchEndedNanos = 0;
+				pending = scheduler.schedule(() -> {
+					presync(0);
+					startNext();
+				}, 0, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			lock.unlock();
+		}
+		log.info("Match queue of {} matches started, {} s intermissions", copy.size(), intermissionSeconds);
+	}
+
+	/**
+	 * Stops the queue; a match being played carries on and ends as usual.
+	 */
+	public void stop() {
+		lock.lock();
+		try {
+			if (phase != Phase.IDLE) {
+				log.info("Match queue stopped");
+			}
+			cancelPending();
+			reset();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Status getStatus() {
+		lock.lock();
+		try {
+			return new Status(phase, currentIndex, entries, intermissionSeconds, phase == Phase.INTERMISSION ? nextStartMillis : 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onMatchStarted(GameType gameType, long now) {
+		lock.lock();
+		try {
+			if (phase == Phase.INTERMISSION && !starting) {
+				log.info("Match started by hand during the intermission, match queue stopped");
+				cancelPending();
+				reset();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// inline with the end of the match, the work is scheduled
+	@Override
+	public void onMatchEnded(long now) {
+		lock.lock();
+		try {
+			if (phase != Phase.PLAYING || !udpServer.isServing()) {
+				return;
+			}
+			if (next == null) {
+				log.info("Match queue finished after {} matches", entries.size());
+				reset();
+				return;
+			}
+			phase = Phase.INTERMISSION;
+			matchEndedNanos = System.nanoTime();
+			long intermissionMillis = Math.max(TimeUnit.SECONDS.toMillis(intermissionSeconds), PRESYNC_DELAY_MILLIS);
+			nextStartMillis = now + intermissionMillis;
+			int secondsUntilStart = (int) TimeUnit.MILLISECONDS.toSeconds(intermissionMillis - PRESYNC_DELAY_MILLIS);
+			pending = scheduler.schedule(() -> {
+				presync(secondsUntilStart);
+				lock.lock();
+				try {
+					if (phase == Phase.INTERMISSION) {
+						pending = scheduler.schedule(this::startNext, intermissionMillis - PRESYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+					}
+				} finally {
+					lock.unlock();
+				}
+			}, PRESYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Applies the prepared settings, pushes what changed to the devices and tells the players when the next match
+	 * starts.
+	 */
+	private void presync(int secondsUntilStart) {
+		lock.lock();
+		try {
+			if (phase != Phase.INTERMISSION || next == null) {
+				return;
+			}
+			long start = System.nanoTime();
+			var entry = entries.get(next.index());
+			if (presetRepository.get(entry.presetName()) != next.source()) {
+				// the preset file was edited or removed since the entry was prepared
+				next = prepare(next.index());
+				if (next == null) {
+					reset();
+					return;
+				}
+			}
+			var settings = next.settings();
+			udpServer.runBatched(() -> {
+				var result = gameSettings.applyPreset(entry.presetName(), settings);
+				boolean playersChanged = result.changedActors().stream().anyMatch(actor -> actor.getType() == Actor.Type.PLAYER);
+				boolean dispensersChanged = result.changedActors().stream().anyMatch(actor -> actor.getType() != Actor.Type.PLAYER);
+				if (playersChanged) {
+					game.onRosterUpdated(true);
+				}
+				if (dispensersChanged) {
+					udpServer.sendSettingsToAllDispensers();
+				}
+				if (secondsUntilStart > 0) {
+					game.announceNextMatch(secondsUntilStart, settings.getGameType(), settings.getTimeLimitMinutes());
+				}
+			});
+			game.refreshConsoleTable();
+			switchNanos = System.nanoTime() - start;
+			log.info("Match {} of {} ('{}') starts in {} s", next.index() + 1, entries.size(), entry.presetName(), secondsUntilStart);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// the game is started outside the queue's lock: the game takes its match lock first and then calls back in here
+	private void startNext() {
+		SettingsSnapshot settings;
+		long endedNanos;
+		long presyncNanos;
+		lock.lock();
+		try {
+			if (phase != Phase.INTERMISSION || next == null) {
+				return;
+			}
+			settings = next.settings();
+			currentIndex = next.index();
+			phase = Phase.PLAYING;
+			starting = true;
+			endedNanos = matchEndedNanos;
+			presyncNanos = switchNanos;
+			next = currentIndex + 1 < entries.size() ? prepare(currentIndex + 1) : null;
+		} finally {
+			lock.unlock();
+		}
+		long start = System.nanoTime();
+		try {
+			// the settings already match, starting only resets the match and sends GAME_START
+			game.eventConsoleStartGame(settings.getTimeLimitMinutes(), settings.getFragLimit(), settings.getGameType());
+		} finally {
+			lock.lock();
+			starting = false;
+			lock.unlock();
+		}
+		long end = System.nanoTime();
+		if (endedNanos != 0) {
+			metrics.recordMatchTransition(TimeUnit.NANOSECONDS.toMillis(end - endedNanos), presyncNanos + end - start);
+		}
+	}
+
+	// null if the preset is gone, the queue then ends after the current match
+	private Prepared prepare(int index) {
+		var entry = entries.get(index);
+		try {
+			return new Prepared(index, presetRepository.get(entry.presetName()), resolve(entry));
+		} catch (IllegalArgumentException e) {
+			log.warn("Cannot prepare match {} of the queue: {}", index + 1, e.getMessage());
+			return null;
+		}
+	}
+
+	private SettingsSnapshot resolve(Entry entry) {
+		var preset = entry.presetName() == null ? null : presetRepository.get(entry.presetName());
+		if (preset == null) {
+			throw new IllegalArgumentException("Preset not found or invalid: " + entry.presetName());
+		}
+		int timeLimitMinutes = entry.timeLimitMinutes() != null ? entry.timeLimitMinutes() : preset.getTimeLimitMinutes();
+		int fragLimit = entry.fragLimit() != null ? entry.fragLimit() : preset.getFragLimit();
+		if (timeLimitMinutes <= 0 || fragLimit <= 0) {
+			throw new IllegalArgumentException("Frag limit and time limit must be positive");
+		}
+		var settings = preset.withMatch(timeLimitMinutes, fragLimit, entry.gameType() != null ? entry.gameType() : preset.getGameType());
+		if (entry.roster() != null) {
+			for (var player : entry.roster().entrySet()) {
+				if (player.getKey() == null || player.getValue() == null) {
+					throw new IllegalArgumentException("Roster entry without player id or settings: " + player.getKey());
+				}
+				var teamId = player.getValue().getTeamId();
+				if (teamId != null && (teamId < Messaging.TEAM_RED || teamId > Messaging.TEAM_CYAN)) {
+					throw new IllegalArgumentException("Unknown team " + teamId + " for player " + player.getKey());
+				}
+				settings = settings.withPlayer(player.getKey(), player.getValue());
+			}
+		}
+		return settings;
+	}
+
+	private void cancelPending() {
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+
+	private void reset() {
+		phase = Phase.IDLE;
+		entries = List.of();
+		currentIndex = -1;
+		next = null;
+		nextStartMillis = 0;
+	}
+
+}
@@ -0,0 +1,75 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.model.Messaging.MessageFromClient;
+
+/**
+ * Routes every inbound message type to the kind of actor that sends it, a validator and a handler. Routes live in a
+ * table indexed by the type byte, so resolving the sender, checking the message and finding its handler cost the same
+ * however many types are registered. New message types, including ones sent by dispensers, are added by registering
+ * a route rather than by extending a chain of type checks.
+ * <p>
+ * {@link UdpServer} registers the pings and {@link Game} the gameplay events; the connection bookkeeping that applies
+ * to every message stays in {@link UdpServer}.
+ */
+public class MessageDispatcher {
+
+	@FunctionalInterface
+	public interface Handler<A extends Actor> {
+		void handle(A actor, MessageFromClient message, long now);
+	}
+
+	/**
+	 * Checks a message before anything is applied; returns why it is rejected, or null to accept it. {@code now} is
+	 * the time the handler is given too.
+	 */
+	@FunctionalInterface
+	public interface Validator<A extends Actor> {
+		String validate(A actor, MessageFromClient message, long now);
+	}
+
+	public static final Validator<Actor> ACCEPT_ALL = (actor, message, now) -> null;
+
+	/**
+	 * @param ping whether the type is one of {@link Messaging#PING_GROUP}, which carry the protocol version
+	 */
+	public record Route(MessageType type, Actor.Type actorType, boolean ping, Validator<Actor> validator, Handler<Actor> handler) {}
+
+	private final ActorRegistry actorRegistry;
+	private final Route[] routes = new Route[256];
+
+	public MessageDispatcher(ActorRegistry actorRegistry) {
+		this.actorRegistry = actorRegistry;
+	}
+
+	/**
+	 * Routes {@code type} to a handler for actors of {@code actorType}; the actor passed to the validator and the
+	 * handler is always of that type, so {@code A} has to match it ({@code Player} or {@code Dispenser}).
+	 */
+	@SuppressWarnings("unchecked")
+	public <A extends Actor> void register(MessageType type, Actor.Type actorType, Validator<? super A> validator, Handler<? super A> handler) {
+		int index = type.id() & 0xFF;
+		if (routes[index] != null) {
+			throw new IllegalStateException("Message type " + type.name() + " already has a handler");
+		}
+		routes[index] = new Route(type, actorType, Messaging.PING_GROUP.contains(type.id()),
+			(Validator<Actor>) validator, (Handler<Actor>) handler);
+	}
+
+	/**
+	 * The route of a decoded message type, or null if nothing handles it.
+	 */
+	public Route route(byte typeId) {
+		return routes[typeId & 0xFF];
+	}
+
+	/**
+	 * The sender of {@code message} as named by its route, or null if there is no such actor.
+	 */
+	public Actor resolve(Route route, MessageFromClient message) {
+		return actorRegistry.findActor(route.actorType(), message.getActorId());
+	}
+
+}
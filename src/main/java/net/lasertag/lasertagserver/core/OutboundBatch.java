@@ -0,0 +1,65 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the events one game step produces for each destination, so they can leave as a single
+ * BATCH datagram instead of one datagram per event.
+ */
+public class OutboundBatch {
+
+	public interface FrameSender {
+		void send(Actor actor, byte[] bytes, TrafficClass trafficClass);
+	}
+
+	private final Map<Actor, List<byte[]>> eventsByActor = new LinkedHashMap<>();
+
+	public void add(Actor actor, byte[] event) {
+		eventsByActor.computeIfAbsent(actor, a -> new ArrayList<>()).add(event);
+	}
+
+	public boolean isEmpty() {
+		return eventsByActor.isEmpty();
+	}
+
+	/**
+	 * Packs the queued events of every actor into as few MTU-sized frames as possible. A lone event
+	 * is passed through unframed, there is nothing to save by wrapping it.
+	 */
+	public void flush(FrameSender sender) {
+		eventsByActor.forEach((actor, events) -> {
+			if (events.size() == 1) {
+				sendFrame(actor, events, sender);
+				return;
+			}
+			List<byte[]> frame = new ArrayList<>();
+			int frameSize = Messaging.BATCH_HEADER_SIZE;
+			for (byte[] event : events) {
+				if (!frame.isEmpty() && !Messaging.fitsInBatch(frameSize, frame.size(), event)) {
+					sendFrame(actor, frame, sender);
+					frame = new ArrayList<>();
+					frameSize = Messaging.BATCH_HEADER_SIZE;
+				}
+				frameSize += Messaging.batchEntrySize(event);
+				frame.add(event);
+			}
+			sendFrame(actor, frame, sender);
+		});
+		eventsByActor.clear();
+	}
+
+	private void sendFrame(Actor actor, List<byte[]> frame, FrameSender sender) {
+		TrafficClass trafficClass = TrafficClass.of(frame.get(0)[0]);
+		for (byte[] event : frame) {
+			trafficClass = TrafficClass.mostUrgent(trafficClass, TrafficClass.of(event[0]));
+		}
+		sender.send(actor, frame.size() == 1 ? frame.get(0) : Messaging.batchToBytes(frame), trafficClass);
+	}
+
+}
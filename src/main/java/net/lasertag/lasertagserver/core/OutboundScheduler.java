@@ -0,0 +1,292 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.telemetry.DatagramSentEvent;
+import net.lasertag.lasertagserver.telemetry.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single sender for all server to device datagrams. Packets are drained strictly by {@link TrafficClass}
+ * priority, a queued state snapshot is replaced by a newer one for the same destination, and EVENT/STATE
+ * traffic is held back when a destination exceeds its send-rate budget. CONTROL and ACK always go out.
+ * <p>
+ * A snapshot that carries the player names (see {@link Messaging#carriesNames}) is never replaced by one without
+ * them: it is set aside and sent before the newer snapshot for the same destination.
+ */
+public class OutboundScheduler {
+	private static final Logger log = LoggerFactory.getLogger(OutboundScheduler.class);
+
+	private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final long BUDGET_PRUNE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private record OutboundPacket(InetAddress ip, byte[] bytes, TrafficClass trafficClass, long enqueuedAt, long traceId) {}
+
+	private final int devicePort;
+	private final double tokensPerNano;
+	private final double burst;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition hasWork = lock.newCondition();
+	private final List<ArrayDeque<OutboundPacket>> queues = new ArrayList<>();
+	// latest snapshot per destination, the STATE queue itself only keeps the destination order
+	private final Map<InetAddress, OutboundPacket> pendingState = new HashMap<>();
+	private final ArrayDeque<InetAddress> stateOrder = new ArrayDeque<>();
+	// snapshots with names that a newer snapshot without them would have replaced, at most one per destination
+	private final Map<InetAddress, OutboundPacket> pendingNames = new HashMap<>();
+	private final Map<InetAddress, double[]> budgets = new HashMap<>(); // [tokens, lastRefillNanos]
+	private long lastBudgetPruneNanos = System.nanoTime();
+	private final ClassStats[] stats = new ClassStats[TrafficClass.values().length];
+
+	private volatile boolean running = true;
+	private volatile NetworkInterface multicastInterface;
+	private volatile Tracer tracer;
+
+	public OutboundScheduler(int devicePort, int ratePerSecond, int burst) {
+		this.devicePort = devicePort;
+		this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+		this.burst = burst;
+		for (TrafficClass trafficClass : TrafficClass.values()) {
+			queues.add(new ArrayDeque<>());
+			stats[trafficClass.ordinal()] = new ClassStats();
+		}
+	}
+
+	public void enqueue(InetAddress ip, byte[] bytes, TrafficClass trafficClass) {
+		if (ip == null) {
+			return;
+		}
+		var currentTracer = tracer;
+		long traceId = currentTracer == null ? Tracer.NO_TRACE : currentTracer.currentTraceId();
+		var packet = new OutboundPacket(ip, bytes, trafficClass, System.nanoTime(), traceId);
+		var classStats = stats[trafficClass.ordinal()];
+		lock.lock();
+		try {
+			classStats.enqueued++;
+			if (trafficClass.isSupersedable()) {
+				var replaced = pendingState.put(ip, packet);
+				if (replaced == null) {
+					stateOrder.add(ip);
+				} else if (Messaging.carriesNames(replaced.bytes()) && !Messaging.carriesNames(packet.bytes())) {
+					if (pendingNames.put(ip, replaced) != null) {
+						classStats.superseded++;
+					}
+				} else {
+					classStats.superseded++;
+				}
+			} else {
+				queues.get(trafficClass.ordinal()).add(packet);
+			}
+			classStats.maxDepth = Math.max(classStats.maxDepth, depth(trafficClass));
+			hasWork.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// must be set before run(), otherwise multicast leaves through the OS default route
+	public void setMulticastInterface(NetworkInterface multicastInterface) {
+		this.multicastInterface = multicastInterface;
+	}
+
+	// packets enqueued under a trace get a span covering their queue wait and the socket send
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	public void run() {
+		try (DatagramSocket socket = new DatagramSocket()) {
+			if (multicastInterface != null) {
+				socket.setOption(StandardSocketOptions.IP_MULTICAST_IF, multicastInterface);
+			}
+			while (running) {
+				var packet = takeNext();
+				if (packet != null) {
+					send(socket, packet);
+				}
+			}
+		} catch (IOException e) {
+			log.error("Outbound scheduler failed to open socket: {}", e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void stop() {
+		running = false;
+		lock.lock();
+		try {
+			hasWork.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void send(DatagramSocket socket, OutboundPacket packet) {
+		var jfrEvent = new DatagramSentEvent();
+		jfrEvent.begin();
+		try {
+			socket.send(new DatagramPacket(packet.bytes(), packet.bytes().length, packet.ip(), devicePort));
+			if (jfrEvent.shouldCommit()) {
+				jfrEvent.destination = packet.ip().getHostAddress();
+				jfrEvent.messageType = Messaging.getMessageTypeName(packet.bytes()[0]);
+				jfrEvent.trafficClass = packet.trafficClass().name();
+				jfrEvent.payloadSize = packet.bytes().length;
+				jfrEvent.commit();
+			}
+			var currentTracer = tracer;
+			if (currentTracer != null && packet.traceId() != Tracer.NO_TRACE) {
+				currentTracer.record(packet.traceId(), "datagram", -1, packet.bytes()[0], packet.enqueuedAt(), System.nanoTime());
+			}
+		} catch (Exception e) {
+			log.error("Error sending command to client: {}", e.getMessage(), e);
+		}
+	}
+
+	private OutboundPacket takeNext() throws InterruptedException {
+		lock.lock();
+		try {
+			while (running) {
+				long now = System.nanoTime();
+				if (now - lastBudgetPruneNanos >= BUDGET_PRUNE_INTERVAL_NANOS) {
+					pruneBudgets(now);
+				}
+				long nextRefill = IDLE_WAIT_NANOS;
+				for (TrafficClass trafficClass : TrafficClass.values()) {
+					var packet = trafficClass.isSupersedable() ? pollState(now) : poll(trafficClass, now);
+					if (packet != null) {
+						var classStats = stats[trafficClass.ordinal()];
+						long waited = now - packet.enqueuedAt();
+						classStats.sent++;
+						classStats.totalWaitNanos += waited;
+						classStats.maxWaitNanos = Math.max(classStats.maxWaitNanos, waited);
+						return packet;
+					}
+					if (trafficClass.isRateLimited() && depth(trafficClass) > 0) {
+						nextRefill = Math.min(nextRefill, (long) (1 / tokensPerNano));
+					}
+				}
+				hasWork.awaitNanos(nextRefill);
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private OutboundPacket poll(TrafficClass trafficClass, long now) {
+		var queue = queues.get(trafficClass.ordinal());
+		if (!trafficClass.isRateLimited()) {
+			return queue.poll();
+		}
+		for (Iterator<OutboundPacket> it = queue.iterator(); it.hasNext(); ) {
+			var packet = it.next();
+			if (tryAcquire(packet.ip(), now)) {
+				it.remove();
+				return packet;
+			}
+		}
+		return null;
+	}
+
+	private OutboundPacket pollState(long now) {
+		for (Iterator<InetAddress> it = stateOrder.iterator(); it.hasNext(); ) {
+			var ip = it.next();
+			if (tryAcquire(ip, now)) {
+				var names = pendingNames.remove(ip);
+				if (names != null) {
+					// the newer snapshot stays queued behind it
+					return names;
+				}
+				it.remove();
+				return pendingState.remove(ip);
+			}
+		}
+		return null;
+	}
+
+	private boolean tryAcquire(InetAddress ip, long now) {
+		var budget = budgets.computeIfAbsent(ip, k -> new double[] {burst, now});
+		budget[0] = Math.min(burst, budget[0] + (now - budget[1]) * tokensPerNano);
+		budget[1] = now;
+		if (budget[0] >= 1) {
+			budget[0] -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	// a full budget is what a destination without one gets, so only budgets that have refilled are dropped
+	private void pruneBudgets(long now) {
+		lastBudgetPruneNanos = now;
+		budgets.values().removeIf(budget -> budget[0] + (now - budget[1]) * tokensPerNano >= burst);
+	}
+
+	private int depth(TrafficClass trafficClass) {
+		return trafficClass.isSupersedable() ? stateOrder.size() + pendingNames.size() : queues.get(trafficClass.ordinal()).size();
+	}
+
+	public int getQueueDepth(TrafficClass trafficClass) {
+		lock.lock();
+		try {
+			return depth(trafficClass);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public List<ClassStatsSnapshot> getStats() {
+		lock.lock();
+		try {
+			List<ClassStatsSnapshot> result = new ArrayList<>();
+			for (TrafficClass trafficClass : TrafficClass.values()) {
+				var classStats = stats[trafficClass.ordinal()];
+				result.add(new ClassStatsSnapshot(
+					trafficClass.name(),
+					classStats.enqueued,
+					classStats.sent,
+					classStats.superseded,
+					depth(trafficClass),
+					classStats.maxDepth,
+					classStats.sent == 0 ? 0 : classStats.totalWaitNanos / classStats.sent / 1000,
+					classStats.maxWaitNanos / 1000
+				));
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static class ClassStats {
+		long enqueued;
+		long sent;
+		long superseded;
+		int maxDepth;
+		long totalWaitNanos;
+		long maxWaitNanos;
+	}
+
+	public record ClassStatsSnapshot(
+		String trafficClass,
+		long enqueued,
+		long sent,
+		long superseded,
+		int queueDepth,
+		int maxQueueDepth,
+		long avgWaitMicros,
+		long maxWaitMicros
+	) {}
+
+}
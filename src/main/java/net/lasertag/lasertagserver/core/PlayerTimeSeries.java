@@ -0,0 +1,247 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Player;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-player health, score and online state plus team scores, sampled once a second into fixed-size rings for live
+ * charts. Three tiers keep the last 10 minutes at 1 s, the last 2 hours at 10 s and the last 12 hours at 1 min; each
+ * coarser tier is fed by averaging (health) or taking the last value (everything else) of the tier below, so memory
+ * is fixed no matter how long a match runs. Sampling writes into preallocated arrays and does not allocate.
+ * <p>
+ * Every tier is a ring of rows; a row is {@link #SERIES} ints: health, score and online (0/1) for each player id,
+ * then the score of each team id.
+ */
+public class PlayerTimeSeries implements MatchObserver {
+
+	public static final int SAMPLE_INTERVAL_MILLIS = 1000;
+
+	static final int PLAYERS = ActorRegistry.PLAYER_COUNT;
+	static final int TEAMS = 6;
+	static final int SERIES = PLAYERS * 3 + TEAMS;
+
+	private static final int HEALTH = 0;
+	private static final int SCORE = 1;
+	private static final int ONLINE = 2;
+
+	private static final int BINARY_MAGIC = 0x4C545453; // "LTTS"
+
+	private final ActorRegistry actorRegistry;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Tier[] tiers = {
+		new Tier(1, 600),
+		new Tier(10, 720),
+		new Tier(6, 720)
+	};
+	private final int[] latest = new int[SERIES];
+	private final int[] teamScores = new int[TEAMS];
+	private volatile boolean resetRequested;
+
+	public PlayerTimeSeries(ActorRegistry actorRegistry) {
+		this.actorRegistry = actorRegistry;
+	}
+
+	@Override
+	public void onMatchStarted(GameType gameType, long now) {
+		resetRequested = true;
+	}
+
+	@Override
+	public void onTeamScoreChanged(int teamId, int score, long now) {
+		if (teamId >= 0 && teamId < TEAMS) {
+			teamScores[teamId] = score;
+		}
+	}
+
+	// every SAMPLE_INTERVAL_MILLIS, see LasertagEngine
+	public void sample() {
+		long now = System.currentTimeMillis();
+		lock.lock();
+		try {
+			if (resetRequested) {
+				resetRequested = false;
+				Arrays.fill(teamScores, 0);
+				for (Tier tier : tiers) {
+					tier.clear();
+				}
+			}
+			List<Actor> actors = actorRegistry.getActors();
+			for (int i = 0; i < actors.size(); i++) {
+				if (actors.get(i) instanceof Player player && player.getId() >= 0 && player.getId() < PLAYERS) {
+					int column = player.getId() * 3;
+					latest[column + HEALTH] = player.getHealth();
+					latest[column + SCORE] = player.getScore();
+					latest[column + ONLINE] = player.isOnline() ? 1 : 0;
+				}
+			}
+			System.arraycopy(teamScores, 0, latest, PLAYERS * 3, TEAMS);
+			tiers[0].push(now, latest, 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Points of one tier newer than {@code sinceMillis}, one array per series, oldest first.
+	 */
+	public Columns query(int tierIndex, long sinceMillis) {
+		lock.lock();
+		try {
+			Tier tier = tiers[Math.max(0, Math.min(tierIndex, tiers.length - 1))];
+			int first = tier.firstAfter(sinceMillis);
+			int points = tier.size() - first;
+			long[] timestamps = new long[points];
+			int[][] values = new int[SERIES][points];
+			for (int point = 0; point < points; point++) {
+				int row = tier.row(first + point);
+				timestamps[point] = tier.timestamps[row];
+				for (int series = 0; series < SERIES; series++) {
+					values[series][point] = tier.values[row * SERIES + series];
+				}
+			}
+			List<PlayerColumns> players = new ArrayList<>(PLAYERS);
+			for (int id = 0; id < PLAYERS; id++) {
+				players.add(new PlayerColumns(id, actorRegistry.getPlayerById(id).getName(),
+					values[id * 3 + HEALTH], values[id * 3 + SCORE], values[id * 3 + ONLINE]));
+			}
+			List<TeamColumns> teams = new ArrayList<>(TEAMS);
+			for (int team = 0; team < TEAMS; team++) {
+				teams.add(new TeamColumns(team, values[PLAYERS * 3 + team]));
+			}
+			return new Columns(tier.intervalMillis(), timestamps, players, teams);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Same data as {@link #query} as big-endian binary: magic {@code LTTS}, interval millis int, point count int,
+	 * series count int, the timestamps as longs, then each series' values as ints (player 0 health, score, online,
+	 * player 1 ..., then team scores).
+	 */
+	public byte[] queryBinary(int tierIndex, long sinceMillis) {
+		lock.lock();
+		try {
+			Tier tier = tiers[Math.max(0, Math.min(tierIndex, tiers.length - 1))];
+			int first = tier.firstAfter(sinceMillis);
+			int points = tier.size() - first;
+			ByteBuffer buffer = ByteBuffer.allocate(16 + points * 8 + SERIES * points * 4);
+			buffer.putInt(BINARY_MAGIC).putInt(tier.intervalMillis()).putInt(points).putInt(SERIES);
+			for (int point = 0; point < points; point++) {
+				buffer.putLong(tier.timestamps[tier.row(first + point)]);
+			}
+			for (int series = 0; series < SERIES; series++) {
+				for (int point = 0; point < points; point++) {
+					buffer.putInt(tier.values[tier.row(first + point) * SERIES + series]);
+				}
+			}
+			return buffer.array();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static boolean isAveraged(int series) {
+		return series < PLAYERS * 3 && series % 3 == HEALTH;
+	}
+
+	private final class Tier {
+
+		private final int factor; // samples of the tier below per point
+		private final int capacity;
+		private final long[] timestamps;
+		private final int[] values;
+		private long count;
+
+		// accumulation of the tier below towards the next point
+		private final long[] sums = new long[SERIES];
+		private final int[] row = new int[SERIES];
+		private int accumulated;
+
+		private Tier(int factor, int capacity) {
+			this.factor = factor;
+			this.capacity = capacity;
+			this.timestamps = new long[capacity];
+			this.values = new int[capacity * SERIES];
+		}
+
+		private int intervalMillis() {
+			int interval = SAMPLE_INTERVAL_MILLIS;
+			for (Tier tier : tiers) {
+				interval *= tier.factor;
+				if (tier == this) {
+					break;
+				}
+			}
+			return interval;
+		}
+
+		/**
+		 * Adds one point of the tier below; every {@code factor} of them make a point of this tier.
+		 */
+		private void push(long timestamp, int[] point, int index) {
+			for (int series = 0; series < SERIES; series++) {
+				sums[series] += point[series];
+			}
+			if (++accumulated < factor) {
+				return;
+			}
+			for (int series = 0; series < SERIES; series++) {
+				row[series] = isAveraged(series) ? (int) (sums[series] / factor) : point[series];
+				sums[series] = 0;
+			}
+			accumulated = 0;
+			int slot = (int) (count % capacity);
+			timestamps[slot] = timestamp;
+			System.arraycopy(row, 0, values, slot * SERIES, SERIES);
+			count++;
+			if (index + 1 < tiers.length) {
+				tiers[index + 1].push(timestamp, row, index + 1);
+			}
+		}
+
+		private void clear() {
+			count = 0;
+			accumulated = 0;
+			Arrays.fill(sums, 0);
+		}
+
+		private int size() {
+			return (int) Math.min(count, capacity);
+		}
+
+		// ring slot of the i-th oldest point
+		private int row(int i) {
+			return (int) ((count - size() + i) % capacity);
+		}
+
+		private int firstAfter(long sinceMillis) {
+			int low = 0;
+			int high = size();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (timestamps[row(mid)] <= sinceMillis) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+	}
+
+	public record PlayerColumns(int id, String name, int[] health, int[] score, int[] online) {}
+
+	public record TeamColumns(int teamId, int[] score) {}
+
+	public record Columns(int intervalMillis, long[] timestamps, List<PlayerColumns> players, List<TeamColumns> teams) {}
+
+}
@@ -0,0 +1,190 @@
+package net.lasertag.lasertagserver.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Every preset in the presets directory, parsed, validated and converted to a {@link SettingsSnapshot} up front, so
+ * switching presets is a map lookup. A {@link WatchService} keeps the cache in step with files added, edited or
+ * removed by hand; files that fail validation are logged and skipped (an edited preset that turns invalid keeps
+ * its last valid version). Writes go to a temp file that is then renamed over the target, so a crash never leaves
+ * a half-written preset.
+ */
+@Slf4j
+public class PresetRepository {
+
+	private static final String JSON_EXTENSION = ".json";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final ObjectMapper objectMapper;
+	private final ThreadFactory loopThreadFactory;
+	private final Path directory;
+
+	// replaced as a whole under lock on every change, readers never see a partially updated map
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile Map<String, SettingsSnapshot> presets = Map.of();
+	private WatchService watchService;
+
+	public PresetRepository(ThreadFactory loopThreadFactory, Path directory) {
+		this.loopThreadFactory = loopThreadFactory;
+		this.directory = directory;
+		this.objectMapper = new ObjectMapper();
+		this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	public void init() throws IOException {
+		Files.createDirectories(directory);
+		reloadAll();
+		watchService = directory.getFileSystem().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+			StandardWatchEventKinds.ENTRY_DELETE);
+		loopThreadFactory.newThread(this::watch).start();
+	}
+
+	private void reloadAll() throws IOException {
+		Map<String, SettingsSnapshot> loaded = new TreeMap<>();
+		try (var files = Files.newDirectoryStream(directory, "*" + JSON_EXTENSION)) {
+			for (Path file : files) {
+				var preset = parse(file);
+				if (preset != null) {
+					loaded.put(nameOf(file), preset);
+				}
+			}
+		}
+		lock.lock();
+		try {
+			presets = loaded;
+		} finally {
+			lock.unlock();
+		}
+		log.info("Loaded {} presets from {}", loaded.size(), directory.toAbsolutePath());
+	}
+
+	public void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+		}
+	}
+
+	public List<String> list() {
+		return new ArrayList<>(presets.keySet());
+	}
+
+	/**
+	 * The validated preset, or null if there is no valid preset with that name.
+	 */
+	public SettingsSnapshot get(String name) {
+		return presets.get(stripExtension(name));
+	}
+
+	public void save(String name, SettingsSnapshot settings) throws IOException {
+		name = stripExtension(name);
+		writeAtomically(directory.resolve(name + JSON_EXTENSION), objectMapper.writeValueAsBytes(settings.toPreset()));
+		put(name, settings);
+		log.info("Saved preset '{}' to {}", name, directory.toAbsolutePath());
+	}
+
+	/**
+	 * Replaces {@code target} with {@code bytes} through a temp file in the same directory and an atomic rename.
+	 */
+	static void writeAtomically(Path target, byte[] bytes) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + TEMP_EXTENSION);
+		Files.write(temp, bytes);
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						reloadAll();
+						continue;
+					}
+					Path file = directory.resolve((Path) event.context());
+					if (!file.toString().endsWith(JSON_EXTENSION)) {
+						continue;
+					}
+					if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+						remove(nameOf(file));
+						log.info("Preset '{}' removed", nameOf(file));
+					} else {
+						var preset = parse(file);
+						if (preset != null) {
+							put(nameOf(file), preset);
+						}
+					}
+				}
+				if (!key.reset()) {
+					log.warn("Presets directory {} is no longer watched", directory.toAbsolutePath());
+					return;
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// shutting down
+		} catch (IOException e) {
+			log.error("Preset watcher stopped: {}", e.getMessage(), e);
+		}
+	}
+
+	private SettingsSnapshot parse(Path file) {
+		try {
+			var settings = SettingsSnapshot.fromPreset(objectMapper.readValue(file.toFile(), GameSettingsPreset.class), 0);
+			String problem = settings.validate();
+			if (problem != null) {
+				log.warn("Ignoring invalid preset {}: {}", file.getFileName(), problem);
+				return null;
+			}
+			return settings;
+		} catch (IOException | RuntimeException e) {
+			log.warn("Ignoring unreadable preset {}: {}", file.getFileName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private void put(String name, SettingsSnapshot settings) {
+		lock.lock();
+		try {
+			Map<String, SettingsSnapshot> updated = new TreeMap<>(presets);
+			updated.put(name, settings);
+			presets = updated;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(String name) {
+		lock.lock();
+		try {
+			Map<String, SettingsSnapshot> updated = new TreeMap<>(presets);
+			updated.remove(name);
+			presets = updated;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static String nameOf(Path file) {
+		return stripExtension(file.getFileName().toString());
+	}
+
+	private static String stripExtension(String fileName) {
+		return fileName.endsWith(JSON_EXTENSION) ? fileName.substring(0, fileName.length() - JSON_EXTENSION.length()) : fileName;
+	}
+
+}
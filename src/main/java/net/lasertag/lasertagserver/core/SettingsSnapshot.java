@@ -0,0 +1,214 @@
+package net.lasertag.lasertagserver.core;
+
+import lombok.Getter;
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable version of the game settings. {@link GameSettings} publishes the current one through an atomic
+ * reference, so any thread can read a consistent set of values without locking; changes go through the
+ * {@code with...} methods, which return a new snapshot with the next version (or this one if nothing changed).
+ * Player settings are indexed by player id.
+ */
+@Getter
+public final class SettingsSnapshot {
+
+	public record PlayerConfig(String name, int bulletsMax, int damage, int teamId) {}
+
+	public record DispenserConfig(int timeout, int amount) {}
+
+	private final long version;
+	private final int fragLimit;
+	private final GameType gameType;
+	private final int timeLimitMinutes;
+	private final StatsDelivery statsDelivery;
+	private final List<PlayerConfig> players;
+	private final DispenserConfig healthDispenserSettings;
+	private final DispenserConfig ammoDispenserSettings;
+
+	private SettingsSnapshot(long version, int fragLimit, GameType gameType, int timeLimitMinutes, StatsDelivery statsDelivery,
+							 List<PlayerConfig> players, DispenserConfig healthDispenserSettings, DispenserConfig ammoDispenserSettings) {
+		this.version = version;
+		this.fragLimit = fragLimit;
+		this.gameType = gameType;
+		this.timeLimitMinutes = timeLimitMinutes;
+		this.statsDelivery = statsDelivery;
+		this.players = List.copyOf(players);
+		this.healthDispenserSettings = healthDispenserSettings;
+		this.ammoDispenserSettings = ammoDispenserSettings;
+	}
+
+	/**
+	 * Converts a preset as stored on disk; players missing from it, or fields left out, get the defaults.
+	 */
+	public static SettingsSnapshot fromPreset(GameSettingsPreset preset, long version) {
+		var defaults = new GameSettingsPreset();
+		List<PlayerConfig> players = new ArrayList<>(ActorRegistry.PLAYER_COUNT);
+		for (int id = 0; id < ActorRegistry.PLAYER_COUNT; id++) {
+			var fallback = toConfig(defaults.getPlayerSettings(id), null);
+			players.add(toConfig(preset.getPlayerSettings(id), fallback));
+		}
+		return new SettingsSnapshot(version, preset.getFragLimit(), preset.getGameType(), preset.getTimeLimitMinutes(),
+			preset.getStatsDelivery(), players, toConfig(preset.getHealthDispenserSettings()), toConfig(preset.getAmmoDispenserSettings()));
+	}
+
+	private static PlayerConfig toConfig(GameSettingsPreset.PlayerSettings settings, PlayerConfig fallback) {
+		if (settings == null) {
+			return fallback;
+		}
+		return new PlayerConfig(
+			settings.getName() != null ? settings.getName() : fallback.name(),
+			settings.getBulletsMax() != null ? settings.getBulletsMax() : fallback.bulletsMax(),
+			settings.getDamage() != null ? settings.getDamage() : fallback.damage(),
+			settings.getTeamId() != null ? settings.getTeamId() : fallback.teamId());
+	}
+
+	private static DispenserConfig toConfig(GameSettingsPreset.DispenserSettings settings) {
+		return new DispenserConfig(settings.getTimeout(), settings.getAmount());
+	}
+
+	public GameSettingsPreset toPreset() {
+		var preset = new GameSettingsPreset();
+		preset.setFragLimit(fragLimit);
+		preset.setGameType(gameType);
+		preset.setTimeLimitMinutes(timeLimitMinutes);
+		preset.setStatsDelivery(statsDelivery);
+		for (int id = 0; id < players.size(); id++) {
+			var player = players.get(id);
+			preset.setPlayerSettings(id, new GameSettingsPreset.PlayerSettings(player.name(), player.bulletsMax(), player.damage(), player.teamId()));
+		}
+		preset.setHealthDispenserSettings(new GameSettingsPreset.DispenserSettings(healthDispenserSettings.timeout(), healthDispenserSettings.amount()));
+		preset.setAmmoDispenserSettings(new GameSettingsPreset.DispenserSettings(ammoDispenserSettings.timeout(), ammoDispenserSettings.amount()));
+		return preset;
+	}
+
+	/**
+	 * Why these settings cannot be played or saved as a preset, or null if they can. Presets on disk and settings
+	 * changed from the console are held to the same rules.
+	 */
+	public String validate() {
+		if (gameType == null || statsDelivery == null) {
+			return "missing game type or stats delivery";
+		}
+		if (fragLimit <= 0 || timeLimitMinutes <= 0) {
+			return "frag limit and time limit must be positive";
+		}
+		for (var player : players) {
+			if (player.name() == null || player.name().isBlank()) {
+				return "player without a name";
+			}
+			if (player.teamId() < Messaging.TEAM_RED || player.teamId() > Messaging.TEAM_CYAN) {
+				return "unknown team " + player.teamId() + " for " + player.name();
+			}
+		}
+		for (var dispenser : List.of(healthDispenserSettings, ammoDispenserSettings)) {
+			if (dispenser.timeout() <= 0 || dispenser.amount() <= 0) {
+				return "dispenser timeout and amount must be positive";
+			}
+		}
+		return null;
+	}
+
+	public SettingsSnapshot withMatch(int timeLimitMinutes, int fragLimit, GameType gameType) {
+		if (timeLimitMinutes == this.timeLimitMinutes && fragLimit == this.fragLimit && gameType == this.gameType) {
+			return this;
+		}
+		return new SettingsSnapshot(version + 1, fragLimit, gameType, timeLimitMinutes, statsDelivery, players,
+			healthDispenserSettings, ammoDispenserSettings);
+	}
+
+	public SettingsSnapshot withStatsDelivery(StatsDelivery statsDelivery) {
+		if (statsDelivery == this.statsDelivery) {
+			return this;
+		}
+		return new SettingsSnapshot(version + 1, fragLimit, gameType, timeLimitMinutes, statsDelivery, players,
+			healthDispenserSettings, ammoDispenserSettings);
+	}
+
+	/**
+	 * Null fields of {@code settings} keep their current value.
+	 */
+	public SettingsSnapshot withPlayer(int playerId, GameSettingsPreset.PlayerSettings settings) {
+		var current = getPlayerSettings(playerId);
+		if (current == null) {
+			throw new IllegalArgumentException("Unknown player id: " + playerId);
+		}
+		var updated = toConfig(settings, current);
+		if (updated.teamId() < Messaging.TEAM_RED || updated.teamId() > Messaging.TEAM_CYAN) {
+			throw new IllegalArgumentException("Unknown team " + updated.teamId() + " for player " + playerId);
+		}
+		if (updated.equals(current)) {
+			return this;
+		}
+		List<PlayerConfig> updatedPlayers = new ArrayList<>(players);
+		updatedPlayers.set(playerId, updated);
+		return new SettingsSnapshot(version + 1, fragLimit, gameType, timeLimitMinutes, statsDelivery, updatedPlayers,
+			healthDispenserSettings, ammoDispenserSettings);
+	}
+
+	/**
+	 * Null values keep their current value.
+	 */
+	public SettingsSnapshot withDispenser(Actor.Type type, Integer timeout, Integer amount) {
+		var current = getDispenserSettings(type);
+		var updated = new DispenserConfig(timeout != null ? timeout : current.timeout(), amount != null ? amount : current.amount());
+		if (updated.equals(current)) {
+			return this;
+		}
+		return new SettingsSnapshot(version + 1, fragLimit, gameType, timeLimitMinutes, statsDelivery, players,
+			type == Actor.Type.HEALTH ? updated : healthDispenserSettings,
+			type == Actor.Type.AMMO ? updated : ammoDispenserSettings);
+	}
+
+	/**
+	 * The same settings published as a later version, used when a whole preset replaces the current one.
+	 */
+	SettingsSnapshot withVersion(long version) {
+		return new SettingsSnapshot(version, fragLimit, gameType, timeLimitMinutes, statsDelivery, players,
+			healthDispenserSettings, ammoDispenserSettings);
+	}
+
+	public boolean isTeamPlay() {
+		return gameType.isTeamBased();
+	}
+
+	public PlayerConfig getPlayerSettings(int playerId) {
+		return playerId >= 0 && playerId < players.size() ? players.get(playerId) : null;
+	}
+
+	public DispenserConfig getDispenserSettings(Actor.Type type) {
+		if (type == Actor.Type.HEALTH) {
+			return healthDispenserSettings;
+		} else if (type == Actor.Type.AMMO) {
+			return ammoDispenserSettings;
+		}
+		throw new IllegalArgumentException("Unknown dispenser type: " + type);
+	}
+
+	public Map<String, Object> getAllSettings() {
+		Map<String, Object> allSettings = new HashMap<>();
+		Map<String, Object> general = new HashMap<>();
+		general.put("fragLimit", fragLimit);
+		general.put("gameType", gameType.name());
+		general.put("timeLimitMinutes", timeLimitMinutes);
+		general.put("statsDelivery", statsDelivery.name());
+		allSettings.put("general", general);
+		Map<Integer, PlayerConfig> playerSettings = new HashMap<>();
+		for (int id = 0; id < players.size(); id++) {
+			playerSettings.put(id, players.get(id));
+		}
+		allSettings.put("players", playerSettings);
+		allSettings.put("dispensers", Map.of(
+			"health", healthDispenserSettings,
+			"ammo", ammoDispenserSettings
+		));
+		allSettings.put("version", version);
+		return allSettings;
+	}
+
+}
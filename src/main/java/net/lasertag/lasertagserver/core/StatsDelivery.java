@@ -0,0 +1,23 @@
+package net.lasertag.lasertagserver.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * How FULL_STATS snapshots reach the phones. Phones that don't announce {@code PROTOCOL_SHARED_STATS}
+ * always get unicast, whatever the preset says.
+ */
+public enum StatsDelivery {
+	UNICAST,
+	MULTICAST;
+
+	public static final String MULTICAST_GROUP = "239.255.42.99";
+
+	/**
+	 * Like {@link #valueOf}, but reads {@code BROADCAST} from older presets as {@link #MULTICAST}, which is how it
+	 * was delivered.
+	 */
+	@JsonCreator
+	public static StatsDelivery fromName(String name) {
+		return "BROADCAST".equals(name) ? MULTICAST : valueOf(name);
+	}
+}
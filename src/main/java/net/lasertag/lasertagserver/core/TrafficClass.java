@@ -0,0 +1,48 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+
+/**
+ * Outbound priority classes, highest first. Ping ACKs come right after CONTROL: they are tiny and one per ping,
+ * and a device that stops getting them under a steady EVENT/STATE load would count itself disconnected.
+ */
+public enum TrafficClass {
+	CONTROL,
+	ACK,
+	EVENT,
+	STATE;
+
+	private static final TrafficClass[] BY_TYPE_ID = new TrafficClass[256];
+
+	static {
+		java.util.Arrays.fill(BY_TYPE_ID, EVENT);
+		for (MessageType type : new MessageType[] {MessageType.GAME_START, MessageType.GAME_OVER, MessageType.GAME_TIMER,
+			MessageType.LOST_CONNECTION, MessageType.DISPENSER_SET_TIMEOUT, MessageType.MOCK_DEVICE_EVENT}) {
+			BY_TYPE_ID[type.id() & 0xFF] = CONTROL;
+		}
+		BY_TYPE_ID[MessageType.FULL_STATS.id() & 0xFF] = STATE;
+		BY_TYPE_ID[MessageType.PING.id() & 0xFF] = ACK;
+		// compact frames carry the same message id with the compact flag set
+		for (int id = 0; id < Messaging.COMPACT_FLAG; id++) {
+			BY_TYPE_ID[id | Messaging.COMPACT_FLAG] = BY_TYPE_ID[id];
+		}
+	}
+
+	public static TrafficClass of(byte typeId) {
+		return BY_TYPE_ID[typeId & 0xFF];
+	}
+
+	// a BATCH frame is as urgent as the most urgent event inside it
+	public static TrafficClass mostUrgent(TrafficClass a, TrafficClass b) {
+		return a.ordinal() <= b.ordinal() ? a : b;
+	}
+
+	public boolean isSupersedable() {
+		return this == STATE;
+	}
+
+	public boolean isRateLimited() {
+		return this == EVENT || this == STATE;
+	}
+}
@@ -1,27 +1,28 @@
 package net.lasertag.lasertagserver.core;
 
-import jakarta.annotation.PostConstruct;
 import lombok.Setter;
 import net.lasertag.lasertagserver.LanIpUtils;
 import net.lasertag.lasertagserver.model.*;
+import net.lasertag.lasertagserver.telemetry.*;
 
 import static net.lasertag.lasertagserver.model.Messaging.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.net.BindException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
-@Component
 public class UdpServer {
 	private static final Logger log = LoggerFactory.getLogger(UdpServer.class);
 
@@ -33,39 +34,108 @@ public class UdpServer {
 	private final Map<Actor, Long> lastPingTime;
 
 	private final long pingTimeout = 10000;
+	// an online device silent for longer than this has probably missed events and gets a resync too
+	private final long resyncAfterMillis;
+	// set by handlePacketFromClient when the step sent a resync bundle, only touched by the receive thread
+	private long resyncGapMillis = -1;
 
 	private volatile boolean running = true;
+	// false on a hot standby until it takes over the port, see ReplicationService
+	private volatile boolean serving;
+	private final boolean standby;
+	// startup-to-first-packet is reported once, a standby's first packet comes after a takeover and is not a startup
+	private boolean firstPacketProcessed;
+	private final long firstPacketBudgetMillis;
 	private final int port;
 	private final int devicePort;
 
-	private final ThreadPoolTaskExecutor daemonExecutor;
+	// the receive loop and the outbound scheduler each run on a thread of their own for the life of the server
+	private final ThreadFactory loopThreadFactory;
+	private final Metrics metrics;
+	private final Tracer tracer;
+	private final PacketInspector packetInspector;
+	// per-packet text logging, the packet inspector captures the same traffic without formatting it
+	private final boolean logPackets;
 
-	public UdpServer(ActorRegistry actorRegistry, GameSettings gameSettings, ThreadPoolTaskExecutor daemonExecutor) {
+	private final OutboundScheduler outboundScheduler;
+	private final IngressGuard ingressGuard;
+	private final MessageDispatcher dispatcher;
+
+	private record SharedStatsTarget(StatsDelivery delivery, InetAddress address) {}
+
+	// interface lookup is slow, so the shared address is resolved once per delivery mode change
+	private volatile SharedStatsTarget sharedStatsTarget;
+
+	// name dictionary of compact clients, see CompactCodec; the version moves on whenever a roster field changes
+	private final ReentrantLock rosterLock = new ReentrantLock();
+	private byte[] rosterContent = new byte[0];
+	private volatile int rosterVersion;
+	private byte[] rosterFrame;
+	// roster version each compact device, and the shared address, was last sent
+	private final Map<Actor, Integer> rosterVersionSent = new ConcurrentHashMap<>();
+	private volatile int sharedRosterVersionSent = -1;
+
+	// set while a game step runs, events to batch-capable actors are held here until the step ends
+	private final ThreadLocal<OutboundBatch> currentBatch = new ThreadLocal<>();
+
+	public UdpServer(ActorRegistry actorRegistry, GameSettings gameSettings, ThreadFactory loopThreadFactory, Metrics metrics, Tracer tracer,
+					 PacketInspector packetInspector, EngineConfig config) {
 		this.port = 9878;
 		this.devicePort = 1234;
 		this.actorRegistry = actorRegistry;
 		this.gameSettings = gameSettings;
-		this.daemonExecutor = daemonExecutor;
+		this.loopThreadFactory = loopThreadFactory;
+		this.metrics = metrics;
+		this.tracer = tracer;
+		this.packetInspector = packetInspector;
+		this.logPackets = config.logPackets();
 		this.lastPingTime = new HashMap<>();
+		this.outboundScheduler = new OutboundScheduler(devicePort, config.outboundRatePerSecond(), config.outboundBurst());
+		this.outboundScheduler.setTracer(tracer);
+		this.ingressGuard = new IngressGuard(config.duplicateWindowMillis());
+		this.resyncAfterMillis = config.resyncAfterMillis();
+		this.standby = config.standby();
+		this.firstPacketProcessed = config.standby();
+		this.firstPacketBudgetMillis = config.firstPacketBudgetMillis();
+		this.dispatcher = new MessageDispatcher(actorRegistry);
+		MessageDispatcher.Handler<Actor> acknowledge = (actor, message, now) -> sendAckToClient(actor);
+		dispatcher.register(MessageType.PLAYER_PING, Actor.Type.PLAYER, MessageDispatcher.ACCEPT_ALL, acknowledge);
+		dispatcher.register(MessageType.HEALTH_DISPENSER_PING, Actor.Type.HEALTH, MessageDispatcher.ACCEPT_ALL, acknowledge);
+		dispatcher.register(MessageType.AMMO_DISPENSER_PING, Actor.Type.AMMO, MessageDispatcher.ACCEPT_ALL, acknowledge);
+		dispatcher.register(MessageType.ZONE_PING, Actor.Type.ZONE, MessageDispatcher.ACCEPT_ALL, acknowledge);
 	}
 
-	@org.springframework.context.event.EventListener(ApplicationReadyEvent.class)
-	public void logLanIp() {
-		String webConsoleUrl = "http://" + LanIpUtils.findLanIp().orElse("<unknown>") + ":8080";
-		log.info("Web console is available at: {}", webConsoleUrl);
+	/**
+	 * Where the game registers the handlers of device events.
+	 */
+	public MessageDispatcher getDispatcher() {
+		return dispatcher;
 	}
 
-	@PostConstruct
-	public void init() {
-		daemonExecutor.execute(this::startUdpServer);
+	public void init() throws SocketException {
+		if (!standby) {
+			// bound before the engine start returns, so devices are served while the web console is still starting
+			var socket = new DatagramSocket(port);
+			long boundMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+			metrics.registerGauge("lasertag_startup_udp_bound_millis", () -> boundMillis);
+			log.info("Device port {} bound {} ms after JVM start", port, boundMillis);
+			loopThreadFactory.newThread(() -> serve(socket)).start();
+		}
+		LanIpUtils.findLanInterface().ifPresent(outboundScheduler::setMulticastInterface);
+		loopThreadFactory.newThread(outboundScheduler::run).start();
+		for (TrafficClass trafficClass : TrafficClass.values()) {
+			metrics.registerGauge("lasertag_outbound_queue_depth_" + trafficClass.name().toLowerCase(),
+				() -> outboundScheduler.getQueueDepth(trafficClass));
+		}
 		Runtime.getRuntime().addShutdownHook(new Thread(this::stopUdpServer));
 		
 		
 	}
 
-	private void startUdpServer() {
-		try (DatagramSocket serverSocket = new DatagramSocket(port)) {
+	private void serve(DatagramSocket socket) {
+		try (DatagramSocket serverSocket = socket) {
 			serverSocket.setSoTimeout(1000);
+			serving = true;
 			log.info("Game Server started on port: {} thread: {}", port, Thread.currentThread().getName());
 			byte[] receiveBuffer = new byte[64];
 			while (running) {
@@ -81,65 +151,250 @@ public class UdpServer {
 		}
 	}
 
-	private void sendAckToClient(InetAddress ip) {
-		try (DatagramSocket clientSocket = new DatagramSocket()) {
-			byte[] sendData = new byte[] {MessageType.PING.id()};
-			DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, ip, devicePort);
-			clientSocket.send(sendPacket);
-		} catch (Exception e) {
-			log.error("Error sending command to client: {}", e.getMessage(), e);
+	/**
+	 * Binds the device port on a standby whose primary is gone. The replicated devices count as freshly pinged, so
+	 * they are not dropped before their next ping arrives. Returns once the port is bound; the old process may still
+	 * hold it for a moment, so binding is retried for up to {@code bindTimeoutMillis}.
+	 */
+	public void takeOver(long bindTimeoutMillis) throws SocketException, InterruptedException {
+		long deadline = System.currentTimeMillis() + bindTimeoutMillis;
+		DatagramSocket socket;
+		while (true) {
+			try {
+				socket = new DatagramSocket(port);
+				break;
+			} catch (BindException e) {
+				if (System.currentTimeMillis() >= deadline) {
+					throw e;
+				}
+				Thread.sleep(20);
+			}
+		}
+		long now = System.currentTimeMillis();
+		for (Actor actor : actorRegistry.getActors()) {
+			if (actor.isOnline()) {
+				lastPingTime.put(actor, now);
+			}
+		}
+		serving = true;
+		DatagramSocket bound = socket;
+		loopThreadFactory.newThread(() -> serve(bound)).start();
+	}
+
+	/**
+	 * Whether this instance owns the device port; false on a standby that has not taken over.
+	 */
+	public boolean isServing() {
+		return serving;
+	}
+
+	private void sendAckToClient(Actor actor) {
+		var bytes = new byte[] {MessageType.PING.id()};
+		packetInspector.recordOutbound(actor, actor.getClientIp(), bytes);
+		outboundScheduler.enqueue(actor.getClientIp(), bytes, TrafficClass.ACK);
+		metrics.recordPacketOut(bytes[0]);
+	}
+
+	/**
+	 * Runs a game step so that everything it sends to the same batch-capable actor goes out as one datagram.
+	 * Nested calls join the outer step.
+	 */
+	public void runBatched(Runnable step) {
+		if (currentBatch.get() != null) {
+			step.run();
+			return;
+		}
+		var batch = new OutboundBatch();
+		currentBatch.set(batch);
+		try {
+			step.run();
+		} finally {
+			currentBatch.remove();
+			batch.flush((actor, bytes, trafficClass) -> sendBytesToClient(actor, actor.getClientIp(), bytes, trafficClass));
+		}
+	}
+
+	private void sendBytesToActor(Actor actor, byte[] bytes) {
+		var batch = currentBatch.get();
+		if (batch != null && actor.getProtocolVersion() >= PROTOCOL_BATCH && actor.isOnline()) {
+			batch.add(actor, bytes);
+		} else {
+			sendBytesToClient(actor, actor.getClientIp(), bytes, TrafficClass.of(bytes[0]));
 		}
 	}
 
-	private void sendBytesToClient(InetAddress ip, byte[] bytes) {
+	// actor is null for datagrams addressed to several devices at once
+	private void sendBytesToClient(Actor actor, InetAddress ip, byte[] bytes, TrafficClass trafficClass) {
 		if (ip == null) {
 			return;
 		}
-		try (DatagramSocket clientSocket = new DatagramSocket()) {
-			DatagramPacket sendPacket = new DatagramPacket(bytes, bytes.length, ip, devicePort);
-			clientSocket.send(sendPacket);
-			log.debug("Bytes to {}:{} len={}, data: {}", sendPacket.getAddress(), sendPacket.getPort(), sendPacket.getLength(), Arrays.toString(sendPacket.getData()));
-		} catch (Exception e) {
-			log.error("Error sending command to client: {}", e.getMessage(), e);
+		outboundScheduler.enqueue(ip, bytes, trafficClass);
+		metrics.recordPacketOut(bytes[0]);
+		if (bytes[0] == MessageType.BATCH.id()) {
+			// per-type counts stay meaningful with batching on: a batch counts as BATCH and as each event it carries
+			Messaging.forEachBatchedType(bytes, type -> metrics.recordPacketOut((byte) type));
 		}
+		packetInspector.recordOutbound(actor, ip, bytes);
+		if (logPackets && log.isDebugEnabled()) {
+			log.debug("Bytes to {}:{} len={}, class={}, data: {}", ip, devicePort, bytes.length, trafficClass, Arrays.toString(bytes));
+		}
+	}
+
+	public List<OutboundScheduler.ClassStatsSnapshot> getOutboundStats() {
+		return outboundScheduler.getStats();
+	}
+
+	public IngressGuard.Stats getIngressStats() {
+		return ingressGuard.getStats();
 	}
 
 	public void stopUdpServer() {
 		running = false;
-		daemonExecutor.shutdown();
+		outboundScheduler.stop();
 		log.info("{}: Stopping UDP Server...", this.getClass().getSimpleName());
 	}
 
 	private void processPacketFromClient(DatagramPacket packet) {
+		var jfrEvent = new PacketReceivedEvent();
+		jfrEvent.begin();
+		long start = System.nanoTime();
+		if (packet.getLength() > 0) {
+			metrics.recordPacketIn(packet.getData()[0]);
+		}
+		boolean admitted = ingressGuard.admit(packet.getData(), packet.getLength(), start);
+		packetInspector.recordInbound(packet.getData(), packet.getLength(), packet.getAddress(), !admitted);
+		if (!admitted) {
+			return;
+		}
+		boolean traced = isTraced(packet);
+		if (traced) {
+			tracer.beginTrace();
+		}
+		try {
+			runBatched(() -> handlePacketFromClient(packet));
+			if (resyncGapMillis >= 0) {
+				// the batch has been flushed, the bundle is queued for the device
+				metrics.recordReconnect(resyncGapMillis, System.nanoTime() - start);
+				resyncGapMillis = -1;
+			}
+		} finally {
+			if (traced) {
+				tracer.record(Tracer.PACKET_SPAN, packet.getData()[1], packet.getData()[0], start, System.nanoTime());
+				tracer.endTrace();
+			}
+		}
+		metrics.recordPacketService(System.nanoTime() - start);
+		if (!firstPacketProcessed) {
+			firstPacketProcessed = true;
+			reportFirstPacket();
+		}
+		if (jfrEvent.shouldCommit() && packet.getLength() >= 2) {
+			jfrEvent.actorId = packet.getData()[1];
+			jfrEvent.messageType = Messaging.getMessageTypeName(packet.getData()[0]);
+			jfrEvent.payloadSize = packet.getLength();
+			jfrEvent.commit();
+		}
+	}
+
+	private void reportFirstPacket() {
+		long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		metrics.registerGauge("lasertag_startup_first_packet_millis", () -> millis);
+		if (firstPacketBudgetMillis > 0 && millis > firstPacketBudgetMillis) {
+			log.warn("First device packet processed {} ms after JVM start, over the {} ms budget", millis, firstPacketBudgetMillis);
+		} else {
+			log.info("First device packet processed {} ms after JVM start", millis);
+		}
+	}
+
+	// steady-state pings only produce an ACK, tracing them would just push real events out of the ring
+	private static boolean isTraced(DatagramPacket packet) {
+		if (packet.getLength() < 2) {
+			return false;
+		}
+		boolean firstEverPing = packet.getLength() > 2 && packet.getData()[2] != 0; // as decoded by MessageFromClient
+		return !PING_GROUP.contains(packet.getData()[0]) || firstEverPing;
+	}
+
+	private void handlePacketFromClient(DatagramPacket packet) {
+		var resolvedEvent = new ActorResolvedEvent();
+		resolvedEvent.begin();
+		long decodeStart = System.nanoTime();
+		MessageFromClient message;
+		try {
+			message = new MessageFromClient(packet.getData(), packet.getLength());
+			tracer.record("decode", packet.getData()[1], packet.getData()[0], decodeStart, System.nanoTime());
+		} catch (RuntimeException e) {
+			metrics.recordDecodeFailure();
+			log.warn("Cannot decode message from {}: {}", packet.getAddress().getHostAddress(), e.getMessage());
+			return;
+		}
+		var route = dispatcher.route(message.getTypeId());
+		var actor = route == null ? null : dispatcher.resolve(route, message);
+		String rejection = route == null ? "no handler" : actor == null ? "unknown actor " + message.getActorId() : null;
+		// the validator and the handler see the same time
+		long now = System.currentTimeMillis();
 		try {
-			var message = new MessageFromClient(packet.getData(), packet.getLength());
-			var actor = actorRegistry.getActorByMessage(message);
-			if (actor.getClientIp() == null || message.isFirstEverMessage()) {
+			if (rejection == null) {
+				rejection = route.validator().validate(actor, message, now);
+			}
+			if (rejection != null) {
+				metrics.recordRejectedMessage();
+				log.warn("Rejected {} from {}: {}", message.getType().name(), packet.getAddress().getHostAddress(), rejection);
+				return;
+			}
+			if (resolvedEvent.shouldCommit()) {
+				resolvedEvent.actorId = actor.getId();
+				resolvedEvent.messageType = message.getType().name();
+				resolvedEvent.payloadSize = packet.getLength();
+				resolvedEvent.commit();
+			}
+			if (route.ping()) {
+				actor.setProtocolVersion(message.getProtocolVersion());
+			}
+			Long lastPing = lastPingTime.get(actor);
+			boolean reconnected = actor.getClientIp() == null || message.isFirstEverMessage();
+			if (reconnected) {
 				actor.setClientIp(packet.getAddress());
 				log.info("Connected {} ip = {} ", actor, actor.getClientIp());
 				gameEventsListener.refreshConsoleTable();
-				if (actor.getType() == Actor.Type.PLAYER) {
-					gameEventsListener.onPlayerJoinedOrLeft();
-				}
-				if (actor.getType() == Actor.Type.HEALTH || actor.getType() == Actor.Type.AMMO) {
-					sendSettingsToAllDispensers();
-				}
 			}
-			lastPingTime.put(actor, System.currentTimeMillis());
+			if (reconnected || (lastPing != null && now - lastPing > resyncAfterMillis)) {
+				// only the returning device is behind, everybody else already has the current state
+				gameEventsListener.onActorReconnected(actor);
+				resyncGapMillis = lastPing == null ? 0 : now - lastPing;
+			}
+			lastPingTime.put(actor, now);
 
-			if (PING_GROUP.contains(message.getTypeId())) {
-				sendAckToClient(actor.getClientIp());
+			if (route.ping()) {
+				route.handler().handle(actor, message, now);
 			} else {
-				log.info("Event {} from {} len={}, data: {}", message.getType().name(), actor, packet.getLength(), message);
-				gameEventsListener.onMessageFromPlayer((Player)actor, message);
+				if (logPackets) {
+					log.info("Event {} from {} len={}, data: {}", message.getType().name(), actor, packet.getLength(), message);
+				}
+				var appliedEvent = new GameEventAppliedEvent();
+				appliedEvent.begin();
+				long gameStart = System.nanoTime();
+				route.handler().handle(actor, message, now);
+				long gameEnd = System.nanoTime();
+				metrics.recordGameEvent(gameEnd - gameStart);
+				tracer.record("game", actor.getId(), message.getTypeId(), gameStart, gameEnd);
+				if (appliedEvent.shouldCommit()) {
+					appliedEvent.actorId = actor.getId();
+					appliedEvent.messageType = message.getType().name();
+					appliedEvent.payloadSize = packet.getLength();
+					appliedEvent.commit();
+				}
 			}
 		} catch (Exception e) {
 			log.error("Error parsing message from {}: {}", packet.getAddress().getHostAddress(), e.getMessage(), e);
 		}
 	}
 
-	@Scheduled(fixedDelay = 1000)
-	private void checkConnectedClients() {
+	// every second, see LasertagEngine
+	void checkConnectedClients() {
+		if (!serving) {
+			return; // a standby's online flags come from the primary
+		}
 		var currentTime = System.currentTimeMillis();
 		actorRegistry.getActors().forEach(actor -> {
 			var lastPing = lastPingTime.getOrDefault(actor, 0L);
@@ -158,28 +413,173 @@ public class UdpServer {
 		});
 	}
 
-	public void sendEventToClient(MessageType type, Actor actor, byte... values) {
-		log.info("Event to {}: type={}, data: {}", actor.toString(), type.name(), Arrays.toString(values));
-		var bytes = Messaging.eventToBytes(type.id(), values);
-		sendBytesToClient(actor.getClientIp(), bytes);
+	/**
+	 * Values go out as varints to compact clients and truncated to a byte each to everybody else.
+	 */
+	public void sendEventToClient(MessageType type, Actor actor, int... values) {
+		if (logPackets) {
+			log.info("Event to {}: type={}, data: {}", actor.toString(), type.name(), Arrays.toString(values));
+		}
+		long start = System.nanoTime();
+		byte[] bytes;
+		if (actor.getProtocolVersion() >= PROTOCOL_COMPACT) {
+			bytes = CompactCodec.event(type.id(), values);
+		} else {
+			var legacyValues = new byte[values.length];
+			for (int i = 0; i < values.length; i++) {
+				legacyValues[i] = (byte) values[i];
+			}
+			bytes = Messaging.eventToBytes(type.id(), legacyValues);
+		}
+		sendBytesToActor(actor, bytes);
+		tracer.record("event", actor.getId(), type.id(), start, System.nanoTime());
 	}
 
 	public void sendStatsToAll(boolean includeNames, boolean isGameRunning, int gameTypeOrdinal, int timeSeconds) {
 		var players = actorRegistry.getPlayersSortedByScore();
 		var onlinePlayers = players.stream().filter(Player::isOnline).toList();
-		log.info("Stats to players: {}, withNames={}, isGameRunning={}, gameType={}, timeSeconds={}",
-			Arrays.toString(onlinePlayers.stream().map(p -> p.getId()).toArray()), includeNames, isGameRunning, gameTypeOrdinal, timeSeconds);
-		var bytes = Messaging.playerStatsToBytes(includeNames, players, isGameRunning, gameTypeOrdinal, timeSeconds);
-		onlinePlayers.forEach(player -> sendBytesToClient(player.getClientIp(), bytes));
+		if (logPackets) {
+			log.info("Stats to players: {}, withNames={}, isGameRunning={}, gameType={}, timeSeconds={}",
+				Arrays.toString(onlinePlayers.stream().map(p -> p.getId()).toArray()), includeNames, isGameRunning, gameTypeOrdinal, timeSeconds);
+		}
+		var sharedAddress = getSharedStatsAddress(gameSettings.getCurrent().getStatsDelivery());
+		// compact clients read legacy stats too, so the shared datagram is compact only if every listener speaks it
+		boolean sharedCompact = onlinePlayers.stream()
+			.filter(player -> player.getProtocolVersion() >= PROTOCOL_SHARED_STATS)
+			.allMatch(player -> player.getProtocolVersion() >= PROTOCOL_COMPACT);
+		byte[] legacy = null;
+		byte[] compact = null;
+		boolean sharedSent = false;
+		for (Player player : onlinePlayers) {
+			boolean shared = sharedAddress != null && player.getProtocolVersion() >= PROTOCOL_SHARED_STATS;
+			boolean useCompact = shared ? sharedCompact : player.getProtocolVersion() >= PROTOCOL_COMPACT;
+			if (useCompact && compact == null) {
+				compact = encodeStats(true, includeNames, players, isGameRunning, gameTypeOrdinal, timeSeconds);
+			} else if (!useCompact && legacy == null) {
+				legacy = encodeStats(false, includeNames, players, isGameRunning, gameTypeOrdinal, timeSeconds);
+			}
+			if (shared) {
+				if (!sharedSent) {
+					if (useCompact) {
+						sendRosterToSharedAddress(sharedAddress, includeNames);
+					}
+					sendBytesToClient(null, sharedAddress, useCompact ? compact : legacy, TrafficClass.STATE);
+					sharedSent = true;
+				}
+			} else {
+				if (useCompact) {
+					sendRosterIfStale(player, includeNames);
+				}
+				sendBytesToActor(player, useCompact ? compact : legacy);
+			}
+		}
+	}
+
+	/**
+	 * FULL_STATS unicast to one device, whatever the stats delivery mode.
+	 */
+	public void sendStatsToActor(Actor actor, boolean includeNames, boolean isGameRunning, int gameTypeOrdinal, int timeSeconds) {
+		if (logPackets) {
+			log.info("Stats to {}: withNames={}, isGameRunning={}, gameType={}, timeSeconds={}",
+				actor, includeNames, isGameRunning, gameTypeOrdinal, timeSeconds);
+		}
+		boolean compact = actor.getProtocolVersion() >= PROTOCOL_COMPACT;
+		if (compact) {
+			sendRosterIfStale(actor, includeNames);
+		}
+		sendBytesToActor(actor, encodeStats(compact, includeNames, actorRegistry.getPlayersSortedByScore(), isGameRunning, gameTypeOrdinal, timeSeconds));
+	}
+
+	// with includeNames the device may have lost its dictionary (reconnect, rename), so it gets it regardless
+	private void sendRosterIfStale(Actor actor, boolean includeNames) {
+		var roster = currentRoster();
+		Integer sent = rosterVersionSent.get(actor);
+		if (includeNames || sent == null || sent != rosterVersion) {
+			rosterVersionSent.put(actor, rosterVersion);
+			sendBytesToActor(actor, roster);
+		}
+	}
+
+	private void sendRosterToSharedAddress(InetAddress sharedAddress, boolean includeNames) {
+		var roster = currentRoster();
+		if (includeNames || sharedRosterVersionSent != rosterVersion) {
+			sharedRosterVersionSent = rosterVersion;
+			sendBytesToClient(null, sharedAddress, roster, TrafficClass.STATE);
+		}
+	}
+
+	/**
+	 * The ROSTER frame for the players as they are now, bumping the roster version if anything in it changed.
+	 */
+	private byte[] currentRoster() {
+		var players = actorRegistry.getPlayers();
+		var content = CompactCodec.roster(players, 0);
+		rosterLock.lock();
+		try {
+			if (rosterFrame == null || !Arrays.equals(content, rosterContent)) {
+				rosterContent = content;
+				rosterVersion++;
+				rosterFrame = CompactCodec.roster(players, rosterVersion);
+			}
+			return rosterFrame;
+		} finally {
+			rosterLock.unlock();
+		}
+	}
+
+	private byte[] encodeStats(boolean compact, boolean includeNames, List<Player> players, boolean isGameRunning, int gameTypeOrdinal, int timeSeconds) {
+		var encodedEvent = new SnapshotEncodedEvent();
+		encodedEvent.begin();
+		long encodeStart = System.nanoTime();
+		if (compact) {
+			currentRoster(); // the stats name the roster version they go with
+		}
+		// names reach compact clients through the roster
+		var bytes = compact
+			? CompactCodec.stats(players, isGameRunning, gameTypeOrdinal, timeSeconds, rosterVersion)
+			: Messaging.playerStatsToBytes(includeNames, players, isGameRunning, gameTypeOrdinal, timeSeconds);
+		long encodeEnd = System.nanoTime();
+		metrics.recordStatsEncode(encodeEnd - encodeStart, bytes.length);
+		tracer.record("stats encode", -1, bytes[0], encodeStart, encodeEnd);
+		if (encodedEvent.shouldCommit()) {
+			encodedEvent.players = players.size();
+			encodedEvent.withNames = includeNames && !compact;
+			encodedEvent.payloadSize = bytes.length;
+			encodedEvent.commit();
+		}
+		return bytes;
+	}
+
+	private InetAddress getSharedStatsAddress(StatsDelivery delivery) {
+		var target = sharedStatsTarget;
+		if (target == null || target.delivery() != delivery) {
+			target = new SharedStatsTarget(delivery, resolveSharedStatsAddress(delivery));
+			sharedStatsTarget = target;
+		}
+		return target.address();
+	}
+
+	private InetAddress resolveSharedStatsAddress(StatsDelivery delivery) {
+		try {
+			return switch (delivery) {
+				case UNICAST -> null;
+				case MULTICAST -> InetAddress.getByName(StatsDelivery.MULTICAST_GROUP);
+			};
+		} catch (Exception e) {
+			log.warn("Cannot resolve {} address, falling back to unicast: {}", delivery, e.getMessage());
+			return null;
+		}
 	}
 
 	public void sendSettingsToAllDispensers() {
 		Stream.concat(actorRegistry.streamByType(Actor.Type.AMMO), actorRegistry.streamByType(Actor.Type.HEALTH))
 		.filter(actor -> actor.isOnline())
-		.forEach(actor -> {
-			int timeout = gameSettings.getCurrent().getDispenserSettings(actor.getType()).getTimeout();
-			sendEventToClient(MessageType.DISPENSER_SET_TIMEOUT, actor, (byte)(timeout / 10));// to pack as 1 byte
-		});
+		.forEach(this::sendSettingsToDispenser);
+	}
+
+	public void sendSettingsToDispenser(Actor actor) {
+		int timeout = gameSettings.getCurrent().getDispenserSettings(actor.getType()).timeout();
+		sendEventToClient(MessageType.DISPENSER_SET_TIMEOUT, actor, timeout / DispenserCooldowns.TIMEOUT_STEP_SECONDS);// to pack as 1 byte on legacy devices
 	}
 
 }
@@ -0,0 +1,532 @@
+package net.lasertag.lasertagserver.history;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.core.GameType;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only archive of finished matches in a single file, with every match also held in memory as parallel
+ * primitive arrays plus posting lists per player name, preset and game type. Queries never touch the disk.
+ * <p>
+ * File format (big-endian): magic {@code LTMH}, format version byte, then records. A record starts with a kind byte:
+ * <ul>
+ *   <li>{@code NAME}: modified-UTF-8 string. Names (players and presets) are numbered in order of appearance.</li>
+ *   <li>{@code MATCH}: endedAt long, duration seconds int, preset name id short, game type byte, player count byte,
+ *   then per player: name id short, team byte, flags byte (bit 0 = on the winning side), score, kills and deaths
+ *   shorts, and finally the kill matrix, one byte per killer/victim pair (saturating at 255).</li>
+ * </ul>
+ * A six-player match takes about 110 bytes. A torn record at the end of the file (crash mid-append) is cut off on open.
+ * A corrupt record (unknown kind, name id or game type, bad string) ends loading there: everything from it on is
+ * copied to a {@code .corrupt-<millis>} file next to the archive, logged and cut off, so the server still starts.
+ * <p>
+ * Matches are appended in the order they end, so the end-time column is sorted and date ranges are binary searched.
+ */
+@Slf4j
+public class MatchArchive implements Closeable {
+
+	private static final int MAGIC = 0x4C544D48; // "LTMH"
+	private static final byte FORMAT_VERSION = 1;
+	private static final byte KIND_NAME = 1;
+	private static final byte KIND_MATCH = 2;
+
+	public static final int FLAG_WINNER = 1;
+
+	private final Path file;
+	private final DataOutputStream out;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<String> names = new ArrayList<>();
+	private final Map<String, Integer> nameIds = new HashMap<>();
+
+	// per match
+	private int matchCount;
+	private long[] endedAt = new long[256];
+	private int[] durationSeconds = new int[256];
+	private int[] presetId = new int[256];
+	private byte[] gameType = new byte[256];
+	private int[] firstPlayer = new int[257]; // players of match m are [firstPlayer[m], firstPlayer[m + 1])
+	private int[] firstKill = new int[257];
+
+	// per player entry
+	private int playerEntryCount;
+	private int[] playerNameId = new int[1024];
+	private byte[] playerTeam = new byte[1024];
+	private byte[] playerFlags = new byte[1024];
+	private short[] playerScore = new short[1024];
+	private short[] playerKills = new short[1024];
+	private short[] playerDeaths = new short[1024];
+
+	private int killCellCount;
+	private byte[] killCells = new byte[8192];
+
+	// posting lists: match ids, ascending
+	private final Map<Integer, IntList> matchesByName = new HashMap<>();
+	private final Map<Integer, IntList> matchesByPreset = new HashMap<>();
+	private final IntList[] matchesByGameType = new IntList[GameType.values().length];
+
+	private boolean corrupt; // set by load() when it stopped at a bad record rather than at the end of the file
+
+	public MatchArchive(Path file) throws IOException {
+		this.file = file;
+		for (int i = 0; i < matchesByGameType.length; i++) {
+			matchesByGameType[i] = new IntList();
+		}
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		long validLength = Files.exists(file) ? load() : 0;
+		if (corrupt) {
+			setAside(validLength);
+		}
+		if (validLength == 0) {
+			try (var header = new DataOutputStream(Files.newOutputStream(file))) {
+				header.writeInt(MAGIC);
+				header.writeByte(FORMAT_VERSION);
+			}
+		} else if (validLength < Files.size(file)) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(validLength);
+			}
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+	}
+
+	private long load() throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+				log.warn("{} is not a match archive, starting a new one", file.toAbsolutePath());
+				corrupt = true;
+				return 0;
+			}
+			long validLength = 5;
+			var counting = new CountingInput(in);
+			while (true) {
+				try {
+					readRecord(counting.in);
+				} catch (EOFException e) {
+					return validLength;
+				} catch (IOException e) {
+					log.warn("Corrupt record at byte {} of match archive {}: {}", validLength, file.toAbsolutePath(), e.getMessage());
+					corrupt = true;
+					return validLength;
+				}
+				validLength = 5 + counting.consumed();
+			}
+		} catch (EOFException e) {
+			return 0; // empty or torn header
+		}
+	}
+
+	private void readRecord(DataInputStream in) throws IOException {
+		byte kind = in.readByte();
+		if (kind == KIND_NAME) {
+			internLoaded(in.readUTF());
+			return;
+		}
+		if (kind != KIND_MATCH) {
+			throw new IOException("Corrupt match archive record kind " + kind + " in " + file);
+		}
+		long matchEndedAt = in.readLong();
+		int duration = in.readInt();
+		int preset = readNameId(in);
+		int type = in.readUnsignedByte();
+		if (type >= GameType.values().length) {
+			throw new IOException("Unknown game type " + type);
+		}
+		int players = in.readUnsignedByte();
+		var entries = new PlayerEntry[players];
+		for (int i = 0; i < players; i++) {
+			entries[i] = new PlayerEntry(readNameId(in), in.readByte(), in.readByte(), in.readShort(), in.readShort(), in.readShort());
+		}
+		byte[] kills = new byte[players * players];
+		in.readFully(kills);
+		addToMemory(matchEndedAt, duration, preset, (byte) type, entries, kills);
+	}
+
+	// names are written before the first record that refers to them
+	private int readNameId(DataInputStream in) throws IOException {
+		int id = in.readUnsignedShort();
+		if (id >= names.size()) {
+			throw new IOException("Unknown name id " + id);
+		}
+		return id;
+	}
+
+	// copies the file from offset on to a side file, the archive itself is then cut off there
+	private void setAside(long offset) throws IOException {
+		Path aside = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+		try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+			 FileChannel target = FileChannel.open(aside, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			long size = source.size();
+			for (long position = offset; position < size; ) {
+				position += source.transferTo(position, size - position, target);
+			}
+		}
+		log.warn("Moved {} unreadable bytes of match archive {} to {}", Files.size(aside), file.toAbsolutePath(), aside.toAbsolutePath());
+	}
+
+	/**
+	 * Appends one finished match and makes it visible to queries. Player names and the preset name are interned.
+	 */
+	public void append(MatchRecord match) throws IOException {
+		lock.writeLock().lock();
+		try {
+			int preset = intern(match.presetName());
+			int players = match.players().size();
+			var entries = new PlayerEntry[players];
+			for (int i = 0; i < players; i++) {
+				var player = match.players().get(i);
+				entries[i] = new PlayerEntry(intern(player.name()), (byte) player.teamId(), (byte) (player.winner() ? FLAG_WINNER : 0),
+					clampShort(player.score()), clampShort(player.kills()), clampShort(player.deaths()));
+			}
+			byte[] kills = new byte[players * players];
+			for (int killer = 0; killer < players; killer++) {
+				for (int victim = 0; victim < players; victim++) {
+					kills[killer * players + victim] = (byte) Math.min(255, match.killMatrix()[killer][victim]);
+				}
+			}
+
+			out.writeByte(KIND_MATCH);
+			out.writeLong(match.endedAtMillis());
+			out.writeInt(match.durationSeconds());
+			out.writeShort(preset);
+			out.writeByte(match.gameType().ordinal());
+			out.writeByte(players);
+			for (PlayerEntry entry : entries) {
+				out.writeShort(entry.nameId());
+				out.writeByte(entry.team());
+				out.writeByte(entry.flags());
+				out.writeShort(entry.score());
+				out.writeShort(entry.kills());
+				out.writeShort(entry.deaths());
+			}
+			out.write(kills);
+			out.flush();
+
+			addToMemory(match.endedAtMillis(), match.durationSeconds(), preset, (byte) match.gameType().ordinal(), entries, kills);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int intern(String name) throws IOException {
+		var id = nameIds.get(name);
+		if (id != null) {
+			return id;
+		}
+		out.writeByte(KIND_NAME);
+		out.writeUTF(name);
+		return internLoaded(name);
+	}
+
+	private int internLoaded(String name) {
+		int id = names.size();
+		names.add(name);
+		nameIds.put(name, id);
+		return id;
+	}
+
+	private void addToMemory(long matchEndedAt, int duration, int preset, byte type, PlayerEntry[] entries, byte[] kills) {
+		int match = matchCount;
+		if (match + 1 >= endedAt.length) {
+			int capacity = endedAt.length * 2;
+			endedAt = Arrays.copyOf(endedAt, capacity);
+			durationSeconds = Arrays.copyOf(durationSeconds, capacity);
+			presetId = Arrays.copyOf(presetId, capacity);
+			gameType = Arrays.copyOf(gameType, capacity);
+			firstPlayer = Arrays.copyOf(firstPlayer, capacity + 1);
+			firstKill = Arrays.copyOf(firstKill, capacity + 1);
+		}
+		if (playerEntryCount + entries.length > playerNameId.length) {
+			int capacity = Math.max(playerNameId.length * 2, playerEntryCount + entries.length);
+			playerNameId = Arrays.copyOf(playerNameId, capacity);
+			playerTeam = Arrays.copyOf(playerTeam, capacity);
+			playerFlags = Arrays.copyOf(playerFlags, capacity);
+			playerScore = Arrays.copyOf(playerScore, capacity);
+			playerKills = Arrays.copyOf(playerKills, capacity);
+			playerDeaths = Arrays.copyOf(playerDeaths, capacity);
+		}
+		if (killCellCount + kills.length > killCells.length) {
+			killCells = Arrays.copyOf(killCells, Math.max(killCells.length * 2, killCellCount + kills.length));
+		}
+
+		endedAt[match] = matchEndedAt;
+		durationSeconds[match] = duration;
+		presetId[match] = preset;
+		gameType[match] = type;
+		firstPlayer[match] = playerEntryCount;
+		firstKill[match] = killCellCount;
+		for (PlayerEntry entry : entries) {
+			int index = playerEntryCount++;
+			playerNameId[index] = entry.nameId();
+			playerTeam[index] = entry.team();
+			playerFlags[index] = entry.flags();
+			playerScore[index] = entry.score();
+			playerKills[index] = entry.kills();
+			playerDeaths[index] = entry.deaths();
+			matchesByName.computeIfAbsent(entry.nameId(), k -> new IntList()).add(match);
+		}
+		System.arraycopy(kills, 0, killCells, killCellCount, kills.length);
+		killCellCount += kills.length;
+		matchCount++;
+		firstPlayer[matchCount] = playerEntryCount;
+		firstKill[matchCount] = killCellCount;
+
+		matchesByPreset.computeIfAbsent(preset, k -> new IntList()).add(match);
+		if (type >= 0 && type < matchesByGameType.length) {
+			matchesByGameType[type].add(match);
+		}
+	}
+
+	public int getMatchCount() {
+		lock.readLock().lock();
+		try {
+			return matchCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Players ranked by kills (then wins, then fewest deaths) over matches that ended in [from, to).
+	 */
+	public List<LeaderboardEntry> topPlayers(long fromMillis, long toMillis, GameType type, int limit) {
+		lock.readLock().lock();
+		try {
+			int first = lowerBound(fromMillis);
+			int last = lowerBound(toMillis);
+			Map<Integer, int[]> totals = new HashMap<>(); // nameId -> matches, wins, kills, deaths, score
+			for (int match = first; match < last; match++) {
+				if (type != null && gameType[match] != type.ordinal()) {
+					continue;
+				}
+				for (int index = firstPlayer[match]; index < firstPlayer[match + 1]; index++) {
+					int[] total = totals.computeIfAbsent(playerNameId[index], k -> new int[5]);
+					total[0]++;
+					total[1] += playerFlags[index] & FLAG_WINNER;
+					total[2] += playerKills[index];
+					total[3] += playerDeaths[index];
+					total[4] += playerScore[index];
+				}
+			}
+			return totals.entrySet().stream()
+				.map(entry -> new LeaderboardEntry(names.get(entry.getKey()), entry.getValue()[0], entry.getValue()[1],
+					entry.getValue()[2], entry.getValue()[3], entry.getValue()[4]))
+				.sorted(Comparator.comparingInt(LeaderboardEntry::kills).reversed()
+					.thenComparing(Comparator.comparingInt(LeaderboardEntry::wins).reversed())
+					.thenComparingInt(LeaderboardEntry::deaths))
+				.limit(limit)
+				.toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Record of two players over all matches they both played. A player "won" a match against the other when
+	 * they were on the winning side and the other was not.
+	 */
+	public HeadToHead headToHead(String nameA, String nameB) {
+		lock.readLock().lock();
+		try {
+			Integer a = nameIds.get(nameA);
+			Integer b = nameIds.get(nameB);
+			if (a == null || b == null || a.equals(b)) {
+				return new HeadToHead(nameA, nameB, 0, 0, 0, 0, 0);
+			}
+			IntList matchesA = matchesByName.get(a);
+			IntList matchesB = matchesByName.get(b);
+			int together = 0, winsA = 0, winsB = 0, killsAB = 0, killsBA = 0;
+			int i = 0, j = 0;
+			while (i < matchesA.size() && j < matchesB.size()) {
+				int matchA = matchesA.get(i);
+				int matchB = matchesB.get(j);
+				if (matchA < matchB) {
+					i++;
+				} else if (matchA > matchB) {
+					j++;
+				} else {
+					int slotA = slotOf(matchA, a);
+					int slotB = slotOf(matchA, b);
+					int players = firstPlayer[matchA + 1] - firstPlayer[matchA];
+					boolean wonA = (playerFlags[firstPlayer[matchA] + slotA] & FLAG_WINNER) != 0;
+					boolean wonB = (playerFlags[firstPlayer[matchA] + slotB] & FLAG_WINNER) != 0;
+					together++;
+					winsA += wonA && !wonB ? 1 : 0;
+					winsB += wonB && !wonA ? 1 : 0;
+					killsAB += killCells[firstKill[matchA] + slotA * players + slotB] & 0xFF;
+					killsBA += killCells[firstKill[matchA] + slotB * players + slotA] & 0xFF;
+					i++;
+					j++;
+				}
+			}
+			return new HeadToHead(nameA, nameB, together, winsA, winsB, killsAB, killsBA);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Newest matches first. Every filter is optional; the shortest matching posting list drives the scan.
+	 */
+	public List<MatchSummary> findMatches(Long fromMillis, Long toMillis, String playerName, String presetName, GameType type, int limit) {
+		lock.readLock().lock();
+		try {
+			int first = fromMillis == null ? 0 : lowerBound(fromMillis);
+			int last = toMillis == null ? matchCount : lowerBound(toMillis);
+			List<IntList> postings = new ArrayList<>();
+			if (playerName != null) {
+				postings.add(postingOrEmpty(matchesByName, nameIds.get(playerName)));
+			}
+			if (presetName != null) {
+				postings.add(postingOrEmpty(matchesByPreset, nameIds.get(presetName)));
+			}
+			if (type != null) {
+				postings.add(matchesByGameType[type.ordinal()]);
+			}
+			Integer playerId = playerName == null ? null : nameIds.get(playerName);
+			Integer preset = presetName == null ? null : nameIds.get(presetName);
+
+			List<MatchSummary> result = new ArrayList<>();
+			if (postings.isEmpty()) {
+				for (int match = last - 1; match >= first && result.size() < limit; match--) {
+					result.add(summaryOf(match));
+				}
+				return result;
+			}
+			IntList driver = postings.stream().min(Comparator.comparingInt(IntList::size)).orElseThrow();
+			for (int k = driver.size() - 1; k >= 0 && result.size() < limit; k--) {
+				int match = driver.get(k);
+				if (match < first || match >= last) {
+					continue;
+				}
+				if ((preset != null && presetId[match] != preset)
+					|| (type != null && gameType[match] != type.ordinal())
+					|| (playerId != null && slotOf(match, playerId) < 0)) {
+					continue;
+				}
+				result.add(summaryOf(match));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static IntList postingOrEmpty(Map<Integer, IntList> index, Integer key) {
+		var posting = key == null ? null : index.get(key);
+		return posting == null ? new IntList() : posting;
+	}
+
+	private MatchSummary summaryOf(int match) {
+		List<MatchSummary.Player> players = new ArrayList<>();
+		for (int index = firstPlayer[match]; index < firstPlayer[match + 1]; index++) {
+			players.add(new MatchSummary.Player(names.get(playerNameId[index]), playerTeam[index],
+				(playerFlags[index] & FLAG_WINNER) != 0, playerScore[index], playerKills[index], playerDeaths[index]));
+		}
+		return new MatchSummary(match, endedAt[match], durationSeconds[match], names.get(presetId[match]),
+			GameType.values()[gameType[match]].name(), players);
+	}
+
+	private int slotOf(int match, int nameId) {
+		for (int index = firstPlayer[match]; index < firstPlayer[match + 1]; index++) {
+			if (playerNameId[index] == nameId) {
+				return index - firstPlayer[match];
+			}
+		}
+		return -1;
+	}
+
+	// first match that ended at or after the given time
+	private int lowerBound(long millis) {
+		int low = 0, high = matchCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (endedAt[mid] < millis) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static short clampShort(int value) {
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			out.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private record PlayerEntry(int nameId, byte team, byte flags, short score, short kills, short deaths) {}
+
+	private static class CountingInput {
+		private final DataInputStream in;
+		private final long[] count = new long[1];
+
+		CountingInput(InputStream source) {
+			this.in = new DataInputStream(new FilterInputStream(source) {
+				@Override
+				public int read() throws IOException {
+					int value = super.read();
+					if (value >= 0) {
+						count[0]++;
+					}
+					return value;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					int read = super.read(buffer, offset, length);
+					if (read > 0) {
+						count[0] += read;
+					}
+					return read;
+				}
+			});
+		}
+
+		long consumed() {
+			return count[0];
+		}
+	}
+
+	private static class IntList {
+		private int[] values = new int[8];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int get(int index) {
+			return values[index];
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	public record LeaderboardEntry(String name, int matches, int wins, int kills, int deaths, int score) {}
+
+	public record HeadToHead(String playerA, String playerB, int matchesTogether, int winsA, int winsB, int killsAtoB, int killsBtoA) {}
+
+}
@@ -0,0 +1,88 @@
+package net.lasertag.lasertagserver.history;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.core.MatchAnalytics;
+import net.lasertag.lasertagserver.core.MatchArchiver;
+import net.lasertag.lasertagserver.model.Player;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@Slf4j
+public class MatchHistory implements MatchArchiver {
+
+	private final ActorRegistry actorRegistry;
+	private final Executor daemonExecutor;
+	private final Path archiveFile;
+
+	private MatchArchive archive;
+
+	public MatchHistory(ActorRegistry actorRegistry, Executor daemonExecutor, Path archiveFile) {
+		this.actorRegistry = actorRegistry;
+		this.daemonExecutor = daemonExecutor;
+		this.archiveFile = archiveFile;
+	}
+
+	public void init() throws IOException {
+		long start = System.nanoTime();
+		archive = new MatchArchive(archiveFile);
+		log.info("Loaded {} archived matches from {} in {} ms", archive.getMatchCount(), archiveFile.toAbsolutePath(),
+			(System.nanoTime() - start) / 1_000_000);
+	}
+
+	public void close() throws IOException {
+		archive.close();
+	}
+
+	/**
+	 * Captures the result on the calling thread (player names, teams and scores are only valid until the next
+	 * game starts) and writes it to disk in the background.
+	 */
+	@Override
+	public void archive(MatchAnalytics.MatchSnapshot summary, String presetName, GameType gameType, int winner) {
+		List<Player> participants = new ArrayList<>();
+		List<MatchRecord.Player> players = new ArrayList<>();
+		for (MatchAnalytics.PlayerStats stats : summary.players()) {
+			Player player = actorRegistry.getPlayerById(stats.id());
+			boolean active = stats.kills() + stats.deaths() + stats.hitsDealt() + stats.hitsReceived() > 0;
+			if (!player.isOnline() && !active) {
+				continue;
+			}
+			boolean won = gameType.isTeamBased() ? player.getTeamId() == winner : player.getId() == winner;
+			participants.add(player);
+			players.add(new MatchRecord.Player(player.getName(), player.getTeamId(), won, player.getScore(), stats.kills(), stats.deaths()));
+		}
+		if (players.isEmpty()) {
+			return;
+		}
+
+		int[][] killMatrix = new int[participants.size()][participants.size()];
+		for (int killer = 0; killer < participants.size(); killer++) {
+			int row = summary.killMatrixIds().indexOf(participants.get(killer).getId());
+			for (int victim = 0; victim < participants.size(); victim++) {
+				int column = summary.killMatrixIds().indexOf(participants.get(victim).getId());
+				killMatrix[killer][victim] = summary.killMatrix()[row][column];
+			}
+		}
+		var match = new MatchRecord(summary.endedAtMillis(), (int) ((summary.endedAtMillis() - summary.startedAtMillis()) / 1000),
+			presetName, gameType, players, killMatrix);
+
+		daemonExecutor.execute(() -> {
+			try {
+				archive.append(match);
+				log.info("Archived match with {} players, {} matches in history", players.size(), archive.getMatchCount());
+			} catch (IOException e) {
+				log.error("Failed to archive match: {}", e.getMessage(), e);
+			}
+		});
+	}
+
+	public MatchArchive getArchive() {
+		return archive;
+	}
+
+}
@@ -0,0 +1,22 @@
+package net.lasertag.lasertagserver.history;
+
+import net.lasertag.lasertagserver.core.GameType;
+
+import java.util.List;
+
+/**
+ * A finished match as handed to {@link MatchArchive#append}. {@code killMatrix[i][j]} is how often
+ * {@code players[i]} killed {@code players[j]}.
+ */
+public record MatchRecord(
+	long endedAtMillis,
+	int durationSeconds,
+	String presetName,
+	GameType gameType,
+	List<Player> players,
+	int[][] killMatrix
+) {
+
+	public record Player(String name, int teamId, boolean winner, int score, int kills, int deaths) {}
+
+}
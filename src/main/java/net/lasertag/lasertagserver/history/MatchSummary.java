@@ -0,0 +1,16 @@
+package net.lasertag.lasertagserver.history;
+
+import java.util.List;
+
+public record MatchSummary(
+	int matchId,
+	long endedAtMillis,
+	int durationSeconds,
+	String presetName,
+	String gameType,
+	List<Player> players
+) {
+
+	public record Player(String name, int teamId, boolean winner, int score, int kills, int deaths) {}
+
+}
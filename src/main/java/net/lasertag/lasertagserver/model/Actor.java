@@ -12,7 +12,8 @@ public abstract class Actor {
 	public enum Type {
 		PLAYER,
 		HEALTH,
-		AMMO
+		AMMO,
+		ZONE
 	}
 
 	private final int id;
@@ -21,6 +22,10 @@ public abstract class Actor {
 	@Setter
 	private InetAddress clientIp;
 
+	// announced in the ping, see Messaging.PROTOCOL_*
+	@Setter
+	private int protocolVersion;
+
 	public Actor(int id, Type type) {
 		this.id = id;
 		this.type = type;
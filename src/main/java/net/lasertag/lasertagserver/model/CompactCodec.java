@@ -0,0 +1,162 @@
+package net.lasertag.lasertagserver.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.lasertag.lasertagserver.model.MessageType.*;
+
+/**
+ * The compact framing, used with clients that announce {@link Messaging#PROTOCOL_COMPACT} in their ping. A compact
+ * frame has {@link Messaging#COMPACT_FLAG} set on the type byte, so it is never mistaken for a legacy layout, and
+ * every field after it is an unsigned LEB128 varint (signed values zigzag-encoded), so nothing is truncated to a byte.
+ * <ul>
+ *   <li>event, both directions: type, then the values. A client event carries actor id, extra value and health.</li>
+ *   <li>{@code FULL_STATS}: type, flags (bit 0 = game running), game type, time left seconds, roster version, player
+ *   count, per player id, health, score, respawn point and flags (bit 0 = flag carrier).</li>
+ *   <li>{@code ROSTER}, the name dictionary: type, roster version, player count, per player id, team, damage, bullets
+ *   max, UTF-8 name length and bytes. Sent when it changes or the client reconnects; stats refer to players by id
+ *   and name the roster version they belong to, so a client that missed a roster knows to re-announce itself.</li>
+ * </ul>
+ * Team, damage, bullets max and name only change with the settings, which is why they live in the roster and a
+ * six-player FULL_STATS shrinks from 60 bytes to about 40.
+ */
+public final class CompactCodec {
+
+	private CompactCodec() {
+	}
+
+	public static byte[] event(byte typeId, int... values) {
+		var out = new Writer(1 + values.length * 2);
+		out.put(typeId | Messaging.COMPACT_FLAG);
+		for (int value : values) {
+			out.putSigned(value);
+		}
+		return out.toArray();
+	}
+
+	public static byte[] stats(List<Player> players, boolean gameRunning, int gameTypeOrdinal, int timeSeconds, int rosterVersion) {
+		var out = new Writer(8 + players.size() * 6);
+		out.put(FULL_STATS.id() | Messaging.COMPACT_FLAG);
+		out.putUnsigned(gameRunning ? 1 : 0);
+		out.putUnsigned(gameTypeOrdinal);
+		out.putUnsigned(timeSeconds);
+		out.putUnsigned(rosterVersion);
+		out.putUnsigned(players.size());
+		for (Player player : players) {
+			out.putUnsigned(player.getId());
+			out.putSigned(player.getHealth());
+			out.putSigned(player.getScore());
+			out.putSigned(player.getAssignedRespawnPoint());
+			out.putUnsigned(player.isFlagCarrier() ? 1 : 0);
+		}
+		return out.toArray();
+	}
+
+	public static byte[] roster(List<Player> players, int rosterVersion) {
+		var out = new Writer(4 + players.size() * 16);
+		out.put(ROSTER.id() | Messaging.COMPACT_FLAG);
+		out.putUnsigned(rosterVersion);
+		out.putUnsigned(players.size());
+		for (Player player : players) {
+			out.putUnsigned(player.getId());
+			out.putUnsigned(player.getTeamId());
+			out.putUnsigned(player.getDamage());
+			out.putUnsigned(player.getBulletsMax());
+			byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+			out.putUnsigned(name.length);
+			out.put(name);
+		}
+		return out.toArray();
+	}
+
+	static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static final class Writer {
+
+		private byte[] data;
+		private int size;
+
+		private Writer(int capacity) {
+			data = new byte[capacity];
+		}
+
+		private void put(int b) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = (byte) b;
+		}
+
+		private void put(byte[] bytes) {
+			if (size + bytes.length > data.length) {
+				data = Arrays.copyOf(data, Math.max(size * 2, size + bytes.length));
+			}
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		private void putUnsigned(int value) {
+			while ((value & ~0x7F) != 0) {
+				put((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			put(value);
+		}
+
+		private void putSigned(int value) {
+			putUnsigned(zigzag(value));
+		}
+
+		private byte[] toArray() {
+			return size == data.length ? data : Arrays.copyOf(data, size);
+		}
+
+	}
+
+	/**
+	 * Reads the varints of a received frame, starting after the type byte.
+	 */
+	static final class Reader {
+
+		private final byte[] data;
+		private final int length;
+		private int position = 1;
+
+		Reader(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+
+		int unsigned() {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				if (position >= length) {
+					throw new IllegalArgumentException("Truncated varint at byte " + position);
+				}
+				byte b = data[position++];
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Varint longer than 5 bytes");
+		}
+
+		int signed() {
+			return unzigzag(unsigned());
+		}
+
+		boolean hasMore() {
+			return position < length;
+		}
+
+	}
+
+}
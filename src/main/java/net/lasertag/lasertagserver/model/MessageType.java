@@ -10,6 +10,7 @@ public record MessageType(byte id, String name, Direction directionFlag) {
 	public static final MessageType PLAYER_PING = new MessageType((byte) 41, "PLAYER_PING", CLIENT_TO_SERVER);
 	public static final MessageType HEALTH_DISPENSER_PING = new MessageType((byte) 45, "HEALTH_DISPENSER_PING", CLIENT_TO_SERVER);
 	public static final MessageType AMMO_DISPENSER_PING = new MessageType((byte) 46, "AMMO_DISPENSER_PING", CLIENT_TO_SERVER);
+	public static final MessageType ZONE_PING = new MessageType((byte) 47, "ZONE_PING", CLIENT_TO_SERVER);
 
 	public static final MessageType YOU_HIT_SOMEONE = new MessageType((byte) 4, "YOU_HIT_SOMEONE", CLIENT_TO_SERVER);
 	public static final MessageType GOT_HIT = new MessageType((byte) 5, "GOT_HIT", CLIENT_TO_SERVER);
@@ -19,6 +20,7 @@ public record MessageType(byte id, String name, Direction directionFlag) {
 	public static final MessageType YOU_KILLED = new MessageType((byte) 9, "YOU_KILLED", SERVER_TO_CLIENT);
 	public static final MessageType YOU_SCORED = new MessageType((byte) 10, "YOU_SCORED", SERVER_TO_CLIENT);
 	public static final MessageType FULL_STATS = new MessageType((byte) 11, "FULL_STATS", SERVER_TO_CLIENT);
+	public static final MessageType ROSTER = new MessageType((byte) 12, "ROSTER", SERVER_TO_CLIENT);
 
 	public static final MessageType DEVICE_PLAYER_STATE = new MessageType((byte) 13, "DEVICE_PLAYER_STATE", CLIENT_TO_SERVER);
 	public static final MessageType DEVICE_CONNECTED = new MessageType((byte)14, "DEVICE_CONNECTED", CLIENT_TO_SERVER);
@@ -35,6 +37,11 @@ public record MessageType(byte id, String name, Direction directionFlag) {
 	public static final MessageType GIVE_HEALTH_TO_PLAYER = new MessageType((byte) 26, "GIVE_HEALTH_TO_PLAYER", BOTH_DIRECTIONS);
 	public static final MessageType GIVE_AMMO_TO_PLAYER = new MessageType((byte) 27, "GIVE_AMMO_TO_PLAYER", BOTH_DIRECTIONS);
 
+	public static final MessageType ZONE_STATE = new MessageType((byte) 48, "ZONE_STATE", CLIENT_TO_SERVER);
+	public static final MessageType ZONE_CAPTURED = new MessageType((byte) 49, "ZONE_CAPTURED", SERVER_TO_CLIENT);
+
+
+	public static final MessageType BATCH = new MessageType((byte) 60, "BATCH", SERVER_TO_CLIENT);
 
 	public static final MessageType DISPENSER_USED = new MessageType((byte) 51, "DISPENSER_USED", SERVER_TO_CLIENT);
 	public static final MessageType DISPENSER_SET_TIMEOUT = new MessageType((byte) 53, "DISPENSER_SET_TIMEOUT", SERVER_TO_CLIENT);
@@ -4,6 +4,7 @@ import lombok.Getter;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.function.IntConsumer;
 
 import static net.lasertag.lasertagserver.model.MessageType.*;
 
@@ -16,7 +17,20 @@ public abstract class Messaging {
 	public static final int TEAM_PURPLE = 4;
 	public static final int TEAM_CYAN = 5;
 
-	public static final Set<Byte> PING_GROUP = new HashSet<>(Arrays.asList(PLAYER_PING.id(), HEALTH_DISPENSER_PING.id(), AMMO_DISPENSER_PING.id()));
+	public static final int PROTOCOL_LEGACY = 0;
+	public static final int PROTOCOL_BATCH = 1; // client unpacks BATCH frames
+	public static final int PROTOCOL_SHARED_STATS = 2; // client also listens for FULL_STATS on broadcast/multicast
+	public static final int PROTOCOL_COMPACT = 3; // client also speaks the varint framing of CompactCodec
+
+	// set on the type byte of compact frames, message ids stay below it
+	public static final int COMPACT_FLAG = 0x80;
+
+	// Ethernet MTU minus IPv4 and UDP headers
+	public static final int MAX_DATAGRAM_SIZE = 1472;
+	public static final int BATCH_HEADER_SIZE = 2;
+	private static final int BATCH_ENTRY_HEADER_SIZE = 2;
+
+	public static final Set<Byte> PING_GROUP = new HashSet<>(Arrays.asList(PLAYER_PING.id(), HEALTH_DISPENSER_PING.id(), AMMO_DISPENSER_PING.id(), ZONE_PING.id()));
 
 	private static final Map<Integer, MessageType> MESSAGE_TYPE_BY_ID = MessageType.populateMessageTypeByIdMap();
 
@@ -28,33 +42,68 @@ public abstract class Messaging {
 		return messageType;
 	}
 
+	public static String getMessageTypeName(int id) {
+		if (id < 0 || id >= COMPACT_FLAG) {
+			return getMessageTypeName(baseTypeId(id)) + "_COMPACT";
+		}
+		var messageType = MESSAGE_TYPE_BY_ID.get(id);
+		return messageType == null ? "UNKNOWN_" + id : messageType.name();
+	}
+
+	/**
+	 * The message id with the compact flag cleared, for any type byte as sent on the wire.
+	 */
+	public static byte baseTypeId(int typeByte) {
+		return (byte) (typeByte & ~COMPACT_FLAG & 0xFF);
+	}
+
+	public static boolean isCompact(byte typeByte) {
+		return (typeByte & COMPACT_FLAG) != 0;
+	}
+
 	@Getter
 	public static class MessageFromClient extends Messaging {
 
 		private final byte typeId;
 		private final MessageType type;
-		private final byte actorId;
-		private final byte extraValue;
-		private final byte health;
+		private final int actorId;
+		private final int extraValue;
+		private final int health;
 		private final boolean firstEverMessage;
-
-
+		private final int protocolVersion;
+		private final boolean compact;
 
 		public MessageFromClient(byte[] bytes, int length) {
 			if (length < 2) {
 				throw new IllegalArgumentException("Invalid message, too short: " + Arrays.toString(Arrays.copyOfRange(bytes, 0, length)));
 			}
-			this.typeId = bytes[0];
-			this.actorId = bytes[1];
+			this.compact = isCompact(bytes[0]);
+			this.typeId = baseTypeId(bytes[0]);
 			this.type = getMessageTypeById(this.typeId);
+			if (compact) {
+				// [type | COMPACT_FLAG][actor id][extra value][health], see CompactCodec; pings are never compact
+				var in = new CompactCodec.Reader(bytes, length);
+				this.actorId = in.unsigned();
+				this.extraValue = in.signed();
+				this.health = in.signed();
+				this.firstEverMessage = false;
+				this.protocolVersion = PROTOCOL_COMPACT;
+				if (PING_GROUP.contains(this.typeId) || in.hasMore()) {
+					throw new IllegalArgumentException("Invalid compact message: " + Arrays.toString(Arrays.copyOfRange(bytes, 0, length)));
+				}
+				return;
+			}
+			this.actorId = bytes[1];
 			if (PING_GROUP.contains(this.typeId)) {
 				this.firstEverMessage = bytes[2] != 0;
+				this.protocolVersion = length > 3 ? bytes[3] : PROTOCOL_LEGACY; // old clients send 3 bytes
 				this.extraValue = 0;
 				this.health = 0;
 			} else if (length == 4) {
 				this.extraValue = bytes[2];
 				this.health = bytes[3];
 				this.firstEverMessage = false;
+				this.protocolVersion = PROTOCOL_LEGACY;
 			} else {
 				throw new IllegalArgumentException("Invalid message: " + Arrays.toString(Arrays.copyOfRange(bytes, 0, length)));
 			}
@@ -68,6 +117,7 @@ public abstract class Messaging {
 				", extraValue=" + extraValue +
 				", h=" + health +
 				", first=" + firstEverMessage +
+				(compact ? ", compact" : "") +
 				'}';
 		}
 	}
@@ -79,6 +129,44 @@ public abstract class Messaging {
 		return result;
 	}
 
+	public static int batchEntrySize(byte[] event) {
+		return BATCH_ENTRY_HEADER_SIZE + event.length;
+	}
+
+	public static boolean fitsInBatch(int frameSize, int frameCount, byte[] event) {
+		return frameCount < 255 && frameSize + batchEntrySize(event) <= MAX_DATAGRAM_SIZE;
+	}
+
+	// [BATCH][count] then per event [length LE short][event bytes]
+	public static byte[] batchToBytes(List<byte[]> events) {
+		var size = BATCH_HEADER_SIZE;
+		for (byte[] event : events) {
+			size += batchEntrySize(event);
+		}
+		ByteBuffer data = ByteBuffer.allocate(size);
+		data.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+		data.put(BATCH.id());
+		data.put((byte) events.size());
+		for (byte[] event : events) {
+			data.putShort((short) event.length);
+			data.put(event);
+		}
+		return data.array();
+	}
+
+	/**
+	 * Passes the type byte of every event in a frame built by {@link #batchToBytes} to {@code action}, in order.
+	 */
+	public static void forEachBatchedType(byte[] batch, IntConsumer action) {
+		int count = batch.length > 1 ? batch[1] & 0xFF : 0;
+		int offset = BATCH_HEADER_SIZE;
+		for (int i = 0; i < count && offset + BATCH_ENTRY_HEADER_SIZE < batch.length; i++) {
+			int length = (batch[offset] & 0xFF) | (batch[offset + 1] & 0xFF) << 8;
+			action.accept(batch[offset + BATCH_ENTRY_HEADER_SIZE]);
+			offset += BATCH_ENTRY_HEADER_SIZE + length;
+		}
+	}
+
 	public static byte[] playerStatsToBytes(boolean includeNames, List<Player> players, boolean gameRunning, int gameTypeOrdinal, int timeSeconds) {
 		var size = 6 + getPlayersSize(players, includeNames);
 		ByteBuffer data = ByteBuffer.allocate(size);
@@ -107,6 +195,17 @@ public abstract class Messaging {
 		return data.array();
 	}
 
+	/**
+	 * Whether a state frame tells the device the player names: a compact ROSTER, or a legacy FULL_STATS encoded with
+	 * names (names are never empty, so the first player's name length is enough).
+	 */
+	public static boolean carriesNames(byte[] bytes) {
+		if (bytes[0] == (byte) (ROSTER.id() | COMPACT_FLAG)) {
+			return true;
+		}
+		return bytes[0] == FULL_STATS.id() && bytes.length > 14 && bytes[14] != 0;
+	}
+
 	private static int getPlayersSize(List<Player> players, boolean includeNames) {
 		int size = 0;
 		for (Player player : players) {
@@ -0,0 +1,35 @@
+package net.lasertag.lasertagserver.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A capture zone device: a beacon that detects the players standing in its area and reports which teams are present.
+ * King of the Hill and Domination score from them.
+ */
+@Getter
+public class Zone extends Actor {
+
+	public static final int NO_TEAM = -1;
+
+	// one bit per team id of the players inside, as last reported in ZONE_STATE
+	@Setter
+	private int presenceMask;
+
+	@Setter
+	private int ownerTeam;
+
+	public Zone(int id) {
+		super(id, Type.ZONE);
+		this.ownerTeam = NO_TEAM;
+	}
+
+	/**
+	 * The only team inside the zone, or {@link #NO_TEAM} if it is empty or contested.
+	 */
+	public int getControllingTeam() {
+		int mask = presenceMask;
+		return mask != 0 && (mask & (mask - 1)) == 0 ? Integer.numberOfTrailingZeros(mask) : NO_TEAM;
+	}
+
+}
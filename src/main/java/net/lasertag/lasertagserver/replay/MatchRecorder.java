@@ -0,0 +1,198 @@
+package net.lasertag.lasertagserver.replay;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.core.MatchObserver;
+import net.lasertag.lasertagserver.model.Player;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records every match into a {@link MatchRecording} and keeps finished ones as {@code <startedAt>.ltr} files.
+ * The last few recordings stay in memory, older ones are loaded from disk on demand.
+ */
+@Slf4j
+public class MatchRecorder implements MatchObserver {
+
+	private static final int CACHED_RECORDINGS = 8;
+
+	private final ActorRegistry actorRegistry;
+	private final Executor daemonExecutor;
+	private final Path directory;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private MatchRecording current;
+	private long startedAtMillis;
+
+	private final Map<Long, MatchRecording.RecordingInfo> infos = new TreeMap<>(Comparator.reverseOrder());
+	private final LinkedHashMap<Long, MatchRecording> cache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, MatchRecording> eldest) {
+			return size() > CACHED_RECORDINGS;
+		}
+	};
+
+	public MatchRecorder(ActorRegistry actorRegistry, Executor daemonExecutor, Path directory) {
+		this.actorRegistry = actorRegistry;
+		this.daemonExecutor = daemonExecutor;
+		this.directory = directory;
+	}
+
+	public void init() throws IOException {
+		Files.createDirectories(directory);
+		try (var files = Files.newDirectoryStream(directory, "*.ltr")) {
+			for (Path file : files) {
+				try (var in = Files.newInputStream(file)) {
+					var info = MatchRecording.readInfo(in);
+					infos.put(info.id(), info);
+				} catch (IOException e) {
+					log.warn("Skipping unreadable recording {}: {}", file, e.getMessage());
+				}
+			}
+		}
+		log.info("Found {} match recordings in {}", infos.size(), directory.toAbsolutePath());
+	}
+
+	@Override
+	public void onMatchStarted(GameType gameType, long now) {
+		List<Player> players = actorRegistry.getPlayers();
+		int[] ids = new int[players.size()];
+		int[] teams = new int[players.size()];
+		String[] names = new String[players.size()];
+		for (int slot = 0; slot < players.size(); slot++) {
+			ids[slot] = players.get(slot).getId();
+			teams[slot] = players.get(slot).getTeamId();
+			names[slot] = players.get(slot).getName();
+		}
+		lock.lock();
+		try {
+			current = new MatchRecording(now, gameType, ids, teams, names);
+			startedAtMillis = now;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onMatchEnded(long now) {
+		MatchRecording finished;
+		lock.lock();
+		try {
+			if (current == null) {
+				return;
+			}
+			finished = current;
+			finished.finish((int) (now - startedAtMillis));
+			current = null;
+			cache.put(finished.getId(), finished);
+			infos.put(finished.getId(), finished.getInfo());
+		} finally {
+			lock.unlock();
+		}
+		daemonExecutor.execute(() -> save(finished));
+	}
+
+	@Override
+	public void onHealthChanged(int player, int health, long now) {
+		record(now, MatchRecording.HEALTH, player, 0, health);
+	}
+
+	@Override
+	public void onKill(int victim, int killer, long now) {
+		record(now, MatchRecording.KILL, victim, killer, 0);
+	}
+
+	@Override
+	public void onRespawn(int player, long now) {
+		record(now, MatchRecording.RESPAWN, player, 0, 0);
+	}
+
+	@Override
+	public void onFlagTaken(int player, long now) {
+		record(now, MatchRecording.FLAG_TAKEN, player, 0, 0);
+	}
+
+	@Override
+	public void onFlagLost(int player, long now) {
+		record(now, MatchRecording.FLAG_LOST, player, 0, 0);
+	}
+
+	@Override
+	public void onFlagCaptured(int player, long now) {
+		record(now, MatchRecording.FLAG_CAPTURED, player, 0, 0);
+	}
+
+	@Override
+	public void onTeamScoreChanged(int teamId, int score, long now) {
+		record(now, MatchRecording.TEAM_SCORE, teamId, 0, score);
+	}
+
+	private void record(long now, byte kind, int subject, int object, int value) {
+		lock.lock();
+		try {
+			if (current != null) {
+				current.append((int) Math.max(0, now - startedAtMillis), kind, subject, object, value);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void save(MatchRecording recording) {
+		Path file = directory.resolve(recording.getId() + ".ltr");
+		Path temp = directory.resolve(recording.getId() + ".ltr.tmp");
+		try {
+			try (var out = Files.newOutputStream(temp)) {
+				recording.writeTo(out);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.info("Saved match recording {} ({} events, {} bytes)", file.getFileName(), recording.getInfo().events(), Files.size(file));
+		} catch (IOException e) {
+			log.error("Failed to save match recording {}: {}", file, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finished recordings, newest first.
+	 */
+	public List<MatchRecording.RecordingInfo> listRecordings() {
+		lock.lock();
+		try {
+			return new ArrayList<>(infos.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A finished recording by id, or null if there is none.
+	 */
+	public MatchRecording getRecording(long id) throws IOException {
+		lock.lock();
+		try {
+			var cached = cache.get(id);
+			if (cached != null || !infos.containsKey(id)) {
+				return cached;
+			}
+		} finally {
+			lock.unlock();
+		}
+		MatchRecording loaded;
+		try (var in = Files.newInputStream(directory.resolve(id + ".ltr"))) {
+			loaded = MatchRecording.readFrom(in);
+		}
+		lock.lock();
+		try {
+			cache.put(id, loaded);
+		} finally {
+			lock.unlock();
+		}
+		return loaded;
+	}
+
+}
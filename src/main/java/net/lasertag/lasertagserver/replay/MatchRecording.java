@@ -0,0 +1,263 @@
+package net.lasertag.lasertagserver.replay;
+
+import net.lasertag.lasertagserver.core.GameType;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Event log of one match with a keyframe of the full {@link ReplayState} every {@link #KEYFRAME_INTERVAL_MILLIS}.
+ * Events sit in parallel primitive arrays; {@link #frameAt} copies the nearest keyframe at or before the requested
+ * time and applies at most one interval worth of events, so seeking costs the same at minute one and minute sixty.
+ * <p>
+ * File format (big-endian): magic {@code LTRP}, format version byte, started-at long, duration millis int, game type
+ * byte, player count byte, then per player: id byte, team byte, modified-UTF-8 name; event count int, then per event:
+ * offset millis int, kind byte, subject byte, object byte, value short. Keyframes are not stored, they are rebuilt
+ * while loading.
+ */
+public class MatchRecording {
+
+	public static final int KEYFRAME_INTERVAL_MILLIS = 5000;
+
+	private static final int MAGIC = 0x4C545250; // "LTRP"
+	private static final byte FORMAT_VERSION = 1;
+
+	static final byte HEALTH = 1;
+	static final byte KILL = 2;
+	static final byte RESPAWN = 3;
+	static final byte FLAG_TAKEN = 4;
+	static final byte FLAG_LOST = 5;
+	static final byte FLAG_CAPTURED = 6;
+	static final byte TEAM_SCORE = 7;
+
+	private final long startedAtMillis;
+	private final GameType gameType;
+	private final int[] playerIds;
+	private final int[] playerTeams;
+	private final String[] playerNames;
+	private final int[] slotByPlayerId;
+
+	private int eventCount;
+	private int[] offsets = new int[1024];
+	private byte[] kinds = new byte[1024];
+	private byte[] subjects = new byte[1024];
+	private byte[] objects = new byte[1024];
+	private short[] values = new short[1024];
+
+	// keyframe k is the state before any event at or after k * KEYFRAME_INTERVAL_MILLIS
+	private final List<ReplayState> keyframes = new ArrayList<>();
+	private int[] keyframeEventIndex = new int[64];
+	private final ReplayState head;
+
+	private int durationMillis;
+
+	MatchRecording(long startedAtMillis, GameType gameType, int[] playerIds, int[] playerTeams, String[] playerNames) {
+		this.startedAtMillis = startedAtMillis;
+		this.gameType = gameType;
+		this.playerIds = playerIds;
+		this.playerTeams = playerTeams;
+		this.playerNames = playerNames;
+		int maxId = Arrays.stream(playerIds).max().orElse(-1);
+		slotByPlayerId = new int[maxId + 1];
+		Arrays.fill(slotByPlayerId, -1);
+		for (int slot = 0; slot < playerIds.length; slot++) {
+			slotByPlayerId[playerIds[slot]] = slot;
+		}
+		// Game zeroes health at start, everybody begins dead until their first respawn
+		head = new ReplayState(playerIds.length);
+		keyframes.add(head.copy());
+	}
+
+	/**
+	 * Player events take the player ids as sent by the phones, team scores take the team id as subject.
+	 * Events for players not in the roster are ignored. Offsets must not go backwards.
+	 */
+	void append(int offsetMillis, byte kind, int subject, int object, int value) {
+		if (kind != TEAM_SCORE) {
+			subject = slotOf(subject);
+			if (subject < 0) {
+				return;
+			}
+		}
+		if (kind == KILL) {
+			object = slotOf(object);
+			if (object < 0) {
+				return;
+			}
+		}
+		while (offsetMillis >= keyframes.size() * KEYFRAME_INTERVAL_MILLIS) {
+			if (keyframes.size() == keyframeEventIndex.length) {
+				keyframeEventIndex = Arrays.copyOf(keyframeEventIndex, keyframeEventIndex.length * 2);
+			}
+			keyframeEventIndex[keyframes.size()] = eventCount;
+			keyframes.add(head.copy());
+		}
+		if (eventCount == offsets.length) {
+			int capacity = eventCount * 2;
+			offsets = Arrays.copyOf(offsets, capacity);
+			kinds = Arrays.copyOf(kinds, capacity);
+			subjects = Arrays.copyOf(subjects, capacity);
+			objects = Arrays.copyOf(objects, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		offsets[eventCount] = offsetMillis;
+		kinds[eventCount] = kind;
+		subjects[eventCount] = (byte) subject;
+		objects[eventCount] = (byte) object;
+		values[eventCount] = (short) value;
+		eventCount++;
+		head.apply(kind, subject, object, value, offsetMillis);
+		durationMillis = Math.max(durationMillis, offsetMillis);
+	}
+
+	void finish(int durationMillis) {
+		this.durationMillis = Math.max(this.durationMillis, durationMillis);
+	}
+
+	private int slotOf(int playerId) {
+		return playerId >= 0 && playerId < slotByPlayerId.length ? slotByPlayerId[playerId] : -1;
+	}
+
+	public long getId() {
+		return startedAtMillis;
+	}
+
+	public int getDurationMillis() {
+		return durationMillis;
+	}
+
+	public RecordingInfo getInfo() {
+		return new RecordingInfo(startedAtMillis, startedAtMillis, durationMillis, gameType.name(), playerIds.length, eventCount);
+	}
+
+	public ReplayFrame frameAt(int offsetMillis) {
+		offsetMillis = Math.max(0, Math.min(offsetMillis, durationMillis));
+		int keyframe = Math.min(offsetMillis / KEYFRAME_INTERVAL_MILLIS, keyframes.size() - 1);
+		ReplayState state = keyframes.get(keyframe).copy();
+		for (int event = keyframeEventIndex[keyframe]; event < eventCount && offsets[event] <= offsetMillis; event++) {
+			state.apply(kinds[event], subjects[event], objects[event], values[event], offsets[event]);
+		}
+		return toFrame(offsetMillis, state);
+	}
+
+	private ReplayFrame toFrame(int offsetMillis, ReplayState state) {
+		List<PlayerFrame> players = new ArrayList<>(playerIds.length);
+		for (int slot = 0; slot < playerIds.length; slot++) {
+			players.add(new PlayerFrame(playerIds[slot], playerNames[slot], playerTeams[slot], state.score[slot],
+				state.kills[slot], state.deaths[slot], state.health[slot], state.alive[slot], state.flagCarrier[slot]));
+		}
+		List<TeamScore> teamScores = new ArrayList<>();
+		if (gameType.isTeamBased()) {
+			Arrays.stream(playerTeams).distinct().sorted()
+				.filter(team -> team >= 0 && team < ReplayState.MAX_TEAMS)
+				.forEach(team -> teamScores.add(new TeamScore(team, state.teamScores[team])));
+		}
+		List<KillFeedEntry> killFeed = new ArrayList<>();
+		for (int i = state.feedCount - 1; i >= Math.max(0, state.feedCount - ReplayState.KILL_FEED_SIZE); i--) {
+			int slot = i % ReplayState.KILL_FEED_SIZE;
+			killFeed.add(new KillFeedEntry(state.feedOffset[slot], playerNames[state.feedKiller[slot]], playerNames[state.feedVictim[slot]]));
+		}
+		return new ReplayFrame(startedAtMillis, offsetMillis, durationMillis, gameType.name(), players, teamScores, killFeed);
+	}
+
+	void writeTo(OutputStream stream) throws IOException {
+		var out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+		out.writeLong(startedAtMillis);
+		out.writeInt(durationMillis);
+		out.writeByte(gameType.ordinal());
+		out.writeByte(playerIds.length);
+		for (int slot = 0; slot < playerIds.length; slot++) {
+			out.writeByte(playerIds[slot]);
+			out.writeByte(playerTeams[slot]);
+			out.writeUTF(playerNames[slot]);
+		}
+		out.writeInt(eventCount);
+		for (int event = 0; event < eventCount; event++) {
+			out.writeInt(offsets[event]);
+			out.writeByte(kinds[event]);
+			// written as player ids again so the file does not depend on slot order
+			out.writeByte(kinds[event] == TEAM_SCORE ? subjects[event] : playerIds[subjects[event]]);
+			out.writeByte(kinds[event] == KILL ? playerIds[objects[event]] : objects[event]);
+			out.writeShort(values[event]);
+		}
+		out.flush();
+	}
+
+	static MatchRecording readFrom(InputStream stream) throws IOException {
+		var in = new DataInputStream(new BufferedInputStream(stream));
+		readMagic(in);
+		long startedAt = in.readLong();
+		int duration = in.readInt();
+		GameType type = GameType.values()[in.readByte()];
+		int players = in.readUnsignedByte();
+		int[] ids = new int[players];
+		int[] teams = new int[players];
+		String[] names = new String[players];
+		for (int slot = 0; slot < players; slot++) {
+			ids[slot] = in.readByte();
+			teams[slot] = in.readByte();
+			names[slot] = in.readUTF();
+		}
+		var recording = new MatchRecording(startedAt, type, ids, teams, names);
+		int events = in.readInt();
+		for (int event = 0; event < events; event++) {
+			recording.append(in.readInt(), in.readByte(), in.readByte(), in.readByte(), in.readShort());
+		}
+		recording.finish(duration);
+		return recording;
+	}
+
+	/**
+	 * Reads only the header, for listing recordings without loading their events.
+	 */
+	static RecordingInfo readInfo(InputStream stream) throws IOException {
+		var in = new DataInputStream(new BufferedInputStream(stream, 512));
+		readMagic(in);
+		long startedAt = in.readLong();
+		int duration = in.readInt();
+		GameType type = GameType.values()[in.readByte()];
+		int players = in.readUnsignedByte();
+		for (int slot = 0; slot < players; slot++) {
+			in.readShort();
+			in.readUTF();
+		}
+		return new RecordingInfo(startedAt, startedAt, duration, type.name(), players, in.readInt());
+	}
+
+	private static void readMagic(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a match recording");
+		}
+		int version = in.readByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported recording format version " + version);
+		}
+	}
+
+	public record RecordingInfo(long id, long startedAtMillis, int durationMillis, String gameType, int players, int events) {}
+
+	public record PlayerFrame(int id, String name, int teamId, int score, int kills, int deaths, int health,
+							  boolean alive, boolean flagCarrier) {}
+
+	public record TeamScore(int teamId, int score) {}
+
+	public record KillFeedEntry(int offsetMillis, String killer, String victim) {}
+
+	/**
+	 * Match state {@code offsetMillis} into recording {@code id}; the kill feed is newest first.
+	 */
+	public record ReplayFrame(
+		long id,
+		int offsetMillis,
+		int durationMillis,
+		String gameType,
+		List<PlayerFrame> players,
+		List<TeamScore> teamScores,
+		List<KillFeedEntry> killFeed
+	) {}
+
+}
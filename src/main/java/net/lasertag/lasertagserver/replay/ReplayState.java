@@ -0,0 +1,82 @@
+package net.lasertag.lasertagserver.replay;
+
+/**
+ * Scoreboard, flag and kill feed state of a match at one instant, for the players of one recording (by slot).
+ * Kept in primitive arrays so keyframes are cheap to copy.
+ */
+class ReplayState {
+
+	static final int MAX_TEAMS = 8;
+	static final int KILL_FEED_SIZE = 5;
+
+	final int[] score;
+	final int[] kills;
+	final int[] deaths;
+	final int[] health;
+	final boolean[] alive;
+	final boolean[] flagCarrier;
+	final int[] teamScores = new int[MAX_TEAMS];
+
+	// ring of the last kills, feedCount counts all kills so far
+	final int[] feedOffset = new int[KILL_FEED_SIZE];
+	final int[] feedKiller = new int[KILL_FEED_SIZE];
+	final int[] feedVictim = new int[KILL_FEED_SIZE];
+	int feedCount;
+
+	ReplayState(int players) {
+		score = new int[players];
+		kills = new int[players];
+		deaths = new int[players];
+		health = new int[players];
+		alive = new boolean[players];
+		flagCarrier = new boolean[players];
+	}
+
+	private ReplayState(ReplayState other) {
+		score = other.score.clone();
+		kills = other.kills.clone();
+		deaths = other.deaths.clone();
+		health = other.health.clone();
+		alive = other.alive.clone();
+		flagCarrier = other.flagCarrier.clone();
+		System.arraycopy(other.teamScores, 0, teamScores, 0, MAX_TEAMS);
+		System.arraycopy(other.feedOffset, 0, feedOffset, 0, KILL_FEED_SIZE);
+		System.arraycopy(other.feedKiller, 0, feedKiller, 0, KILL_FEED_SIZE);
+		System.arraycopy(other.feedVictim, 0, feedVictim, 0, KILL_FEED_SIZE);
+		feedCount = other.feedCount;
+	}
+
+	ReplayState copy() {
+		return new ReplayState(this);
+	}
+
+	void apply(byte kind, int subject, int object, int value, int offsetMillis) {
+		switch (kind) {
+			case MatchRecording.HEALTH -> health[subject] = value;
+			case MatchRecording.KILL -> {
+				// subject is the victim, object the killer; Game gives the killer one point per kill
+				kills[object]++;
+				score[object]++;
+				deaths[subject]++;
+				health[subject] = 0;
+				alive[subject] = false;
+				flagCarrier[subject] = false;
+				int slot = feedCount % KILL_FEED_SIZE;
+				feedOffset[slot] = offsetMillis;
+				feedKiller[slot] = object;
+				feedVictim[slot] = subject;
+				feedCount++;
+			}
+			case MatchRecording.RESPAWN -> alive[subject] = true;
+			case MatchRecording.FLAG_TAKEN -> flagCarrier[subject] = true;
+			case MatchRecording.FLAG_LOST, MatchRecording.FLAG_CAPTURED -> flagCarrier[subject] = false;
+			case MatchRecording.TEAM_SCORE -> {
+				if (subject >= 0 && subject < MAX_TEAMS) {
+					teamScores[subject] = value;
+				}
+			}
+			default -> {}
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package net.lasertag.lasertagserver.replication;
+
+import net.lasertag.lasertagserver.core.*;
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.model.Player;
+import net.lasertag.lasertagserver.model.Zone;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Payloads of the replication stream (big-endian).
+ * <ul>
+ *   <li>{@code SETTINGS}: version long, preset name UTF, frag limit int, game type byte, time limit minutes int,
+ *   stats delivery byte, player count byte, per player name UTF, bullets max, damage and team id ints, then timeout
+ *   and amount ints of the health and of the ammo dispensers.</li>
+ *   <li>{@code STATE}: playing byte, time left seconds int, actor count byte, per actor type byte, id byte, protocol
+ *   version byte, address length byte (0 when offline) and address bytes, and for players health and score shorts,
+ *   flag carrier byte and respawn point byte, for zones owner team and presence mask bytes; then one score int per
+ *   team id, -1 for teams not in play.</li>
+ * </ul>
+ */
+final class ReplicationCodec {
+
+	static final int TEAMS = Messaging.TEAM_CYAN + 1;
+
+	private ReplicationCodec() {
+	}
+
+	static void writeSettings(DataOutput out, SettingsSnapshot settings, String presetName) throws IOException {
+		out.writeLong(settings.getVersion());
+		out.writeUTF(presetName);
+		out.writeInt(settings.getFragLimit());
+		out.writeByte(settings.getGameType().ordinal());
+		out.writeInt(settings.getTimeLimitMinutes());
+		out.writeByte(settings.getStatsDelivery().ordinal());
+		out.writeByte(settings.getPlayers().size());
+		for (var player : settings.getPlayers()) {
+			out.writeUTF(player.name());
+			out.writeInt(player.bulletsMax());
+			out.writeInt(player.damage());
+			out.writeInt(player.teamId());
+		}
+		for (var dispenser : new SettingsSnapshot.DispenserConfig[] {settings.getHealthDispenserSettings(), settings.getAmmoDispenserSettings()}) {
+			out.writeInt(dispenser.timeout());
+			out.writeInt(dispenser.amount());
+		}
+	}
+
+	static void readSettings(DataInput in, GameSettings gameSettings) throws IOException {
+		long version = in.readLong();
+		String presetName = in.readUTF();
+		var preset = new GameSettingsPreset();
+		preset.setFragLimit(in.readInt());
+		preset.setGameType(GameType.values()[in.readByte()]);
+		preset.setTimeLimitMinutes(in.readInt());
+		preset.setStatsDelivery(StatsDelivery.values()[in.readByte()]);
+		int players = in.readByte();
+		for (int id = 0; id < players; id++) {
+			preset.setPlayerSettings(id, new GameSettingsPreset.PlayerSettings(in.readUTF(), in.readInt(), in.readInt(), in.readInt()));
+		}
+		preset.setHealthDispenserSettings(new GameSettingsPreset.DispenserSettings(in.readInt(), in.readInt()));
+		preset.setAmmoDispenserSettings(new GameSettingsPreset.DispenserSettings(in.readInt(), in.readInt()));
+		gameSettings.applyReplicated(SettingsSnapshot.fromPreset(preset, version), presetName);
+	}
+
+	static void writeState(DataOutput out, Game game, ActorRegistry actorRegistry) throws IOException {
+		out.writeBoolean(game.isGamePlaying());
+		out.writeInt(game.getTimeLeftSeconds());
+		var actors = actorRegistry.getActors();
+		out.writeByte(actors.size());
+		for (int i = 0; i < actors.size(); i++) {
+			Actor actor = actors.get(i);
+			out.writeByte(actor.getType().ordinal());
+			out.writeByte(actor.getId());
+			out.writeByte(actor.getProtocolVersion());
+			InetAddress address = actor.getClientIp();
+			if (address == null) {
+				out.writeByte(0);
+			} else {
+				byte[] bytes = address.getAddress();
+				out.writeByte(bytes.length);
+				out.write(bytes);
+			}
+			if (actor instanceof Player player) {
+				out.writeShort(player.getHealth());
+				out.writeShort(player.getScore());
+				out.writeBoolean(player.isFlagCarrier());
+				out.writeByte(player.getAssignedRespawnPoint());
+			} else if (actor instanceof Zone zone) {
+				out.writeByte(zone.getOwnerTeam());
+				out.writeByte(zone.getPresenceMask());
+			}
+		}
+		for (int team = 0; team < TEAMS; team++) {
+			out.writeInt(actorRegistry.getTeamScore(team));
+		}
+	}
+
+	static void readState(DataInput in, Game game, ActorRegistry actorRegistry) throws IOException {
+		boolean playing = in.readBoolean();
+		int timeLeftSeconds = in.readInt();
+		int actors = in.readUnsignedByte();
+		for (int i = 0; i < actors; i++) {
+			Actor actor = actorRegistry.getActorByTypeAndId(Actor.Type.values()[in.readByte()], in.readByte());
+			actor.setProtocolVersion(in.readByte());
+			int addressLength = in.readUnsignedByte();
+			if (addressLength == 0) {
+				actor.setClientIp(null);
+			} else {
+				byte[] bytes = new byte[addressLength];
+				in.readFully(bytes);
+				if (actor.getClientIp() == null || !Arrays.equals(actor.getClientIp().getAddress(), bytes)) {
+					actor.setClientIp(InetAddress.getByAddress(bytes));
+				}
+			}
+			if (actor instanceof Player player) {
+				player.setHealth(in.readShort());
+				player.setScore(in.readShort());
+				player.setFlagCarrier(in.readBoolean());
+				player.setAssignedRespawnPoint(in.readByte());
+			} else if (actor instanceof Zone zone) {
+				zone.setOwnerTeam(in.readByte());
+				zone.setPresenceMask(in.readByte());
+			}
+		}
+		for (int team = 0; team < TEAMS; team++) {
+			actorRegistry.restoreTeamScore(team, in.readInt());
+		}
+		game.restoreReplicatedState(playing, timeLeftSeconds);
+	}
+
+}
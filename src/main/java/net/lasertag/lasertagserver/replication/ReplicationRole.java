@@ -0,0 +1,10 @@
+package net.lasertag.lasertagserver.replication;
+
+/**
+ * Set with {@code lasertag.replication.role}; a standalone server is {@link #NONE}.
+ */
+public enum ReplicationRole {
+	NONE,
+	PRIMARY,
+	STANDBY
+}
@@ -0,0 +1,303 @@
+package net.lasertag.lasertagserver.replication;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.Game;
+import net.lasertag.lasertagserver.core.GameSettings;
+import net.lasertag.lasertagserver.core.UdpServer;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hot standby over a TCP connection. The primary encodes the match state every {@link #TICK_MILLIS} and streams it
+ * to the standby whenever it differs from what was last sent, plus the settings whenever their version or the preset
+ * changes; a heartbeat goes out when nothing changed for {@link #HEARTBEAT_MILLIS}. The standby applies every frame to
+ * its own actors, settings and match clock and acknowledges it, which gives the primary the replication lag.
+ * <p>
+ * The standby does not bind the device port. When the connection drops, or nothing arrives within
+ * {@code lasertag.replication.failover-after-ms}, it binds the port (waiting for the old process to let go of it),
+ * resyncs every device it knows and carries on the match. If the port cannot be bound, it goes back to following and
+ * tries again the next time the primary cannot be reached. Devices keep sending to the same address, so the takeover
+ * is seamless when both instances run on one host, which is the setup this targets; across hosts the server address
+ * has to move too.
+ * <p>
+ * Frames: kind byte, sequence long, payload length int, payload (see {@link ReplicationCodec}). Acknowledgements
+ * from the standby are the sequence long.
+ */
+@Slf4j
+public class ReplicationService {
+
+	static final int TICK_MILLIS = 20;
+	static final int HEARTBEAT_MILLIS = 200;
+
+	private static final byte KIND_HEARTBEAT = 0;
+	private static final byte KIND_SETTINGS = 1;
+	private static final byte KIND_STATE = 2;
+
+	private static final int RETRY_MILLIS = 500;
+	// sent frames whose acknowledgement can still be matched to a send time
+	private static final int ACK_WINDOW = 64;
+
+	private final ReplicationRole role;
+	private final String host;
+	private final int port;
+	private final int failoverAfterMillis;
+	private final Game game;
+	private final ActorRegistry actorRegistry;
+	private final GameSettings gameSettings;
+	private final UdpServer udpServer;
+	private final Metrics metrics;
+	// lead, follow and reading acknowledgements run as long as the connection or the server, each on a thread of its own
+	private final ThreadFactory loopThreadFactory;
+
+	private volatile boolean running = true;
+	private volatile boolean connected;
+	private volatile Closeable openSocket;
+
+	// primary: send time of each frame by sequence, read by the acknowledgement thread
+	private final long[] sentAtNanos = new long[ACK_WINDOW];
+
+	public ReplicationService(ReplicationRole role, String host, int port, int failoverAfterMillis,
+							  Game game, ActorRegistry actorRegistry, GameSettings gameSettings, UdpServer udpServer,
+							  Metrics metrics, ThreadFactory loopThreadFactory) {
+		this.role = role;
+		this.host = host;
+		this.port = port;
+		this.failoverAfterMillis = failoverAfterMillis;
+		this.game = game;
+		this.actorRegistry = actorRegistry;
+		this.gameSettings = gameSettings;
+		this.udpServer = udpServer;
+		this.metrics = metrics;
+		this.loopThreadFactory = loopThreadFactory;
+	}
+
+	/**
+	 * Starts leading or following, called once the engine has started, see {@code EngineConfiguration}.
+	 */
+	public void start() {
+		switch (role) {
+			case PRIMARY -> loopThreadFactory.newThread(this::lead).start();
+			case STANDBY -> loopThreadFactory.newThread(this::follow).start();
+			case NONE -> {
+				return;
+			}
+		}
+		metrics.registerGauge("lasertag_replication_connected", () -> connected ? 1 : 0);
+	}
+
+	public void close() {
+		running = false;
+		var socket = openSocket;
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException ignored) {}
+		}
+	}
+
+	public ReplicationRole getRole() {
+		return role;
+	}
+
+	// primary
+
+	private void lead() {
+		try (var server = new ServerSocket(port, 1, InetAddress.getByName(host))) {
+			openSocket = server;
+			log.info("Replication primary listening on {}:{}", host, port);
+			while (running) {
+				try (var socket = server.accept()) {
+					socket.setTcpNoDelay(true);
+					log.info("Standby connected from {}", socket.getRemoteSocketAddress());
+					connected = true;
+					loopThreadFactory.newThread(() -> readAcknowledgements(socket)).start();
+					stream(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+				} catch (IOException e) {
+					if (running) {
+						log.warn("Standby disconnected: {}", e.getMessage());
+					}
+				} finally {
+					connected = false;
+				}
+			}
+		} catch (IOException e) {
+			if (running) {
+				log.error("Replication primary stopped: {}", e.getMessage(), e);
+			}
+		}
+	}
+
+	private void stream(DataOutputStream out) throws IOException {
+		var state = new FrameBuffer();
+		var sentState = new FrameBuffer();
+		var stateOut = new DataOutputStream(state);
+		long sequence = 0;
+		long sentSettingsVersion = -1;
+		String sentPresetName = null;
+		long lastSentNanos = 0;
+		while (running) {
+			long now = System.nanoTime();
+			var settings = gameSettings.getCurrent();
+			var presetName = gameSettings.getCurrentPresetName();
+			if (settings.getVersion() != sentSettingsVersion || !presetName.equals(sentPresetName)) {
+				var payload = new ByteArrayOutputStream();
+				ReplicationCodec.writeSettings(new DataOutputStream(payload), settings, presetName);
+				writeFrame(out, KIND_SETTINGS, ++sequence, payload.toByteArray(), payload.size(), now);
+				sentSettingsVersion = settings.getVersion();
+				sentPresetName = presetName;
+				lastSentNanos = now;
+			}
+			state.reset();
+			var stateWriter = stateOut;
+			// under the match lock, so scores, players and the clock in the frame belong together
+			game.withMatchLock(() -> ReplicationCodec.writeState(stateWriter, game, actorRegistry));
+			if (!state.contentEquals(sentState)) {
+				writeFrame(out, KIND_STATE, ++sequence, state.buffer(), state.size(), now);
+				var swap = sentState;
+				sentState = state;
+				state = swap;
+				stateOut = new DataOutputStream(state);
+				lastSentNanos = now;
+			} else if (now - lastSentNanos >= HEARTBEAT_MILLIS * 1_000_000L) {
+				writeFrame(out, KIND_HEARTBEAT, sequence, state.buffer(), 0, now);
+				lastSentNanos = now;
+			}
+			out.flush();
+			try {
+				Thread.sleep(TICK_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void writeFrame(DataOutputStream out, byte kind, long sequence, byte[] payload, int length, long nowNanos) throws IOException {
+		if (kind != KIND_HEARTBEAT) {
+			sentAtNanos[(int) (sequence % ACK_WINDOW)] = nowNanos;
+		}
+		out.writeByte(kind);
+		out.writeLong(sequence);
+		out.writeInt(length);
+		out.write(payload, 0, length);
+	}
+
+	private void readAcknowledgements(Socket socket) {
+		try {
+			var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (running) {
+				long sequence = in.readLong();
+				metrics.recordReplicationLag(System.nanoTime() - sentAtNanos[(int) (sequence % ACK_WINDOW)]);
+			}
+		} catch (IOException e) {
+			// the streaming side notices and logs the disconnect
+		}
+	}
+
+	// standby
+
+	private void follow() {
+		boolean synced = false;
+		long lastHeardNanos = 0;
+		byte[] payload = new byte[512];
+		while (running) {
+			try (var socket = new Socket()) {
+				openSocket = socket;
+				socket.connect(new InetSocketAddress(host, port), failoverAfterMillis);
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(failoverAfterMillis);
+				log.info("Following primary at {}:{}", host, port);
+				connected = true;
+				var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				var out = new DataOutputStream(socket.getOutputStream());
+				while (running) {
+					byte kind = in.readByte();
+					long sequence = in.readLong();
+					int length = in.readInt();
+					if (length > payload.length) {
+						payload = new byte[length];
+					}
+					in.readFully(payload, 0, length);
+					lastHeardNanos = System.nanoTime();
+					synced = true;
+					if (kind == KIND_HEARTBEAT) {
+						continue;
+					}
+					var payloadIn = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+					if (kind == KIND_SETTINGS) {
+						ReplicationCodec.readSettings(payloadIn, gameSettings);
+					} else if (kind == KIND_STATE) {
+						game.withMatchLock(() -> ReplicationCodec.readState(payloadIn, game, actorRegistry));
+					}
+					out.writeLong(sequence);
+					out.flush();
+				}
+			} catch (IOException | RuntimeException e) {
+				connected = false;
+				if (!running) {
+					return;
+				}
+				if (synced) {
+					log.warn("Lost primary: {}", e.getMessage());
+					if (takeOver(lastHeardNanos)) {
+						return;
+					}
+				} else {
+					log.debug("Primary not reachable yet: {}", e.getMessage());
+				}
+				try {
+					Thread.sleep(RETRY_MILLIS);
+				} catch (InterruptedException interrupted) {
+					return;
+				}
+			}
+		}
+	}
+
+	// false if the device port could not be bound, the standby then follows again
+	private boolean takeOver(long lastHeardNanos) {
+		long detectedNanos = System.nanoTime();
+		try {
+			udpServer.takeOver(failoverAfterMillis * 5L);
+		} catch (IOException e) {
+			log.error("Cannot take over the device port, following the primary again: {}", e.getMessage());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		game.onTakeOver();
+		long takeoverNanos = System.nanoTime() - detectedNanos;
+		long detectMillis = (detectedNanos - lastHeardNanos) / 1_000_000;
+		metrics.recordFailover(detectMillis, takeoverNanos);
+		log.info("Took over as primary: primary silent for {} ms, port bound and devices resynced in {} µs",
+			detectMillis, takeoverNanos / 1000);
+		return true;
+	}
+
+	// exposes the backing array so frames can be compared and written without copying
+	private static final class FrameBuffer extends ByteArrayOutputStream {
+
+		private FrameBuffer() {
+			super(256);
+		}
+
+		private byte[] buffer() {
+			return buf;
+		}
+
+		private boolean contentEquals(FrameBuffer other) {
+			return Arrays.equals(buf, 0, count, other.buf, 0, other.count);
+		}
+
+	}
+
+}
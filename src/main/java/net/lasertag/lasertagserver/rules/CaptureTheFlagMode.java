@@ -0,0 +1,35 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Player;
+
+/**
+ * Captures score for the team; a carrier who gets killed drops the flag.
+ */
+public class CaptureTheFlagMode implements GameRule {
+
+	@Override
+	public void onKill(RuleContext context, Player victim, Player killer, long now) {
+		if (victim.isFlagCarrier()) {
+			victim.setFlagCarrier(false);
+			context.getMatchObservers().onFlagLost(victim.getId(), now);
+			context.broadcast(MessageType.FLAG_LOST, victim.getId());
+		}
+	}
+
+	@Override
+	public void onFlagTaken(RuleContext context, Player player, long now) {
+		player.setFlagCarrier(true);
+		context.getMatchObservers().onFlagTaken(player.getId(), now);
+		context.broadcast(MessageType.FLAG_TAKEN, player.getId());
+	}
+
+	@Override
+	public void onFlagCaptured(RuleContext context, Player player, long now) {
+		player.setFlagCarrier(false);
+		context.getMatchObservers().onFlagCaptured(player.getId(), now);
+		context.broadcast(MessageType.FLAG_CAPTURED, player.getId());
+		context.addTeamScore(player.getTeamId(), 1, now);
+	}
+
+}
@@ -0,0 +1,17 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.model.Player;
+
+/**
+ * Every player for themselves, the first to the frag limit wins.
+ */
+public class DeathmatchMode implements GameRule {
+
+	@Override
+	public void onKill(RuleContext context, Player victim, Player killer, long now) {
+		if (killer.getScore() >= context.getFragLimit()) {
+			context.endMatch();
+		}
+	}
+
+}
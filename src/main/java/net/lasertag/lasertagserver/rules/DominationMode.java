@@ -0,0 +1,71 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.model.Zone;
+
+import java.util.Arrays;
+
+/**
+ * Every zone is captured by a team that holds it alone for {@link #CAPTURE_TICKS} in a row and stays theirs until
+ * another team captures it. Every {@link #SCORE_TICKS} each team scores a point per zone it owns. Offline zones
+ * cannot change hands but keep scoring for their owner.
+ */
+public class DominationMode implements GameRule {
+
+	static final int CAPTURE_TICKS = 3 * RuleEngine.TICK_HZ;
+	static final int SCORE_TICKS = 2 * RuleEngine.TICK_HZ;
+
+	private final int[] capturingTeam = new int[ActorRegistry.ZONE_COUNT];
+	private final int[] captureTicks = new int[ActorRegistry.ZONE_COUNT];
+	private final int[] pointsByTeam = new int[Messaging.TEAM_CYAN + 1];
+	private int ticksToScore;
+
+	@Override
+	public long tickCostNanos() {
+		return 5_000;
+	}
+
+	@Override
+	public void onMatchStarted(RuleContext context, long now) {
+		Arrays.fill(capturingTeam, Zone.NO_TEAM);
+		Arrays.fill(captureTicks, 0);
+		ticksToScore = SCORE_TICKS;
+	}
+
+	@Override
+	public void tick(RuleContext context, long now) {
+		Zone[] zones = context.getActorRegistry().getZones();
+		for (int i = 0; i < zones.length; i++) {
+			Zone zone = zones[i];
+			int team = zone.isOnline() ? zone.getControllingTeam() : Zone.NO_TEAM;
+			if (team == Zone.NO_TEAM || team == zone.getOwnerTeam()) {
+				capturingTeam[i] = Zone.NO_TEAM;
+				captureTicks[i] = 0;
+			} else if (team != capturingTeam[i]) {
+				capturingTeam[i] = team;
+				captureTicks[i] = 1;
+			} else if (++captureTicks[i] >= CAPTURE_TICKS) {
+				capturingTeam[i] = Zone.NO_TEAM;
+				captureTicks[i] = 0;
+				context.captureZone(zone, team, now);
+			}
+		}
+		if (--ticksToScore > 0) {
+			return;
+		}
+		ticksToScore = SCORE_TICKS;
+		Arrays.fill(pointsByTeam, 0);
+		for (Zone zone : zones) {
+			if (zone.getOwnerTeam() != Zone.NO_TEAM) {
+				pointsByTeam[zone.getOwnerTeam()]++;
+			}
+		}
+		for (int team = 0; team < pointsByTeam.length; team++) {
+			if (pointsByTeam[team] > 0) {
+				context.addTeamScore(team, pointsByTeam[team], now);
+			}
+		}
+	}
+
+}
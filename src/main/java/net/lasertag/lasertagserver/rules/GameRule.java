@@ -0,0 +1,36 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.model.Player;
+
+/**
+ * A rule module: how a game mode scores, or an extra rule running next to it. {@link RuleEngine} calls the event
+ * hooks on the thread that applied the event and {@link #tick} {@link RuleEngine#TICK_HZ} times a second while a
+ * match runs. Every hook works through the {@link RuleContext} and must not block.
+ * <p>
+ * A rule with a tick hook declares what one tick costs at most, and the engine only admits rules whose declared
+ * costs fit its tick budget. Ticks must not allocate: keep per-match state in arrays sized up front and reset them
+ * in {@link #onMatchStarted}.
+ */
+public interface GameRule {
+
+	/**
+	 * Worst-case nanoseconds of one {@link #tick}, 0 for rules without a tick hook (which are never ticked).
+	 */
+	default long tickCostNanos() {
+		return 0;
+	}
+
+	default void onMatchStarted(RuleContext context, long now) {}
+
+	/**
+	 * After the killer's own score went up.
+	 */
+	default void onKill(RuleContext context, Player victim, Player killer, long now) {}
+
+	default void onFlagTaken(RuleContext context, Player player, long now) {}
+
+	default void onFlagCaptured(RuleContext context, Player player, long now) {}
+
+	default void tick(RuleContext context, long now) {}
+
+}
@@ -0,0 +1,47 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.model.Messaging;
+import net.lasertag.lasertagserver.model.Zone;
+
+import java.util.Arrays;
+
+/**
+ * Zone 0 is the hill. A team alone on it scores a point for every second it spends there, in total over the match;
+ * while the hill is empty, contested or offline nobody scores. Kills count for the players only.
+ */
+public class KingOfTheHillMode implements GameRule {
+
+	static final int HILL_ZONE = 0;
+	static final int TICKS_PER_POINT = RuleEngine.TICK_HZ;
+
+	private final int[] heldTicks = new int[Messaging.TEAM_CYAN + 1];
+	private int holder = Zone.NO_TEAM;
+
+	@Override
+	public long tickCostNanos() {
+		return 2_000;
+	}
+
+	@Override
+	public void onMatchStarted(RuleContext context, long now) {
+		Arrays.fill(heldTicks, 0);
+		holder = Zone.NO_TEAM;
+	}
+
+	@Override
+	public void tick(RuleContext context, long now) {
+		Zone hill = context.getActorRegistry().getZones()[HILL_ZONE];
+		int team = hill.isOnline() ? hill.getControllingTeam() : Zone.NO_TEAM;
+		if (team != holder) {
+			holder = team;
+			if (team != Zone.NO_TEAM) {
+				context.captureZone(hill, team, now);
+			}
+		}
+		if (team != Zone.NO_TEAM && ++heldTicks[team] >= TICKS_PER_POINT) {
+			heldTicks[team] = 0;
+			context.addTeamScore(team, 1, now);
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.MatchObserver;
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Zone;
+
+/**
+ * What a {@link GameRule} may do to the match, implemented by the game.
+ */
+public interface RuleContext {
+
+	ActorRegistry getActorRegistry();
+
+	MatchObserver getMatchObservers();
+
+	int getFragLimit();
+
+	/**
+	 * Adds to a team's score, tells the observers and the console, and ends the match once the frag limit is reached.
+	 */
+	void addTeamScore(int teamId, int points, long now);
+
+	void endMatch();
+
+	/**
+	 * Sends an event to every online player.
+	 */
+	void broadcast(MessageType type, int value);
+
+	/**
+	 * Gives the zone to {@code teamId} and announces it to the zone device and the players.
+	 */
+	void captureZone(Zone zone, int teamId, long now);
+
+}
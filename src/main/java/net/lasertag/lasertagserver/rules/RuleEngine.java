@@ -0,0 +1,124 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.model.Player;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the rules of the current match: the module of its {@link GameType} followed by the extra rules, in the order
+ * they were added. The active rules are fixed when a match starts and kept in arrays, so hooks and ticks are plain
+ * loops. Extra rules are admitted while the declared tick costs of all rules fit {@link #TICK_BUDGET_NANOS}; the
+ * measured tick time goes to {@code lasertag_rules_tick_nanos}.
+ */
+public class RuleEngine {
+
+	private static final Logger log = LoggerFactory.getLogger(RuleEngine.class);
+
+	public static final int TICK_HZ = 20;
+	public static final long TICK_MILLIS = 1000 / TICK_HZ;
+	// rules may declare a quarter of the tick, the rest is left to the other tasks of the ticker thread
+	static final long TICK_BUDGET_NANOS = TICK_MILLIS * 1_000_000 / 4;
+
+	private static final GameRule[] NO_RULES = new GameRule[0];
+
+	private final Metrics metrics;
+	private final Map<GameType, GameRule> modes = new EnumMap<>(GameType.class);
+	private final List<GameRule> extraRules = new ArrayList<>();
+
+	private volatile GameRule[] active = NO_RULES;
+	private volatile GameRule[] ticking = NO_RULES;
+	private volatile long declaredTickCost;
+
+	public RuleEngine(Metrics metrics) {
+		this.metrics = metrics;
+		modes.put(GameType.DM, new DeathmatchMode());
+		modes.put(GameType.TEAM_DM, new TeamDeathmatchMode());
+		modes.put(GameType.CTF, new CaptureTheFlagMode());
+		modes.put(GameType.KING_OF_THE_HILL, new KingOfTheHillMode());
+		modes.put(GameType.DOMINATION, new DominationMode());
+		metrics.registerGauge("lasertag_rules_declared_tick_nanos", () -> declaredTickCost);
+	}
+
+	/**
+	 * Replaces the module of a game type, from the next match on.
+	 */
+	public void setMode(GameType gameType, GameRule mode) {
+		requireWithinBudget(mode);
+		modes.put(gameType, mode);
+	}
+
+	/**
+	 * Adds a rule to every match from the next one on, behind the game type's module.
+	 */
+	public void addRule(GameRule rule) {
+		requireWithinBudget(rule);
+		extraRules.add(rule);
+	}
+
+	private static void requireWithinBudget(GameRule rule) {
+		if (rule.tickCostNanos() > TICK_BUDGET_NANOS) {
+			throw new IllegalArgumentException(rule.getClass().getSimpleName() + " declares " + rule.tickCostNanos()
+				+ " ns per tick, over the " + TICK_BUDGET_NANOS + " ns budget");
+		}
+	}
+
+	public void activate(GameType gameType, RuleContext context, long now) {
+		List<GameRule> admitted = new ArrayList<>();
+		var mode = modes.get(gameType);
+		admitted.add(mode);
+		long cost = mode.tickCostNanos();
+		for (GameRule rule : extraRules) {
+			if (cost + rule.tickCostNanos() > TICK_BUDGET_NANOS) {
+				log.warn("Rule {} left out: {} ns per tick over the {} ns budget", rule.getClass().getSimpleName(),
+					cost + rule.tickCostNanos(), TICK_BUDGET_NANOS);
+				continue;
+			}
+			admitted.add(rule);
+			cost += rule.tickCostNanos();
+		}
+		active = admitted.toArray(NO_RULES);
+		ticking = admitted.stream().filter(rule -> rule.tickCostNanos() > 0).toArray(GameRule[]::new);
+		declaredTickCost = cost;
+		for (GameRule rule : active) {
+			rule.onMatchStarted(context, now);
+		}
+	}
+
+	public boolean isTicking() {
+		return ticking.length > 0;
+	}
+
+	public void tick(RuleContext context, long now) {
+		long start = System.nanoTime();
+		for (GameRule rule : ticking) {
+			rule.tick(context, now);
+		}
+		metrics.recordRulesTick(System.nanoTime() - start);
+	}
+
+	public void onKill(RuleContext context, Player victim, Player killer, long now) {
+		for (GameRule rule : active) {
+			rule.onKill(context, victim, killer, now);
+		}
+	}
+
+	public void onFlagTaken(RuleContext context, Player player, long now) {
+		for (GameRule rule : active) {
+			rule.onFlagTaken(context, player, now);
+		}
+	}
+
+	public void onFlagCaptured(RuleContext context, Player player, long now) {
+		for (GameRule rule : active) {
+			rule.onFlagCaptured(context, player, now);
+		}
+	}
+
+}
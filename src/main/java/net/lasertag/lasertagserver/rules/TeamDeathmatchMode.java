@@ -0,0 +1,15 @@
+package net.lasertag.lasertagserver.rules;
+
+import net.lasertag.lasertagserver.model.Player;
+
+/**
+ * Every kill scores for the killer's team.
+ */
+public class TeamDeathmatchMode implements GameRule {
+
+	@Override
+	public void onKill(RuleContext context, Player victim, Player killer, long now) {
+		context.addTeamScore(killer.getTeamId(), 1, now);
+	}
+
+}
@@ -0,0 +1,30 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lasertag.DatagramSent")
+@Label("Datagram Sent")
+@Description("One outbound datagram leaving the socket")
+@Category({"Lasertag", "UDP"})
+@StackTrace(false)
+public class DatagramSentEvent extends Event {
+
+	@Label("Destination")
+	public String destination;
+
+	@Label("Message Type")
+	public String messageType;
+
+	@Label("Traffic Class")
+	public String trafficClass;
+
+	@Label("Payload Size")
+	@DataAmount
+	public int payloadSize;
+}
@@ -0,0 +1,27 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lasertag.GameEventApplied")
+@Label("Game Event Applied")
+@Description("The MessageDispatcher handler of one gameplay event")
+@Category({"Lasertag", "Game"})
+@StackTrace(false)
+public class GameEventAppliedEvent extends Event {
+
+	@Label("Actor Id")
+	public int actorId;
+
+	@Label("Message Type")
+	public String messageType;
+
+	@Label("Payload Size")
+	@DataAmount
+	public int payloadSize;
+}
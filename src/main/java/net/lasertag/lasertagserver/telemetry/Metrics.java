@@ -0,0 +1,221 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms for the UDP, game and SSE hot paths. Recording never allocates, formatting only
+ * happens when {@code /api/metrics} is scraped.
+ */
+public class Metrics {
+
+	private final AtomicLongArray packetsIn = new AtomicLongArray(256);
+	private final AtomicLongArray packetsOut = new AtomicLongArray(256);
+	private final AtomicLong decodeFailures = new AtomicLong();
+	private final AtomicLong rejectedMessages = new AtomicLong();
+	private final AtomicLong deadEmitters = new AtomicLong();
+
+	private final Histogram packetServiceNanos = new Histogram();
+	private final Histogram gameEventNanos = new Histogram();
+	private final Histogram statsEncodeNanos = new Histogram();
+	private final Histogram statsEncodeBytes = new Histogram();
+	private final Histogram sseFanoutNanos = new Histogram();
+	private final Histogram reconnectGapMillis = new Histogram();
+	private final Histogram reconnectResyncNanos = new Histogram();
+	private final Histogram replicationLagNanos = new Histogram();
+	private final Histogram failoverDetectMillis = new Histogram();
+	private final Histogram failoverTakeoverNanos = new Histogram();
+	private final Histogram rulesTickNanos = new Histogram();
+	private final Histogram matchTransitionMillis = new Histogram();
+	private final Histogram matchSwitchNanos = new Histogram();
+
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	public void recordPacketIn(byte typeId) {
+		packetsIn.incrementAndGet(typeId & 0xFF);
+	}
+
+	public void recordPacketOut(byte typeId) {
+		packetsOut.incrementAndGet(typeId & 0xFF);
+	}
+
+	public void recordDecodeFailure() {
+		decodeFailures.incrementAndGet();
+	}
+
+	public void recordRejectedMessage() {
+		rejectedMessages.incrementAndGet();
+	}
+
+	public void recordPacketService(long nanos) {
+		packetServiceNanos.record(nanos);
+	}
+
+	public void recordGameEvent(long nanos) {
+		gameEventNanos.record(nanos);
+	}
+
+	public void recordStatsEncode(long nanos, int bytes) {
+		statsEncodeNanos.record(nanos);
+		statsEncodeBytes.record(bytes);
+	}
+
+	public void recordSseFanout(long nanos, int deadEmitterCount) {
+		sseFanoutNanos.record(nanos);
+		if (deadEmitterCount > 0) {
+			deadEmitters.addAndGet(deadEmitterCount);
+		}
+	}
+
+	/**
+	 * {@code gapMillis} is how long the device was silent, {@code resyncNanos} the time from its packet arriving to
+	 * the resync bundle being queued for sending, i.e. how long until the server considers it consistent again.
+	 */
+	public void recordReconnect(long gapMillis, long resyncNanos) {
+		reconnectGapMillis.record(gapMillis);
+		reconnectResyncNanos.record(resyncNanos);
+	}
+
+	public void recordRulesTick(long nanos) {
+		rulesTickNanos.record(nanos);
+	}
+
+	/**
+	 * Time from a state frame leaving the primary to the standby acknowledging it as applied.
+	 */
+	public void recordReplicationLag(long nanos) {
+		replicationLagNanos.record(nanos);
+	}
+
+	/**
+	 * {@code detectMillis} is how long the standby had not heard from the primary when it declared it lost,
+	 * {@code takeoverNanos} the time from then until the device port was bound and every device resynced.
+	 */
+	public void recordFailover(long detectMillis, long takeoverNanos) {
+		failoverDetectMillis.record(detectMillis);
+		failoverTakeoverNanos.record(takeoverNanos);
+	}
+
+	/**
+	 * {@code transitionMillis} is the time from a queued match ending to the next one starting, intermission included,
+	 * {@code switchNanos} the part of it spent applying the next preset, syncing the devices and starting the match.
+	 */
+	public void recordMatchTransition(long transitionMillis, long switchNanos) {
+		matchTransitionMillis.record(transitionMillis);
+		matchSwitchNanos.record(switchNanos);
+	}
+
+	/**
+	 * Registers a value read at scrape time, e.g. an executor queue depth. Names must be valid Prometheus names.
+	 */
+	public void registerGauge(String name, LongSupplier supplier) {
+		gauges.put(name, supplier);
+	}
+
+	private Map<String, Histogram> histograms() {
+		Map<String, Histogram> histograms = new LinkedHashMap<>();
+		histograms.put("lasertag_packet_service_nanos", packetServiceNanos);
+		histograms.put("lasertag_game_event_nanos", gameEventNanos);
+		histograms.put("lasertag_stats_encode_nanos", statsEncodeNanos);
+		histograms.put("lasertag_stats_encode_bytes", statsEncodeBytes);
+		histograms.put("lasertag_sse_fanout_nanos", sseFanoutNanos);
+		histograms.put("lasertag_reconnect_gap_millis", reconnectGapMillis);
+		histograms.put("lasertag_reconnect_resync_nanos", reconnectResyncNanos);
+		histograms.put("lasertag_replication_lag_nanos", replicationLagNanos);
+		histograms.put("lasertag_failover_detect_millis", failoverDetectMillis);
+		histograms.put("lasertag_failover_takeover_nanos", failoverTakeoverNanos);
+		histograms.put("lasertag_rules_tick_nanos", rulesTickNanos);
+		histograms.put("lasertag_match_transition_millis", matchTransitionMillis);
+		histograms.put("lasertag_match_switch_nanos", matchSwitchNanos);
+		return histograms;
+	}
+
+	public String toPrometheusText() {
+		StringBuilder out = new StringBuilder(4096);
+		writeTypeCounter(out, "lasertag_packets_in_total", "Datagrams received per message type", packetsIn);
+		writeTypeCounter(out, "lasertag_packets_out_total", "Datagrams queued for sending per message type", packetsOut);
+		writeCounter(out, "lasertag_decode_failures_total", "Datagrams that could not be decoded", decodeFailures.get());
+		writeCounter(out, "lasertag_rejected_messages_total", "Decoded messages without a handler, a known sender or that failed validation", rejectedMessages.get());
+		writeCounter(out, "lasertag_sse_dead_emitters_total", "SSE emitters dropped after a failed send", deadEmitters.get());
+
+		histograms().forEach((name, histogram) -> {
+			out.append("# TYPE ").append(name).append(" summary\n");
+			for (double quantile : new double[] {0.5, 0.9, 0.99}) {
+				out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+					.append(histogram.getValueAtQuantile(quantile)).append('\n');
+			}
+			out.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+			out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+		});
+
+		gauges.forEach((name, supplier) -> {
+			out.append("# TYPE ").append(name).append(" gauge\n");
+			out.append(name).append(' ').append(supplier.getAsLong()).append('\n');
+		});
+		return out.toString();
+	}
+
+	public Map<String, Object> getSummary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("packetsIn", countsByTypeName(packetsIn));
+		summary.put("packetsOut", countsByTypeName(packetsOut));
+		summary.put("decodeFailures", decodeFailures.get());
+		summary.put("rejectedMessages", rejectedMessages.get());
+		summary.put("deadEmitters", deadEmitters.get());
+
+		Map<String, Object> histogramSummaries = new LinkedHashMap<>();
+		histograms().forEach((name, histogram) -> histogramSummaries.put(name, Map.of(
+			"count", histogram.getCount(),
+			"mean", Math.round(histogram.getMean()),
+			"p50", histogram.getValueAtQuantile(0.5),
+			"p90", histogram.getValueAtQuantile(0.9),
+			"p99", histogram.getValueAtQuantile(0.99),
+			"max", histogram.getMax()
+		)));
+		summary.put("histograms", histogramSummaries);
+
+		Map<String, Long> gaugeValues = new LinkedHashMap<>();
+		gauges.forEach((name, supplier) -> gaugeValues.put(name, supplier.getAsLong()));
+		summary.put("gauges", gaugeValues);
+		return summary;
+	}
+
+	private static void writeCounter(StringBuilder out, String name, String help, long value) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(" counter\n");
+		out.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void writeTypeCounter(StringBuilder out, String name, String help, AtomicLongArray counts) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(" counter\n");
+		for (int id = 0; id < counts.length(); id++) {
+			long value = counts.get(id);
+			if (value > 0) {
+				out.append(name).append("{type=\"").append(typeName(id)).append("\"} ").append(value).append('\n');
+			}
+		}
+	}
+
+	private static Map<String, Long> countsByTypeName(AtomicLongArray counts) {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (int id = 0; id < counts.length(); id++) {
+			long value = counts.get(id);
+			if (value > 0) {
+				result.put(typeName(id), value);
+			}
+		}
+		return result;
+	}
+
+	private static String typeName(int id) {
+		return Messaging.getMessageTypeName((byte) id);
+	}
+
+}
@@ -0,0 +1,167 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Binary capture of the last datagrams in both directions. Recording copies the raw bytes into preallocated arrays,
+ * nothing is turned into text until a packet is queried, so it can stay on permanently in place of per-packet logging.
+ */
+public class PacketInspector {
+
+	private static final int CAPACITY = 8192;
+	private static final int MAX_CAPTURE = 64; // covers every event and a FULL_STATS of 6 players with names
+	private static final byte UNKNOWN_ACTOR_TYPE = -1;
+
+	private static final byte FLAG_OUTBOUND = 1;
+	private static final byte FLAG_DROPPED = 2;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	// slotSequence is cleared before and written after a slot's fields; readers copy a slot and keep the copy only if
+	// its sequence was the same before and after, so a slot overwritten meanwhile is skipped
+	private final AtomicLongArray slotSequence = new AtomicLongArray(CAPACITY);
+	private final long[] wallMillis = new long[CAPACITY];
+	private final int[] address = new int[CAPACITY];
+	private final byte[] flags = new byte[CAPACITY];
+	private final byte[] actorType = new byte[CAPACITY];
+	private final int[] actorId = new int[CAPACITY];
+	private final int[] length = new int[CAPACITY];
+	private final byte[] payload = new byte[CAPACITY * MAX_CAPTURE];
+
+	public void recordInbound(byte[] data, int dataLength, InetAddress from, boolean dropped) {
+		if (dataLength < 1) {
+			return;
+		}
+		byte type = inboundActorType(data[0]);
+		int id = dataLength > 1 ? data[1] : -1;
+		record(dropped ? FLAG_DROPPED : 0, from, type, id, data, dataLength);
+	}
+
+	public void recordOutbound(Actor actor, InetAddress to, byte[] data) {
+		byte type = actor == null ? UNKNOWN_ACTOR_TYPE : (byte) actor.getType().ordinal();
+		int id = actor == null ? -1 : actor.getId();
+		record(FLAG_OUTBOUND, to, type, id, data, data.length);
+	}
+
+	private void record(byte packetFlags, InetAddress ip, byte type, int id, byte[] data, int dataLength) {
+		long next = sequence.incrementAndGet();
+		int slot = (int) (next % CAPACITY);
+		slotSequence.set(slot, 0);
+		// the field writes below must not become visible before the cleared sequence
+		VarHandle.releaseFence();
+		wallMillis[slot] = System.currentTimeMillis();
+		// Inet4Address.hashCode() is the address itself, getAddress() would allocate a copy
+		address[slot] = ip == null ? 0 : ip.hashCode();
+		flags[slot] = packetFlags;
+		actorType[slot] = type;
+		actorId[slot] = id;
+		length[slot] = dataLength;
+		System.arraycopy(data, 0, payload, slot * MAX_CAPTURE, Math.min(dataLength, MAX_CAPTURE));
+		slotSequence.set(slot, next);
+	}
+
+	public long getLatestSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Packets newer than {@code afterSequence}, oldest first, at most {@code limit} of the newest matching ones.
+	 * {@code actor} is in the {@code PLAYER-3} form, both filters are optional.
+	 */
+	public List<PacketView> query(String actor, String messageType, long afterSequence, int limit) {
+		List<PacketView> packets = new ArrayList<>();
+		long newest = sequence.get();
+		long oldest = Math.max(afterSequence, newest - CAPACITY);
+		for (long current = newest; current > oldest && packets.size() < limit; current--) {
+			var captured = copy(current);
+			if (captured == null) {
+				continue;
+			}
+			var view = captured.toView();
+			if ((actor == null || actor.equals(view.actor())) && (messageType == null || messageType.equals(view.messageType()))) {
+				packets.add(view);
+			}
+		}
+		Collections.reverse(packets);
+		return packets;
+	}
+
+	// the slot's fields as they were while its sequence stayed the same, or null if it is being or was overwritten
+	private Captured copy(long packetSequence) {
+		int slot = (int) (packetSequence % CAPACITY);
+		if (slotSequence.get(slot) != packetSequence) {
+			return null;
+		}
+		int packetLength = length[slot];
+		int offset = slot * MAX_CAPTURE;
+		var captured = new Captured(packetSequence, wallMillis[slot], address[slot], flags[slot], actorType[slot], actorId[slot],
+			packetLength, Arrays.copyOfRange(payload, offset, offset + Math.clamp(packetLength, 0, MAX_CAPTURE)));
+		// the field reads above must not be moved after the sequence check below
+		VarHandle.acquireFence();
+		return slotSequence.get(slot) == packetSequence ? captured : null;
+	}
+
+	private record Captured(long sequence, long wallMillis, int address, byte flags, byte actorType, int actorId, int length,
+							byte[] payload) {
+
+		private PacketView toView() {
+			return new PacketView(
+				sequence,
+				(flags & FLAG_OUTBOUND) != 0 ? "OUT" : "IN",
+				(flags & FLAG_DROPPED) != 0,
+				wallMillis,
+				formatAddress(address),
+				actorType == UNKNOWN_ACTOR_TYPE ? null : Actor.Type.values()[actorType].name() + "-" + actorId,
+				payload.length == 0 ? null : Messaging.getMessageTypeName(payload[0]),
+				length,
+				HexFormat.ofDelimiter(" ").formatHex(payload)
+			);
+		}
+
+	}
+
+	private static byte inboundActorType(byte typeId) {
+		if (typeId == MessageType.HEALTH_DISPENSER_PING.id()) {
+			return (byte) Actor.Type.HEALTH.ordinal();
+		}
+		if (typeId == MessageType.AMMO_DISPENSER_PING.id()) {
+			return (byte) Actor.Type.AMMO.ordinal();
+		}
+		if (typeId == MessageType.ZONE_PING.id() || typeId == MessageType.ZONE_STATE.id()) {
+			return (byte) Actor.Type.ZONE.ordinal();
+		}
+		return (byte) Actor.Type.PLAYER.ordinal();
+	}
+
+	private static String formatAddress(int ip) {
+		return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+	}
+
+	/**
+	 * {@code payloadHex} holds at most the first 64 bytes, {@code length} is the real datagram size.
+	 */
+	public record PacketView(
+		long sequence,
+		String direction,
+		boolean dropped,
+		long timestampMillis,
+		String address,
+		String actor,
+		String messageType,
+		int length,
+		String payloadHex
+	) {}
+
+}
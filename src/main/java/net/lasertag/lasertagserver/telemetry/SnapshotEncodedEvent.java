@@ -0,0 +1,27 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lasertag.SnapshotEncoded")
+@Label("Snapshot Encoded")
+@Description("FULL_STATS snapshot encoding")
+@Category({"Lasertag", "Game"})
+@StackTrace(false)
+public class SnapshotEncodedEvent extends Event {
+
+	@Label("Players")
+	public int players;
+
+	@Label("With Names")
+	public boolean withNames;
+
+	@Label("Payload Size")
+	@DataAmount
+	public int payloadSize;
+}
@@ -0,0 +1,27 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lasertag.SseBroadcast")
+@Label("SSE Broadcast")
+@Description("One SSE event serialized and sent to every console viewer")
+@Category({"Lasertag", "Web"})
+@StackTrace(false)
+public class SseBroadcastEvent extends Event {
+
+	@Label("Event Name")
+	public String eventName;
+
+	@Label("Clients")
+	public int clients;
+
+	@Label("Payload Size")
+	@DataAmount
+	public int payloadSize;
+}
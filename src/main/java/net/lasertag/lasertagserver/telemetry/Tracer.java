@@ -0,0 +1,165 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Follows one inbound datagram through everything it causes. {@link #beginTrace} gives the current thread a trace
+ * id, spans recorded while it is set (or under an id captured with {@link #wrap}) land in a fixed-size ring buffer.
+ * Recording never allocates; the oldest spans are overwritten once the ring is full.
+ */
+public class Tracer {
+
+	public static final long NO_TRACE = 0;
+	public static final byte NO_MESSAGE_TYPE = -1;
+	public static final String PACKET_SPAN = "packet";
+
+	private static final int CAPACITY = 4096;
+
+	private final AtomicLong traceIds = new AtomicLong();
+	private final AtomicLong spanSequence = new AtomicLong();
+	private final ThreadLocal<long[]> currentTrace = ThreadLocal.withInitial(() -> new long[1]);
+
+	// slotSequence is cleared before and written after a slot's fields, readers skip slots being overwritten
+	private final AtomicLongArray slotSequence = new AtomicLongArray(CAPACITY);
+	private final long[] traceId = new long[CAPACITY];
+	private final String[] name = new String[CAPACITY];
+	private final int[] actorId = new int[CAPACITY];
+	private final byte[] messageTypeId = new byte[CAPACITY];
+	private final long[] startNanos = new long[CAPACITY];
+	private final long[] endNanos = new long[CAPACITY];
+	private final long[] wallMillis = new long[CAPACITY];
+
+	public long beginTrace() {
+		long id = traceIds.incrementAndGet();
+		currentTrace.get()[0] = id;
+		return id;
+	}
+
+	public void endTrace() {
+		currentTrace.get()[0] = NO_TRACE;
+	}
+
+	public long currentTraceId() {
+		return currentTrace.get()[0];
+	}
+
+	/**
+	 * Carries the caller's trace over to a task that runs later on another thread, e.g. a delayed GAME_OVER.
+	 */
+	public Runnable wrap(Runnable task) {
+		long id = currentTraceId();
+		if (id == NO_TRACE) {
+			return task;
+		}
+		return () -> {
+			long[] holder = currentTrace.get();
+			long previous = holder[0];
+			holder[0] = id;
+			try {
+				task.run();
+			} finally {
+				holder[0] = previous;
+			}
+		};
+	}
+
+	public void record(String spanName, int actor, byte typeId, long start, long end) {
+		record(currentTraceId(), spanName, actor, typeId, start, end);
+	}
+
+	public void record(long trace, String spanName, int actor, byte typeId, long start, long end) {
+		if (trace == NO_TRACE) {
+			return;
+		}
+		long sequence = spanSequence.incrementAndGet();
+		int slot = (int) (sequence % CAPACITY);
+		slotSequence.set(slot, 0);
+		// keeps the field writes below from being seen before the slot is marked as being written
+		VarHandle.releaseFence();
+		traceId[slot] = trace;
+		name[slot] = spanName;
+		actorId[slot] = actor;
+		messageTypeId[slot] = typeId;
+		startNanos[slot] = start;
+		endNanos[slot] = end;
+		wallMillis[slot] = System.currentTimeMillis();
+		slotSequence.set(slot, sequence);
+	}
+
+	/**
+	 * Most recent traces first. The root span (the inbound packet) names the trace; {@code messageType} filters on it.
+	 */
+	public List<TraceView> getRecentTraces(int limit, String messageType) {
+		Map<Long, List<Span>> spansByTrace = new LinkedHashMap<>();
+		long newest = spanSequence.get();
+		for (long sequence = newest; sequence > Math.max(0, newest - CAPACITY); sequence--) {
+			var span = copy(sequence);
+			if (span != null) {
+				spansByTrace.computeIfAbsent(span.traceId(), id -> new ArrayList<>()).add(span);
+			}
+		}
+
+		List<TraceView> traces = new ArrayList<>();
+		for (var entry : spansByTrace.entrySet()) {
+			var trace = toView(entry.getKey(), entry.getValue());
+			if (messageType == null || messageType.equals(trace.messageType())) {
+				traces.add(trace);
+				if (traces.size() >= limit) {
+					break;
+				}
+			}
+		}
+		return traces;
+	}
+
+	// the span recorded as sequence, or null if its slot is being or has been overwritten since
+	private Span copy(long sequence) {
+		int slot = (int) (sequence % CAPACITY);
+		if (slotSequence.get(slot) != sequence) {
+			return null;
+		}
+		var span = new Span(traceId[slot], name[slot], actorId[slot], messageTypeId[slot], startNanos[slot], endNanos[slot], wallMillis[slot]);
+		// the fields must be read before the sequence is checked again
+		VarHandle.acquireFence();
+		return slotSequence.get(slot) == sequence ? span : null;
+	}
+
+	private TraceView toView(long id, List<Span> spans) {
+		spans.sort(Comparator.comparingLong(Span::startNanos));
+		long traceStart = spans.get(0).startNanos();
+		long traceEnd = traceStart;
+		var root = spans.get(0);
+		List<SpanView> views = new ArrayList<>();
+		for (var span : spans) {
+			traceEnd = Math.max(traceEnd, span.endNanos());
+			if (PACKET_SPAN.equals(span.name())) {
+				root = span;
+			}
+			views.add(new SpanView(
+				span.name(),
+				typeName(span.typeId()),
+				span.actorId(),
+				(span.startNanos() - traceStart) / 1000,
+				(span.endNanos() - span.startNanos()) / 1000
+			));
+		}
+		return new TraceView(id, typeName(root.typeId()), root.actorId(),
+			root.wallMillis(), (traceEnd - traceStart) / 1000, views);
+	}
+
+	private static String typeName(byte typeId) {
+		return typeId == NO_MESSAGE_TYPE ? null : Messaging.getMessageTypeName(typeId);
+	}
+
+	private record Span(long traceId, String name, int actorId, byte typeId, long startNanos, long endNanos, long wallMillis) {}
+
+	public record SpanView(String name, String messageType, int actorId, long offsetMicros, long durationMicros) {}
+
+	public record TraceView(long traceId, String messageType, int actorId, long timestampMillis, long totalMicros, List<SpanView> spans) {}
+
+}
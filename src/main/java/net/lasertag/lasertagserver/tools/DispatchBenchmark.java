@@ -0,0 +1,86 @@
+package net.lasertag.lasertagserver.tools;
+
+import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.MessageDispatcher;
+import net.lasertag.lasertagserver.model.Actor;
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Times dispatching one inbound message (find the sender, validate, run the handler) with N message types in play,
+ * once through a {@link MessageDispatcher} and once the way it was done before it: a chain of type id comparisons
+ * and a scan of the actor list. Message types are drawn at random from the N registered ones, so the chain pays its
+ * average depth; the handlers only count.
+ * <p>
+ * Usage: {@code java -cp target/classes net.lasertag.lasertagserver.tools.DispatchBenchmark [messages]}
+ */
+public class DispatchBenchmark {
+
+	private static final int[] TYPE_COUNTS = {4, 8, 16, 32, 64, 128};
+	private static final int ROUNDS = 5;
+
+	private static long handled;
+
+	public static void main(String[] args) {
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		var actorRegistry = new ActorRegistry();
+		var message = new Messaging.MessageFromClient(new byte[] {MessageType.RESPAWN.id(), 3, 0, 100}, 4);
+		System.out.printf("%-6s %14s %14s%n", "types", "table ns/msg", "chain ns/msg");
+		for (int typeCount : TYPE_COUNTS) {
+			var dispatcher = new MessageDispatcher(actorRegistry);
+			byte[] typeIds = new byte[typeCount];
+			for (int i = 0; i < typeCount; i++) {
+				typeIds[i] = (byte) i;
+				dispatcher.register(new MessageType((byte) i, "TYPE_" + i, MessageType.Direction.CLIENT_TO_SERVER), Actor.Type.PLAYER,
+					MessageDispatcher.ACCEPT_ALL, (actor, received, now) -> handled++);
+			}
+			var random = new Random(42);
+			byte[] stream = new byte[messages];
+			for (int i = 0; i < messages; i++) {
+				stream[i] = typeIds[random.nextInt(typeCount)];
+			}
+			double table = Double.MAX_VALUE;
+			double chain = Double.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				table = Math.min(table, timeTable(dispatcher, message, stream));
+				chain = Math.min(chain, timeChain(actorRegistry, typeIds, message, stream));
+			}
+			System.out.printf("%-6d %14.1f %14.1f%n", typeCount, table, chain);
+		}
+		System.out.println("handled=" + handled);
+	}
+
+	private static double timeTable(MessageDispatcher dispatcher, Messaging.MessageFromClient message, byte[] stream) {
+		long start = System.nanoTime();
+		for (byte typeId : stream) {
+			var route = dispatcher.route(typeId);
+			var actor = dispatcher.resolve(route, message);
+			if (route.validator().validate(actor, message, 0) == null) {
+				route.handler().handle(actor, message, 0);
+			}
+		}
+		return (double) (System.nanoTime() - start) / stream.length;
+	}
+
+	private static double timeChain(ActorRegistry actorRegistry, byte[] typeIds, Messaging.MessageFromClient message, byte[] stream) {
+		long start = System.nanoTime();
+		for (byte typeId : stream) {
+			var actor = actorRegistry.getActors().stream()
+				.filter(candidate -> candidate.getType() == Actor.Type.PLAYER && candidate.getId() == message.getActorId())
+				.findFirst()
+				.orElseThrow(NoSuchElementException::new);
+			// one comparison per branch of an if/else chain, in registration order
+			for (byte candidate : typeIds) {
+				if (candidate == typeId) {
+					handled += actor.getId() >= 0 ? 1 : 0;
+					break;
+				}
+			}
+		}
+		return (double) (System.nanoTime() - start) / stream.length;
+	}
+
+}
@@ -0,0 +1,70 @@
+package net.lasertag.lasertagserver.tools;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.lasertag.lasertagserver.telemetry.Histogram;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns a flight recording into per-message-type latency breakdowns of the {@code lasertag.*} events.
+ * <p>
+ * Record with {@code java -XX:StartFlightRecording=filename=match.jfr -jar lasertag-server.jar}, then run
+ * {@code java -cp target/classes net.lasertag.lasertagserver.tools.JfrAnalyzer match.jfr}
+ */
+public class JfrAnalyzer {
+
+	private static final String EVENT_PREFIX = "lasertag.";
+
+	private record Breakdown(Histogram durations, Histogram payloadSizes) {
+		Breakdown() {
+			this(new Histogram(), new Histogram());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: JfrAnalyzer <recording.jfr>");
+			System.exit(1);
+		}
+
+		Map<String, Breakdown> breakdowns = new TreeMap<>();
+		try (RecordingFile recording = new RecordingFile(Path.of(args[0]))) {
+			while (recording.hasMoreEvents()) {
+				RecordedEvent event = recording.readEvent();
+				String eventName = event.getEventType().getName();
+				if (!eventName.startsWith(EVENT_PREFIX)) {
+					continue;
+				}
+				String key = eventName.substring(EVENT_PREFIX.length()) + " / " + groupOf(event);
+				Breakdown breakdown = breakdowns.computeIfAbsent(key, k -> new Breakdown());
+				breakdown.durations().record(event.getDuration().toNanos());
+				if (event.hasField("payloadSize")) {
+					breakdown.payloadSizes().record(event.getInt("payloadSize"));
+				}
+			}
+		}
+
+		System.out.printf("%-45s %8s %10s %10s %10s %10s %10s%n", "event / message type", "count", "mean us", "p50 us", "p99 us", "max us", "avg bytes");
+		breakdowns.forEach((key, breakdown) -> {
+			Histogram durations = breakdown.durations();
+			System.out.printf("%-45s %8d %10.1f %10.1f %10.1f %10.1f %10.0f%n", key, durations.getCount(),
+				durations.getMean() / 1000, durations.getValueAtQuantile(0.5) / 1000.0,
+				durations.getValueAtQuantile(0.99) / 1000.0, durations.getMax() / 1000.0,
+				breakdown.payloadSizes().getMean());
+		});
+	}
+
+	private static String groupOf(RecordedEvent event) {
+		if (event.hasField("messageType")) {
+			return event.getString("messageType");
+		}
+		if (event.hasField("eventName")) {
+			return event.getString("eventName");
+		}
+		return event.hasField("withNames") && event.getBoolean("withNames") ? "with names" : "-";
+	}
+
+}
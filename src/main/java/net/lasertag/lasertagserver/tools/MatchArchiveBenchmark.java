@@ -0,0 +1,107 @@
+package net.lasertag.lasertagserver.tools;
+
+import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.history.MatchArchive;
+import net.lasertag.lasertagserver.history.MatchRecord;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a fresh archive with synthetic matches spread over the past year (20 regular player names, 6 per match,
+ * 5 presets), then times a cold open and the typical console queries.
+ * <p>
+ * Usage: {@code java -cp target/classes net.lasertag.lasertagserver.tools.MatchArchiveBenchmark [matches]}
+ */
+public class MatchArchiveBenchmark {
+
+	private static final int PLAYERS_PER_MATCH = 6;
+	private static final int QUERY_ROUNDS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		Path file = Files.createTempFile("lasertag-history", ".ltmh");
+		Files.delete(file);
+		var random = new Random(42);
+		long now = System.currentTimeMillis();
+		long yearMillis = TimeUnit.DAYS.toMillis(365);
+
+		long start = System.nanoTime();
+		try (var archive = new MatchArchive(file)) {
+			for (int i = 0; i < matches; i++) {
+				archive.append(randomMatch(random, now - yearMillis + yearMillis * i / matches));
+			}
+		}
+		long appendNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		try (var archive = new MatchArchive(file)) {
+			long openNanos = System.nanoTime() - start;
+			System.out.printf("matches=%d fileSize=%d bytes (%.0f bytes/match)%n", matches, Files.size(file), (double) Files.size(file) / matches);
+			System.out.printf("%-28s %10.3f ms total, %8.2f us per match%n", "append", appendNanos / 1e6, appendNanos / 1e3 / matches);
+			System.out.printf("%-28s %10.3f ms%n", "open + index", openNanos / 1e6);
+
+			long monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			time("top players this month", () -> archive.topPlayers(monthStart, Long.MAX_VALUE, null, 10));
+			time("top players all time", () -> archive.topPlayers(0, Long.MAX_VALUE, null, 10));
+			time("head-to-head", () -> archive.headToHead("Player-3", "Player-7"));
+			time("matches of player (50)", () -> archive.findMatches(null, null, "Player-5", null, null, 50));
+			time("matches of preset + CTF", () -> archive.findMatches(null, null, null, "preset-2", GameType.CTF, 50));
+			System.out.println(archive.topPlayers(monthStart, Long.MAX_VALUE, null, 3));
+			System.out.println(archive.headToHead("Player-3", "Player-7"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static void time(String name, Runnable query) {
+		for (int i = 0; i < QUERY_ROUNDS; i++) {
+			query.run(); // warm-up
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < QUERY_ROUNDS; i++) {
+			query.run();
+		}
+		System.out.printf("%-28s %10.3f ms per query%n", name, (System.nanoTime() - start) / 1e6 / QUERY_ROUNDS);
+	}
+
+	private static MatchRecord randomMatch(Random random, long endedAt) {
+		List<Integer> roster = new ArrayList<>();
+		while (roster.size() < PLAYERS_PER_MATCH) {
+			int id = random.nextInt(20);
+			if (!roster.contains(id)) {
+				roster.add(id);
+			}
+		}
+		int[][] killMatrix = new int[PLAYERS_PER_MATCH][PLAYERS_PER_MATCH];
+		int[] kills = new int[PLAYERS_PER_MATCH];
+		int[] deaths = new int[PLAYERS_PER_MATCH];
+		for (int k = 0; k < 40; k++) {
+			int killer = random.nextInt(PLAYERS_PER_MATCH);
+			int victim = (killer + 1 + random.nextInt(PLAYERS_PER_MATCH - 1)) % PLAYERS_PER_MATCH;
+			killMatrix[killer][victim]++;
+			kills[killer]++;
+			deaths[victim]++;
+		}
+		var gameType = GameType.values()[random.nextInt(GameType.values().length)];
+		int winningTeam = random.nextInt(2);
+		int best = 0;
+		for (int i = 1; i < PLAYERS_PER_MATCH; i++) {
+			best = kills[i] > kills[best] ? i : best;
+		}
+		List<MatchRecord.Player> players = new ArrayList<>();
+		for (int i = 0; i < PLAYERS_PER_MATCH; i++) {
+			int team = i % 2;
+			boolean winner = gameType.isTeamBased() ? team == winningTeam : i == best;
+			players.add(new MatchRecord.Player("Player-" + roster.get(i), team, winner, kills[i], kills[i], deaths[i]));
+		}
+		return new MatchRecord(endedAt, 600, "preset-" + random.nextInt(5), gameType, players, killMatrix);
+	}
+
+}
@@ -0,0 +1,121 @@
+package net.lasertag.lasertagserver.tools;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Opens many concurrent SSE viewers against a running server and measures probe fan-out latency
+ * and server memory/thread footprint. Run it once against a server started with
+ * {@code spring.threads.virtual.enabled=false} and once with {@code =true} to compare the modes.
+ * <p>
+ * Usage: {@code java -cp target/classes net.lasertag.lasertagserver.tools.SseLoadHarness [baseUrl] [viewers] [probes]}
+ */
+public class SseLoadHarness {
+
+	private static final String PROBE_EVENT = "event:probe";
+
+	public static void main(String[] args) throws Exception {
+		String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+		int viewers = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int probes = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+		HttpClient client = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+		System.out.println("Before viewers: " + get(client, baseUrl + "/api/runtime"));
+
+		// written here, read by the viewer threads
+		AtomicLongArray probeSentAt = new AtomicLongArray(probes);
+		AtomicLongArray latencies = new AtomicLongArray(viewers * probes);
+		AtomicInteger latencyCount = new AtomicInteger();
+		AtomicInteger connected = new AtomicInteger();
+
+		ExecutorService viewerThreads = Executors.newVirtualThreadPerTaskExecutor();
+		for (int i = 0; i < viewers; i++) {
+			viewerThreads.execute(() -> runViewer(client, baseUrl, connected, probeSentAt, latencies, latencyCount));
+		}
+		while (connected.get() < viewers) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(1000);
+		System.out.println("With " + viewers + " viewers: " + get(client, baseUrl + "/api/runtime"));
+
+		for (int token = 0; token < probes; token++) {
+			probeSentAt.set(token, System.nanoTime());
+			post(client, baseUrl + "/api/runtime/probe?token=" + token);
+			Thread.sleep(100);
+		}
+		Thread.sleep(2000);
+		System.out.println("After probes: " + get(client, baseUrl + "/api/runtime"));
+		viewerThreads.shutdownNow();
+
+		long[] received = new long[Math.min(latencies.length(), latencyCount.get())];
+		for (int i = 0; i < received.length; i++) {
+			received[i] = latencies.get(i);
+		}
+		Arrays.sort(received);
+		System.out.printf("Probe deliveries: %d of %d expected%n", received.length, (long) viewers * probes);
+		if (received.length > 0) {
+			System.out.printf("Latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n",
+				percentileMs(received, 0.50), percentileMs(received, 0.90),
+				percentileMs(received, 0.99), received[received.length - 1] / 1_000_000.0);
+		}
+		// viewer streams block in socket reads and don't react to interrupts
+		System.exit(0);
+	}
+
+	private static void runViewer(HttpClient client, String baseUrl, AtomicInteger connected,
+								  AtomicLongArray probeSentAt, AtomicLongArray latencies, AtomicInteger latencyCount) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/events")).GET().build();
+		try {
+			HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+			connected.incrementAndGet();
+			boolean probeNext = false;
+			for (String line : (Iterable<String>) response.body()::iterator) {
+				if (line.equals(PROBE_EVENT)) {
+					probeNext = true;
+				} else if (probeNext && line.startsWith("data:")) {
+					int token = Integer.parseInt(line.substring(5).trim());
+					long sentAt = token >= 0 && token < probeSentAt.length() ? probeSentAt.get(token) : 0;
+					// 0 for a token this run did not send
+					if (sentAt != 0) {
+						int slot = latencyCount.getAndIncrement();
+						if (slot < latencies.length()) {
+							latencies.set(slot, System.nanoTime() - sentAt);
+						}
+					}
+					probeNext = false;
+				}
+			}
+		} catch (Exception e) {
+			if (!Thread.currentThread().isInterrupted()) {
+				System.err.println("Viewer failed: " + e.getMessage());
+			}
+		}
+	}
+
+	private static double percentileMs(long[] sorted, double percentile) {
+		int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1_000_000.0;
+	}
+
+	private static String get(HttpClient client, String url) throws Exception {
+		return client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+	}
+
+	private static void post(HttpClient client, String url) throws Exception {
+		client.send(HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+			HttpResponse.BodyHandlers.discarding());
+	}
+
+}
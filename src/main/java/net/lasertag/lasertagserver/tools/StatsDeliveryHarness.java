@@ -0,0 +1,139 @@
+package net.lasertag.lasertagserver.tools;
+
+import net.lasertag.lasertagserver.core.OutboundScheduler;
+import net.lasertag.lasertagserver.core.StatsDelivery;
+import net.lasertag.lasertagserver.core.TrafficClass;
+
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback check of FULL_STATS delivery through {@link OutboundScheduler}: N receivers get K snapshots
+ * once as N unicasts each (receivers on 127.0.0.2, 127.0.0.3, ...) and once as a single multicast on the
+ * loopback interface. Prints delivered counts and send-side time per mode.
+ * <p>
+ * Usage: {@code java -cp target/classes net.lasertag.lasertagserver.tools.StatsDeliveryHarness [receivers] [snapshots] [port]}
+ */
+public class StatsDeliveryHarness {
+
+	private static final int SNAPSHOT_SIZE = 6 + 6 * 9;
+
+	public static void main(String[] args) throws Exception {
+		int receivers = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int snapshots = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 11234;
+
+		runUnicast(receivers, snapshots, port);
+		runMulticast(receivers, snapshots, port + 1);
+		System.exit(0);
+	}
+
+	private static void runUnicast(int receivers, int snapshots, int port) throws Exception {
+		List<DatagramSocket> sockets = new ArrayList<>();
+		List<InetAddress> addresses = new ArrayList<>();
+		for (int i = 0; i < receivers; i++) {
+			var address = InetAddress.getByName("127.0.0." + (i + 2));
+			sockets.add(new DatagramSocket(new InetSocketAddress(address, port)));
+			addresses.add(address);
+		}
+		var delivered = startReceivers(sockets);
+		var scheduler = startScheduler(port, null);
+
+		long start = System.nanoTime();
+		for (int k = 0; k < snapshots; k++) {
+			byte[] snapshot = snapshot(k);
+			for (InetAddress address : addresses) {
+				scheduler.enqueue(address, snapshot, TrafficClass.STATE);
+			}
+			awaitSent(scheduler, (long) (k + 1) * receivers);
+		}
+		long elapsed = System.nanoTime() - start;
+		Thread.sleep(200); // let receivers catch up
+		report("UNICAST", elapsed, sentCount(scheduler), delivered.get(), receivers, snapshots);
+		scheduler.stop();
+		sockets.forEach(DatagramSocket::close);
+	}
+
+	private static void runMulticast(int receivers, int snapshots, int port) throws Exception {
+		var loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+		var group = InetAddress.getByName(StatsDelivery.MULTICAST_GROUP);
+		List<DatagramSocket> sockets = new ArrayList<>();
+		for (int i = 0; i < receivers; i++) {
+			var socket = new MulticastSocket(port);
+			socket.joinGroup(new InetSocketAddress(group, port), loopback);
+			sockets.add(socket);
+		}
+		var delivered = startReceivers(sockets);
+		var scheduler = startScheduler(port, loopback);
+
+		long start = System.nanoTime();
+		for (int k = 0; k < snapshots; k++) {
+			scheduler.enqueue(group, snapshot(k), TrafficClass.STATE);
+			awaitSent(scheduler, k + 1);
+		}
+		long elapsed = System.nanoTime() - start;
+		Thread.sleep(200); // let receivers catch up
+		report("MULTICAST", elapsed, sentCount(scheduler), delivered.get(), receivers, snapshots);
+		scheduler.stop();
+		sockets.forEach(DatagramSocket::close);
+	}
+
+	private static OutboundScheduler startScheduler(int port, NetworkInterface multicastInterface) {
+		// budget high enough to never hold anything back, only the send cost is measured
+		var scheduler = new OutboundScheduler(port, 10_000_000, 10_000_000);
+		if (multicastInterface != null) {
+			scheduler.setMulticastInterface(multicastInterface);
+		}
+		Thread.ofPlatform().daemon().start(scheduler::run);
+		return scheduler;
+	}
+
+	private static AtomicInteger startReceivers(List<DatagramSocket> sockets) {
+		var delivered = new AtomicInteger();
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		for (DatagramSocket socket : sockets) {
+			executor.execute(() -> {
+				var packet = new DatagramPacket(new byte[SNAPSHOT_SIZE], SNAPSHOT_SIZE);
+				while (!socket.isClosed()) {
+					try {
+						socket.receive(packet);
+						delivered.incrementAndGet();
+					} catch (Exception e) {
+						return;
+					}
+				}
+			});
+		}
+		return delivered;
+	}
+
+	// waiting for each round keeps the scheduler from superseding snapshots, so every one is really sent
+	private static void awaitSent(OutboundScheduler scheduler, long expected) {
+		while (sentCount(scheduler) < expected) {
+			LockSupport.parkNanos(10_000);
+		}
+	}
+
+	private static long sentCount(OutboundScheduler scheduler) {
+		return scheduler.getStats().get(TrafficClass.STATE.ordinal()).sent();
+	}
+
+	private static byte[] snapshot(int sequence) {
+		byte[] bytes = new byte[SNAPSHOT_SIZE];
+		bytes[0] = 11;
+		bytes[3] = (byte) sequence;
+		return bytes;
+	}
+
+	private static void report(String mode, long elapsedNanos, long datagramsSent, int delivered, int receivers, int snapshots) {
+		System.out.printf("%-9s receivers=%d snapshots=%d datagramsSent=%d delivered=%d sendTime=%.2fms (%.2fus per snapshot)%n",
+			mode, receivers, snapshots, datagramsSent, delivered,
+			elapsedNanos / 1_000_000.0, elapsedNanos / 1000.0 / snapshots);
+	}
+
+}
@@ -0,0 +1,30 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.core.MatchAnalytics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+	private final MatchAnalytics matchAnalytics;
+
+	public AnalyticsController(MatchAnalytics matchAnalytics) {
+		this.matchAnalytics = matchAnalytics;
+	}
+
+	@GetMapping
+	public MatchAnalytics.MatchSnapshot getLiveAnalytics() {
+		return matchAnalytics.getLiveSnapshot();
+	}
+
+	@GetMapping("/summary")
+	public ResponseEntity<MatchAnalytics.MatchSnapshot> getLastMatchSummary() {
+		var summary = matchAnalytics.getLastSummary();
+		return summary == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(summary);
+	}
+
+}
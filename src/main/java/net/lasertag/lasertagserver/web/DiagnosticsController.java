@@ -0,0 +1,71 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.core.IngressGuard;
+import net.lasertag.lasertagserver.core.OutboundScheduler;
+import net.lasertag.lasertagserver.core.UdpServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/runtime")
+public class DiagnosticsController {
+
+	private final SseEventService sseEventService;
+	private final UdpServer udpServer;
+	private final boolean virtualThreads;
+
+	public DiagnosticsController(SseEventService sseEventService, UdpServer udpServer,
+								 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.sseEventService = sseEventService;
+		this.udpServer = udpServer;
+		this.virtualThreads = virtualThreads;
+	}
+
+	@GetMapping
+	public RuntimeInfo getRuntimeInfo() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return new RuntimeInfo(
+			virtualThreads ? "virtual" : "platform",
+			threads.getThreadCount(),
+			threads.getPeakThreadCount(),
+			memory.getHeapMemoryUsage().getUsed(),
+			memory.getNonHeapMemoryUsage().getUsed(),
+			sseEventService.getClientCount()
+		);
+	}
+
+	@GetMapping("/outbound")
+	public List<OutboundScheduler.ClassStatsSnapshot> getOutboundStats() {
+		return udpServer.getOutboundStats();
+	}
+
+	@GetMapping("/ingress")
+	public IngressGuard.Stats getIngressStats() {
+		return udpServer.getIngressStats();
+	}
+
+	// echoes the token to every SSE viewer, used by SseLoadHarness to measure fan-out latency
+	@PostMapping("/probe")
+	public ResponseEntity<Map<String, String>> probe(@RequestParam long token) {
+		sseEventService.sendProbe(token);
+		return ResponseEntity.ok(Map.of("status", "Probe sent"));
+	}
+
+	public record RuntimeInfo(
+		String threadMode,
+		int liveThreads,
+		int peakThreads,
+		long heapUsedBytes,
+		long nonHeapUsedBytes,
+		int sseClients
+	) {}
+
+}
@@ -4,11 +4,14 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.DispenserCooldowns;
 import net.lasertag.lasertagserver.core.Game;
 import net.lasertag.lasertagserver.core.GameEventsListener;
 import net.lasertag.lasertagserver.core.GameSettingsPreset;
 import net.lasertag.lasertagserver.core.GameSettings;
 import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.core.SettingsSnapshot;
+import net.lasertag.lasertagserver.core.StatsDelivery;
 import net.lasertag.lasertagserver.core.UdpServer;
 import net.lasertag.lasertagserver.model.Actor;
 import net.lasertag.lasertagserver.model.MessageType;
@@ -18,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -46,15 +50,7 @@ public class GameController {
 
 	@GetMapping("/events")
 	public SseEmitter initEventStreaming() {
-		SseEmitter emitter = sseEventService.createEmitter();
-		
-		try {
-			sseEventService.sendPlayersUpdate(actorRegistry.getPlayers());
-			sseEventService.sendDispensersUpdate(actorRegistry.getOnlineDispensers());
-			sseEventService.sendSettingsUpdate(gameSettings.getAllSettingsWithMetadata());
-		} catch (Exception e) {}
-		
-		return emitter;
+		return sseEventService.createEmitter();
 	}
 
 	@GetMapping("/game/snapshot")
@@ -75,11 +71,8 @@ public class GameController {
 
 	@PostMapping("/game/start")
 	public ResponseEntity<Map<String, String>> startGame(@RequestBody StartGameRequest request) {
-		gameSettings.getCurrent().setTimeLimitMinutes(request.getTimeLimit());
-		gameSettings.getCurrent().setFragLimit(request.getFragLimit());
 		GameType gameType = GameType.valueOf(request.getGameType());
-		gameSettings.getCurrent().setGameType(gameType);
-		gameSettings.syncToActors();
+		gameSettings.update(settings -> settings.withMatch(request.getTimeLimit(), request.getFragLimit(), gameType));
 		gameEventsListener.eventConsoleStartGame(request.getTimeLimit(), request.getFragLimit(), gameType);
 		return ResponseEntity.ok(Map.of("status", "Game started"));
 	}
@@ -91,12 +84,15 @@ public class GameController {
 	}
 
 	@PutMapping("/players/{id}")
-	public ResponseEntity<Player> updatePlayer(@PathVariable int id, @RequestBody GameSettingsPreset.PlayerSettings request) {
-		GameSettingsPreset.PlayerSettings existingSettings = gameSettings.getCurrent().getPlayerSettings(id);
-		boolean nameUpdated = existingSettings != null && !Objects.equals(existingSettings.getName(), request.getName());
+	public ResponseEntity<Object> updatePlayer(@PathVariable int id, @RequestBody GameSettingsPreset.PlayerSettings request) {
+		var existingSettings = gameSettings.getCurrent().getPlayerSettings(id);
+		boolean nameUpdated = existingSettings != null && request.getName() != null && !Objects.equals(existingSettings.name(), request.getName());
 
-		gameSettings.getCurrent().setPlayerSettings(id, request);
-		gameSettings.syncToActors();
+		try {
+			gameSettings.update(settings -> settings.withPlayer(id, request));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
 
 		Player player = actorRegistry.getPlayerById(id);
 		gameEventsListener.onPlayerDataUpdated(player, nameUpdated);
@@ -114,7 +110,7 @@ public class GameController {
 		if (player == null || !player.isOnline()) {
 			return ResponseEntity.badRequest().body(Map.of("error", "Player not found or offline"));
 		}
-		udpServer.sendEventToClient(MessageType.MOCK_DEVICE_EVENT, player, (byte) type, (byte) payload);
+		udpServer.sendEventToClient(MessageType.MOCK_DEVICE_EVENT, player, type, payload);
 		return ResponseEntity.ok(Map.of("status", "Mock device event sent"));
 	}
 
@@ -124,17 +120,120 @@ public class GameController {
 		@RequestBody UpdateDispenserRequest request
 	) {
 		Actor.Type dispenserType = Actor.Type.valueOf(type);
-		gameSettings.getCurrent().setDispenserTimeout(dispenserType, request.getTimeout());
-		gameSettings.getCurrent().setDispenserAmount(dispenserType, request.getAmount());
-		
-		gameSettings.syncToActors();
+		gameSettings.update(settings -> settings.withDispenser(dispenserType, request.getTimeout(), request.getAmount()));
 		udpServer.sendSettingsToAllDispensers();
 		
 		return ResponseEntity.ok(Map.of("status", "Dispensers updated"));
 	}
 
+	@GetMapping("/dispensers/stats")
+	public List<DispenserCooldowns.DispenserStats> getDispenserStats() {
+		return game.getDispenserCooldowns().getStats(System.currentTimeMillis());
+	}
+
+	@PutMapping("/settings/stats-delivery")
+	public ResponseEntity<Map<String, String>> updateStatsDelivery(@RequestParam String mode) {
+		StatsDelivery statsDelivery;
+		try {
+			statsDelivery = StatsDelivery.valueOf(mode);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", "Unknown stats delivery: " + mode));
+		}
+		gameSettings.update(settings -> settings.withStatsDelivery(statsDelivery));
+		sseEventService.sendSettingsUpdate(gameSettings.getAllSettingsWithMetadata());
+		return ResponseEntity.ok(Map.of("status", "Stats delivery updated"));
+	}
+
+	/**
+	 * Applies player, dispenser and general setting changes as one settings version. Everything is validated before
+	 * anything is applied, and phones, dispensers and the console each get a single update for the whole batch.
+	 */
+	@PutMapping("/settings/bulk")
+	public ResponseEntity<Map<String, Object>> bulkUpdate(@RequestBody BulkUpdateRequest request) {
+		var general = request.getGeneral();
+		var players = request.getPlayers() != null ? request.getPlayers() : Map.<Integer, GameSettingsPreset.PlayerSettings>of();
+		var dispensers = request.getDispensers() != null ? request.getDispensers() : Map.<String, UpdateDispenserRequest>of();
+		GameType gameType;
+		StatsDelivery statsDelivery;
+		Map<Actor.Type, UpdateDispenserRequest> dispenserChanges = new EnumMap<>(Actor.Type.class);
+		try {
+			gameType = general != null && general.getGameType() != null ? GameType.valueOf(general.getGameType()) : null;
+			statsDelivery = general != null && general.getStatsDelivery() != null ? StatsDelivery.fromName(general.getStatsDelivery()) : null;
+			for (var entry : dispensers.entrySet()) {
+				Actor.Type type = Actor.Type.valueOf(entry.getKey());
+				if (type == Actor.Type.PLAYER) {
+					throw new IllegalArgumentException("Not a dispenser type: " + type);
+				}
+				dispenserChanges.put(type, entry.getValue());
+			}
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+		for (int id : players.keySet()) {
+			if (gameSettings.getCurrent().getPlayerSettings(id) == null) {
+				return ResponseEntity.badRequest().body(Map.of("error", "Unknown player id: " + id));
+			}
+		}
+
+		SettingsSnapshot[] before = new SettingsSnapshot[1];
+		GameSettings.SettingsUpdate result;
+		try {
+			result = gameSettings.update(settings -> {
+				before[0] = settings;
+				var next = settings;
+				if (general != null) {
+					next = next.withMatch(
+						general.getTimeLimitMinutes() != null ? general.getTimeLimitMinutes() : next.getTimeLimitMinutes(),
+						general.getFragLimit() != null ? general.getFragLimit() : next.getFragLimit(),
+						gameType != null ? gameType : next.getGameType());
+					if (statsDelivery != null) {
+						next = next.withStatsDelivery(statsDelivery);
+					}
+				}
+				for (var entry : players.entrySet()) {
+					next = next.withPlayer(entry.getKey(), entry.getValue());
+				}
+				for (var entry : dispenserChanges.entrySet()) {
+					next = next.withDispenser(entry.getKey(), entry.getValue().getTimeout(), entry.getValue().getAmount());
+				}
+				// the same rules as a preset file, or the preset saved from these settings would be dropped on reload
+				String problem = next.validate();
+				if (problem != null) {
+					throw new IllegalArgumentException(problem);
+				}
+				return next;
+			});
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+
+		var changedPlayers = result.changedActors().stream().filter(actor -> actor.getType() == Actor.Type.PLAYER).map(Actor::getId).toList();
+		boolean dispensersChanged = result.changedActors().stream().anyMatch(actor -> actor.getType() != Actor.Type.PLAYER);
+		boolean namesChanged = changedPlayers.stream()
+			.anyMatch(id -> !Objects.equals(before[0].getPlayerSettings(id).name(), result.settings().getPlayerSettings(id).name()));
+		var after = result.settings();
+		boolean matchChanged = after.getGameType() != before[0].getGameType()
+			|| after.getTimeLimitMinutes() != before[0].getTimeLimitMinutes()
+			|| after.getFragLimit() != before[0].getFragLimit();
+		// the phones' snapshot carries the game type as well as the players
+		if (!changedPlayers.isEmpty() || matchChanged) {
+			gameEventsListener.onRosterUpdated(namesChanged);
+		}
+		if (dispensersChanged) {
+			udpServer.sendSettingsToAllDispensers();
+		}
+		if (result.settings() != before[0]) {
+			sseEventService.sendRosterUpdate(actorRegistry.getPlayers(), gameSettings.getAllSettingsWithMetadata());
+		}
+		return ResponseEntity.ok(Map.of(
+			"version", result.settings().getVersion(),
+			"changedPlayers", changedPlayers,
+			"dispensersChanged", dispensersChanged
+		));
+	}
+
 	@GetMapping("/presets")
-	public List<String> listPresets() throws IOException {
+	public List<String> listPresets() {
 		return gameSettings.listPresets();
 	}
 
@@ -174,6 +273,23 @@ public class GameController {
 		private Integer amount;
 	}
 
+	@Getter
+	@Setter
+	public static class BulkUpdateRequest {
+		private GeneralSettingsRequest general;
+		private Map<Integer, GameSettingsPreset.PlayerSettings> players;
+		private Map<String, UpdateDispenserRequest> dispensers; // keyed by HEALTH / AMMO
+	}
+
+	@Getter
+	@Setter
+	public static class GeneralSettingsRequest {
+		private Integer fragLimit;
+		private Integer timeLimitMinutes;
+		private String gameType;
+		private String statsDelivery;
+	}
+
 	public record GameSnapshotResponse(
 		GameStateResponse gameState,
 		List<Player> players,
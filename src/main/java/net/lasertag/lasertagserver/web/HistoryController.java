@@ -0,0 +1,59 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.core.GameType;
+import net.lasertag.lasertagserver.history.MatchArchive;
+import net.lasertag.lasertagserver.history.MatchHistory;
+import net.lasertag.lasertagserver.history.MatchSummary;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+
+	private final MatchHistory matchHistory;
+
+	public HistoryController(MatchHistory matchHistory) {
+		this.matchHistory = matchHistory;
+	}
+
+	@GetMapping("/matches")
+	public List<MatchSummary> findMatches(@RequestParam(required = false) Long from,
+										  @RequestParam(required = false) Long to,
+										  @RequestParam(required = false) String player,
+										  @RequestParam(required = false) String preset,
+										  @RequestParam(required = false) GameType gameType,
+										  @RequestParam(defaultValue = "50") int limit) {
+		return matchHistory.getArchive().findMatches(from, to, player, preset, gameType, Math.max(1, Math.min(limit, 1000)));
+	}
+
+	// period is day, week, month, year or all, counted back from today in the server's time zone
+	@GetMapping("/top")
+	public List<MatchArchive.LeaderboardEntry> topPlayers(@RequestParam(defaultValue = "month") String period,
+														  @RequestParam(required = false) GameType gameType,
+														  @RequestParam(defaultValue = "10") int limit) {
+		LocalDate today = LocalDate.now();
+		LocalDate since = switch (period) {
+			case "day" -> today;
+			case "week" -> today.minusDays(today.getDayOfWeek().getValue() - 1);
+			case "month" -> today.withDayOfMonth(1);
+			case "year" -> today.withDayOfYear(1);
+			case "all" -> LocalDate.EPOCH;
+			default -> throw new IllegalArgumentException("Unknown period: " + period);
+		};
+		long from = since.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		return matchHistory.getArchive().topPlayers(from, Long.MAX_VALUE, gameType, Math.max(1, Math.min(limit, 100)));
+	}
+
+	@GetMapping("/head-to-head")
+	public MatchArchive.HeadToHead headToHead(@RequestParam String a, @RequestParam String b) {
+		return matchHistory.getArchive().headToHead(a, b);
+	}
+
+}
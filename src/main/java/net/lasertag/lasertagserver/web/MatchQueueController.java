@@ -0,0 +1,50 @@
+package net.lasertag.lasertagserver.web;
+
+import lombok.Getter;
+import lombok.Setter;
+import net.lasertag.lasertagserver.core.MatchQueue;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/queue")
+public class MatchQueueController {
+
+	private final MatchQueue matchQueue;
+
+	public MatchQueueController(MatchQueue matchQueue) {
+		this.matchQueue = matchQueue;
+	}
+
+	@GetMapping
+	public MatchQueue.Status getStatus() {
+		return matchQueue.getStatus();
+	}
+
+	@PostMapping
+	public ResponseEntity<Object> start(@RequestBody StartQueueRequest request) {
+		try {
+			matchQueue.start(request.getMatches() != null ? request.getMatches() : List.of(), request.getIntermissionSeconds());
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+		}
+		return ResponseEntity.ok(matchQueue.getStatus());
+	}
+
+	@DeleteMapping
+	public ResponseEntity<Map<String, String>> stop() {
+		matchQueue.stop();
+		return ResponseEntity.ok(Map.of("status", "Match queue stopped"));
+	}
+
+	@Getter
+	@Setter
+	public static class StartQueueRequest {
+		private List<MatchQueue.Entry> matches;
+		private int intermissionSeconds = 60;
+	}
+
+}
@@ -0,0 +1,32 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+	private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final Metrics metrics;
+
+	public MetricsController(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@GetMapping(produces = PROMETHEUS_CONTENT_TYPE)
+	public String scrape() {
+		return metrics.toPrometheusText();
+	}
+
+	@GetMapping("/summary")
+	public Map<String, Object> summary() {
+		return metrics.getSummary();
+	}
+
+}
@@ -0,0 +1,38 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.telemetry.PacketInspector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inspector")
+public class PacketInspectorController {
+
+	private final PacketInspector packetInspector;
+	private final PacketInspectorStream packetInspectorStream;
+
+	public PacketInspectorController(PacketInspector packetInspector, PacketInspectorStream packetInspectorStream) {
+		this.packetInspector = packetInspector;
+		this.packetInspectorStream = packetInspectorStream;
+	}
+
+	@GetMapping
+	public List<PacketInspector.PacketView> getPackets(@RequestParam(required = false) String actor,
+													   @RequestParam(required = false) String messageType,
+													   @RequestParam(defaultValue = "0") long after,
+													   @RequestParam(defaultValue = "200") int limit) {
+		return packetInspector.query(actor, messageType, after, Math.max(1, Math.min(limit, 2000)));
+	}
+
+	@GetMapping("/stream")
+	public SseEmitter streamPackets(@RequestParam(required = false) String actor,
+									@RequestParam(required = false) String messageType) {
+		return packetInspectorStream.subscribe(actor, messageType);
+	}
+
+}
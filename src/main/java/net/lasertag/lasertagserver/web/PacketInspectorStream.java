@@ -0,0 +1,66 @@
+package net.lasertag.lasertagserver.web;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.telemetry.PacketInspector;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Live view of the packet inspector. Viewers are polled from the ring buffer, so the UDP path never formats or
+ * pushes anything itself and costs the same whether someone is watching or not.
+ */
+@Service
+@Slf4j
+public class PacketInspectorStream {
+
+	private static final int MAX_PACKETS_PER_PUSH = 500;
+
+	private record Subscription(SseEmitter emitter, String actor, String messageType, long[] lastSequence) {}
+
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final PacketInspector packetInspector;
+
+	public PacketInspectorStream(PacketInspector packetInspector) {
+		this.packetInspector = packetInspector;
+	}
+
+	public SseEmitter subscribe(String actor, String messageType) {
+		SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+		var subscription = new Subscription(emitter, actor, messageType, new long[] {packetInspector.getLatestSequence()});
+		subscriptions.add(subscription);
+		emitter.onCompletion(() -> subscriptions.remove(subscription));
+		emitter.onTimeout(() -> subscriptions.remove(subscription));
+		emitter.onError(e -> subscriptions.remove(subscription));
+		return emitter;
+	}
+
+	@Scheduled(fixedDelay = 250)
+	public void pushNewPackets() {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		long latest = packetInspector.getLatestSequence();
+		for (Subscription subscription : subscriptions) {
+			if (subscription.lastSequence()[0] == latest) {
+				continue;
+			}
+			var packets = packetInspector.query(subscription.actor(), subscription.messageType(),
+				subscription.lastSequence()[0], MAX_PACKETS_PER_PUSH);
+			subscription.lastSequence()[0] = latest;
+			if (packets.isEmpty()) {
+				continue;
+			}
+			try {
+				subscription.emitter().send(SseEmitter.event().name("packets").data(packets));
+			} catch (IOException e) {
+				log.debug("Packet inspector viewer disconnected: {}", e.getMessage());
+				subscriptions.remove(subscription);
+			}
+		}
+	}
+
+}
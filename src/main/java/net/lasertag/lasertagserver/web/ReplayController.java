@@ -0,0 +1,47 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.replay.MatchRecorder;
+import net.lasertag.lasertagserver.replay.MatchRecording;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/replays")
+public class ReplayController {
+
+	private final MatchRecorder matchRecorder;
+	private final ReplayStream replayStream;
+
+	public ReplayController(MatchRecorder matchRecorder, ReplayStream replayStream) {
+		this.matchRecorder = matchRecorder;
+		this.replayStream = replayStream;
+	}
+
+	@GetMapping
+	public List<MatchRecording.RecordingInfo> getRecordings() {
+		return matchRecorder.listRecordings();
+	}
+
+	@GetMapping("/{id}/frame")
+	public ResponseEntity<MatchRecording.ReplayFrame> getFrame(@PathVariable long id,
+															   @RequestParam(defaultValue = "0") int at) throws IOException {
+		var recording = matchRecorder.getRecording(id);
+		return recording == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(recording.frameAt(at));
+	}
+
+	@GetMapping("/{id}/stream")
+	public ResponseEntity<SseEmitter> stream(@PathVariable long id,
+											 @RequestParam(defaultValue = "0") int from,
+											 @RequestParam(defaultValue = "1") double speed) throws IOException {
+		var recording = matchRecorder.getRecording(id);
+		if (recording == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(replayStream.subscribe(recording, from, Math.max(0.25, Math.min(speed, 16))));
+	}
+
+}
@@ -0,0 +1,55 @@
+package net.lasertag.lasertagserver.web;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lasertag.lasertagserver.replay.MatchRecording;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Plays recordings back over SSE. Each tick every viewer's position moves forward by the tick length times its
+ * speed and gets one {@code frame} event built from the nearest keyframe, so playback cost does not grow with the
+ * match length and a viewer can join at any offset.
+ */
+@Service
+@Slf4j
+public class ReplayStream {
+
+	private static final int TICK_MILLIS = 100;
+
+	private record Subscription(SseEmitter emitter, MatchRecording recording, double speed, double[] position) {}
+
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	public SseEmitter subscribe(MatchRecording recording, int fromMillis, double speed) {
+		SseEmitter emitter = new SseEmitter(Long.MAX_VALUE);
+		var subscription = new Subscription(emitter, recording, speed, new double[] {fromMillis});
+		subscriptions.add(subscription);
+		emitter.onCompletion(() -> subscriptions.remove(subscription));
+		emitter.onTimeout(() -> subscriptions.remove(subscription));
+		emitter.onError(e -> subscriptions.remove(subscription));
+		return emitter;
+	}
+
+	@Scheduled(fixedRate = TICK_MILLIS)
+	public void pushFrames() {
+		for (Subscription subscription : subscriptions) {
+			int position = (int) Math.min(subscription.position()[0], subscription.recording().getDurationMillis());
+			subscription.position()[0] += TICK_MILLIS * subscription.speed();
+			try {
+				subscription.emitter().send(SseEmitter.event().name("frame").data(subscription.recording().frameAt(position)));
+				if (position >= subscription.recording().getDurationMillis()) {
+					subscriptions.remove(subscription);
+					subscription.emitter().complete();
+				}
+			} catch (IOException e) {
+				log.debug("Replay viewer disconnected: {}", e.getMessage());
+				subscriptions.remove(subscription);
+			}
+		}
+	}
+
+}
@@ -4,27 +4,37 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import net.lasertag.lasertagserver.core.ActorRegistry;
+import net.lasertag.lasertagserver.core.GameConsole;
 import net.lasertag.lasertagserver.core.GameSettings;
+import net.lasertag.lasertagserver.telemetry.Metrics;
+import net.lasertag.lasertagserver.telemetry.SseBroadcastEvent;
+import net.lasertag.lasertagserver.telemetry.Tracer;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 @Service
 @Slf4j
-public class SseEventService {
+public class SseEventService implements GameConsole {
 
 	private final CopyOnWriteArrayList<SseEmitter> emitters = new CopyOnWriteArrayList<>();
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
 	private final ActorRegistry actorRegistry;
 	private final GameSettings gameSettings;
+	private final Metrics metrics;
+	private final Tracer tracer;
 
-	public SseEventService(ActorRegistry actorRegistry, GameSettings gameSettings) {
+	public SseEventService(ActorRegistry actorRegistry, GameSettings gameSettings, Metrics metrics, Tracer tracer) {
 		this.actorRegistry = actorRegistry;
 		this.gameSettings = gameSettings;
+		this.metrics = metrics;
+		this.tracer = tracer;
 	}
 
 	@PostConstruct
@@ -32,6 +42,7 @@ public class SseEventService {
 		SseLogAppender.setSseEventService(this);
 	}
 
+	@Override
 	public void refreshUI(boolean isPlaying) {
 		sendGameIsPlaying(isPlaying);
 		sendPlayersUpdate(actorRegistry.getPlayers());
@@ -56,9 +67,26 @@ public class SseEventService {
 		});
 
 		log.info("New SSE client connected. Total clients: {}", emitters.size());
+		sendInitialState(emitter);
 		return emitter;
 	}
 
+	// a new viewer only needs the current state, the already connected ones have it
+	private void sendInitialState(SseEmitter emitter) {
+		try {
+			emitter.send(SseEmitter.event().name("players").data(objectMapper.writeValueAsString(actorRegistry.getPlayers())));
+			emitter.send(SseEmitter.event().name("dispensers").data(objectMapper.writeValueAsString(actorRegistry.getOnlineDispensers())));
+			emitter.send(SseEmitter.event().name("settings").data(objectMapper.writeValueAsString(gameSettings.getAllSettingsWithMetadata())));
+		} catch (Exception e) {
+			log.debug("Failed to send initial state to SSE client: {}", e.getMessage());
+			removeEmitter(emitter);
+		}
+	}
+
+	public int getClientCount() {
+		return emitters.size();
+	}
+
 	private void removeEmitter(SseEmitter emitter) {
 		emitters.remove(emitter);
 	}
@@ -67,6 +95,7 @@ public class SseEventService {
 		sendEvent("isPlaying", isPlaying);
 	}
 
+	@Override
 	public void sendGameTimeLeft(int timeLeft) {
 		sendEvent("timeLeft", timeLeft);
 	}
@@ -83,15 +112,39 @@ public class SseEventService {
 		sendEvent("settings", settings);
 	}
 
+	/**
+	 * Players and settings in one event, for changes that touch both at once.
+	 */
+	public void sendRosterUpdate(Object players, Object settings) {
+		sendEvent("roster", Map.of("players", players, "settings", settings));
+	}
+
 	public void sendLogMessage(String logMessage) {
 		sendEvent("log", logMessage);
 	}
 
+	@Override
+	public void sendAnalyticsUpdate(Object analytics) {
+		sendEvent("analytics", analytics);
+	}
+
+	@Override
+	public void sendDispenserCooldowns(Map<String, List<Integer>> cooling) {
+		sendEvent("dispenserCooldowns", cooling);
+	}
+
+	public void sendProbe(long token) {
+		sendEvent("probe", token);
+	}
+
 	private void sendEvent(String eventName, Object data) {
 		if (emitters.isEmpty()) {
 			return;
 		}
 		//log.info("Sending SSE event: {} with data: {}", eventName, data.toString());
+		var jfrEvent = new SseBroadcastEvent();
+		jfrEvent.begin();
+		long start = System.nanoTime();
 		try {
 			String jsonData = objectMapper.writeValueAsString(data);
 			CopyOnWriteArrayList<SseEmitter> deadEmitters = new CopyOnWriteArrayList<>();
@@ -108,6 +161,15 @@ public class SseEventService {
 			}
 
 			emitters.removeAll(deadEmitters);
+			long end = System.nanoTime();
+			metrics.recordSseFanout(end - start, deadEmitters.size());
+			tracer.record(eventName, -1, Tracer.NO_MESSAGE_TYPE, start, end);
+			if (jfrEvent.shouldCommit()) {
+				jfrEvent.eventName = eventName;
+				jfrEvent.clients = emitters.size() + deadEmitters.size();
+				jfrEvent.payloadSize = jsonData.length();
+				jfrEvent.commit();
+			}
 		} catch (Exception e) {
 			log.error("Failed to serialize event data", e);
 		}
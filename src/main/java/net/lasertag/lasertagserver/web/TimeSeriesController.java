@@ -0,0 +1,39 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.core.PlayerTimeSeries;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Tier 0 is 1 s resolution, 1 is 10 s, 2 is 1 min. Pass the last timestamp already held as {@code since} to only
+ * get new points.
+ */
+@RestController
+@RequestMapping("/api/timeseries")
+public class TimeSeriesController {
+
+	private final PlayerTimeSeries playerTimeSeries;
+
+	public TimeSeriesController(PlayerTimeSeries playerTimeSeries) {
+		this.playerTimeSeries = playerTimeSeries;
+	}
+
+	@GetMapping
+	public PlayerTimeSeries.Columns getSeries(@RequestParam(defaultValue = "0") int tier,
+											  @RequestParam(defaultValue = "0") long since) {
+		return playerTimeSeries.query(tier, since);
+	}
+
+	@GetMapping("/binary")
+	public ResponseEntity<byte[]> getSeriesBinary(@RequestParam(defaultValue = "0") int tier,
+												  @RequestParam(defaultValue = "0") long since) {
+		return ResponseEntity.ok()
+			.contentType(MediaType.APPLICATION_OCTET_STREAM)
+			.body(playerTimeSeries.queryBinary(tier, since));
+	}
+
+}
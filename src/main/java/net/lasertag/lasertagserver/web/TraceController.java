@@ -0,0 +1,27 @@
+package net.lasertag.lasertagserver.web;
+
+import net.lasertag.lasertagserver.telemetry.Tracer;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/traces")
+public class TraceController {
+
+	private final Tracer tracer;
+
+	public TraceController(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@GetMapping
+	public List<Tracer.TraceView> getRecentTraces(@RequestParam(defaultValue = "20") int limit,
+												  @RequestParam(required = false) String messageType) {
+		return tracer.getRecentTraces(Math.max(1, Math.min(limit, 200)), messageType);
+	}
+
+}
@@ -0,0 +1,65 @@
+const { createApp } = Vue;
+
+createApp({
+    data() {
+        return {
+            analytics: {
+                running: false,
+                startedAtMillis: 0,
+                endedAtMillis: 0,
+                players: [],
+                killMatrixIds: [],
+                killMatrix: [],
+                dispensers: []
+            },
+            eventSource: null
+        };
+    },
+
+    computed: {
+        sortedPlayers() {
+            return [...this.analytics.players].sort((a, b) => b.kills - a.kills || a.deaths - b.deaths);
+        }
+    },
+
+    methods: {
+        async fetchAnalytics() {
+            try {
+                const response = await fetch('/api/analytics');
+                if (response.ok) {
+                    this.analytics = await response.json();
+                }
+            } catch (error) {
+                console.error('Error fetching analytics:', error);
+            }
+        },
+
+        connectToEventStream() {
+            this.eventSource = new EventSource('/api/events');
+            this.eventSource.addEventListener('analytics', (event) => {
+                this.analytics = JSON.parse(event.data);
+            });
+        },
+
+        playerName(id) {
+            const player = this.analytics.players.find(p => p.id === id);
+            return player ? player.name : id;
+        },
+
+        formatDuration(millis) {
+            const seconds = Math.floor(millis / 1000);
+            return Math.floor(seconds / 60) + ':' + String(seconds % 60).padStart(2, '0');
+        }
+    },
+
+    mounted() {
+        this.fetchAnalytics();
+        this.connectToEventStream();
+    },
+
+    beforeUnmount() {
+        if (this.eventSource) {
+            this.eventSource.close();
+        }
+    }
+}).mount('#app');
@@ -19,11 +19,18 @@ createApp({
                 ammo: []
             },
 
+            // ids of the dispensers the server considers cooling down
+            coolingDispensers: {
+                health: [],
+                ammo: []
+            },
+
             settings: {
                 general: {
                     fragLimit: 10,
                     gameType: 'DM',
-                    timeLimitMinutes: 15
+                    timeLimitMinutes: 15,
+                    statsDelivery: 'UNICAST'
                 },
                 players: {},
                 dispensers: {
@@ -57,7 +64,16 @@ createApp({
             },
 
             presets: [],
-            selectedPreset: 'New...'
+            selectedPreset: 'New...',
+
+            replay: {
+                recordings: [],
+                selectedId: null,
+                frame: null,
+                playing: false,
+                speed: 1,
+                eventSource: null
+            }
         };
     },
 
@@ -116,7 +132,7 @@ createApp({
         },
         isTeamBased() {
             const gameType = this.settings.general.gameType;
-            return gameType === 'TEAM_DM' || gameType === 'CTF';
+            return gameType !== 'DM';
         },
         availableTeams() {
             if (this.isTeamBased) {
@@ -131,8 +147,13 @@ createApp({
             return [
                 { value: 'DM', label: 'DM' },
                 { value: 'TEAM_DM', label: 'TEAM_DM' },
-                { value: 'CTF', label: 'CTF' }
+                { value: 'CTF', label: 'CTF' },
+                { value: 'KING_OF_THE_HILL', label: 'King of the Hill' },
+                { value: 'DOMINATION', label: 'Domination' }
             ];
+        },
+        statsDeliveryOptions() {
+            return ['UNICAST', 'MULTICAST'];
         }
     },
 
@@ -158,7 +179,12 @@ createApp({
             this.eventSource = new EventSource('/api/events');
 
             this.eventSource.addEventListener('isPlaying', (event) => {
+                const wasPlaying = this.gameState.playing;
                 this.gameState.playing = JSON.parse(event.data);
+                if (wasPlaying && !this.gameState.playing) {
+                    // the recording of the match that just ended shows up in the list
+                    this.fetchReplays();
+                }
                 console.log('Got gameState.playing:', this.gameState.playing);
             });
 
@@ -197,6 +223,10 @@ createApp({
                 console.log('Got dispensers:', this.dispensers);
             });
 
+            this.eventSource.addEventListener('dispenserCooldowns', (event) => {
+                this.coolingDispensers = JSON.parse(event.data);
+            });
+
             this.eventSource.addEventListener('settings', (event) => {
                 const settings = JSON.parse(event.data);
                 if (settings.presetName) {
@@ -206,6 +236,16 @@ createApp({
                 console.log('Got settings:', this.settings);
             });
 
+            // bulk updates send players and settings together
+            this.eventSource.addEventListener('roster', (event) => {
+                const roster = JSON.parse(event.data);
+                this.players = roster.players;
+                if (roster.settings.presetName) {
+                    this.selectedPreset = roster.settings.presetName;
+                }
+                this.settings = roster.settings;
+            });
+
             this.eventSource.addEventListener('log', (event) => {
                 const logMessage = JSON.parse(event.data);
                 console.log('Got log:', logMessage);
@@ -331,6 +371,21 @@ createApp({
             }
         },
 
+        async updateStatsDelivery() {
+            try {
+                const response = await fetch(`/api/settings/stats-delivery?mode=${this.settings.general.statsDelivery}`, {
+                    method: 'PUT'
+                });
+
+                if (!response.ok) {
+                    throw new Error('Failed to update stats delivery');
+                }
+            } catch (error) {
+                console.error('Error updating stats delivery:', error);
+                alert('Failed to update stats delivery');
+            }
+        },
+
         formatTime(seconds) {
             const minutes = Math.floor(seconds / 60);
             const secs = seconds % 60;
@@ -455,18 +510,93 @@ createApp({
                 console.error('Error saving preset:', error);
                 alert('Failed to save preset');
             }
+        },
+
+        async fetchReplays() {
+            try {
+                const response = await fetch('/api/replays');
+                this.replay.recordings = await response.json();
+            } catch (error) {
+                console.error('Error fetching replays:', error);
+            }
+        },
+
+        selectReplay() {
+            this.pauseReplay();
+            this.seekReplay(0);
+        },
+
+        async seekReplay(offsetMillis) {
+            const wasPlaying = this.replay.playing;
+            this.pauseReplay();
+            try {
+                const response = await fetch(`/api/replays/${this.replay.selectedId}/frame?at=${offsetMillis}`);
+                if (!response.ok) {
+                    throw new Error('Failed to load replay frame');
+                }
+                this.replay.frame = await response.json();
+            } catch (error) {
+                console.error('Error seeking replay:', error);
+                return;
+            }
+            if (wasPlaying) {
+                this.playReplay();
+            }
+        },
+
+        playReplay() {
+            this.pauseReplay();
+            let from = this.replay.frame ? this.replay.frame.offsetMillis : 0;
+            if (this.replay.frame && from >= this.replay.frame.durationMillis) {
+                from = 0;
+            }
+            const source = new EventSource(`/api/replays/${this.replay.selectedId}/stream?from=${from}&speed=${this.replay.speed}`);
+            source.addEventListener('frame', (event) => {
+                this.replay.frame = JSON.parse(event.data);
+                if (this.replay.frame.offsetMillis >= this.replay.frame.durationMillis) {
+                    this.pauseReplay();
+                }
+            });
+            source.onerror = () => this.pauseReplay();
+            this.replay.eventSource = source;
+            this.replay.playing = true;
+        },
+
+        pauseReplay() {
+            if (this.replay.eventSource) {
+                this.replay.eventSource.close();
+                this.replay.eventSource = null;
+            }
+            this.replay.playing = false;
+        },
+
+        toggleReplay() {
+            if (this.replay.playing) {
+                this.pauseReplay();
+            } else {
+                this.playReplay();
+            }
+        },
+
+        formatReplayTime(millis) {
+            const totalSeconds = Math.floor(millis / 1000);
+            const minutes = Math.floor(totalSeconds / 60);
+            const seconds = totalSeconds % 60;
+            return `${minutes}:${seconds.toString().padStart(2, '0')}`;
         }
     },
 
     mounted() {
         this.connectSSE();
         this.fetchPresets();
+        this.fetchReplays();
     },
 
     beforeUnmount() {
         if (this.eventSource) {
             this.eventSource.close();
         }
+        this.pauseReplay();
     }
 }).mount('#app');
 
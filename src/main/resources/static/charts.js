@@ -0,0 +1,107 @@
+const { createApp } = Vue;
+
+// keeps at most this many points per series in the browser, like the server-side rings
+const MAX_POINTS = 720;
+
+createApp({
+    data() {
+        return {
+            tier: 0,
+            series: { intervalMillis: 1000, timestamps: [], players: [], teams: [] },
+            charts: [
+                { key: 'health', title: '❤️ Health' },
+                { key: 'score', title: '🏆 Player score' },
+                { key: 'teams', title: '🚩 Team score' }
+            ],
+            colors: ['#DC143C', '#1E90FF', '#32CD32', '#FFD700', '#FF00FF', '#00CED1'],
+            timer: null
+        };
+    },
+
+    methods: {
+        async reload() {
+            this.series = { intervalMillis: 1000, timestamps: [], players: [], teams: [] };
+            await this.poll();
+        },
+
+        async poll() {
+            const timestamps = this.series.timestamps;
+            const since = timestamps.length ? timestamps[timestamps.length - 1] : 0;
+            try {
+                const response = await fetch(`/api/timeseries?tier=${this.tier}&since=${since}`);
+                const update = await response.json();
+                // a new match clears the server rings, start over when time goes backwards
+                if (!timestamps.length || (update.timestamps.length && update.timestamps[0] < since)) {
+                    this.series = update;
+                } else {
+                    this.append(update);
+                }
+                this.draw();
+            } catch (error) {
+                console.error('Error fetching time series:', error);
+            }
+        },
+
+        append(update) {
+            const trim = (values, added) => values.concat(added).slice(-MAX_POINTS);
+            this.series.timestamps = trim(this.series.timestamps, update.timestamps);
+            update.players.forEach((player, index) => {
+                const current = this.series.players[index];
+                current.name = player.name;
+                current.health = trim(current.health, player.health);
+                current.score = trim(current.score, player.score);
+                current.online = trim(current.online, player.online);
+            });
+            update.teams.forEach((team, index) => {
+                this.series.teams[index].score = trim(this.series.teams[index].score, team.score);
+            });
+        },
+
+        draw() {
+            const online = this.series.players.filter(player => player.online.some(value => value));
+            this.drawChart('health', online.map(player => ({ values: player.health, color: this.colorOf(player.id) })));
+            this.drawChart('score', online.map(player => ({ values: player.score, color: this.colorOf(player.id) })));
+            this.drawChart('teams', this.series.teams
+                .filter(team => team.score.some(value => value))
+                .map(team => ({ values: team.score, color: this.colors[team.teamId % this.colors.length] })));
+        },
+
+        drawChart(key, lines) {
+            const canvas = this.$refs[key] && this.$refs[key][0];
+            if (!canvas) {
+                return;
+            }
+            const context = canvas.getContext('2d');
+            context.clearRect(0, 0, canvas.width, canvas.height);
+            const points = this.series.timestamps.length;
+            if (points < 2) {
+                return;
+            }
+            const max = Math.max(1, ...lines.map(line => Math.max(...line.values)));
+            lines.forEach(line => {
+                context.strokeStyle = line.color;
+                context.lineWidth = 2;
+                context.beginPath();
+                line.values.forEach((value, index) => {
+                    const x = index / (points - 1) * canvas.width;
+                    const y = canvas.height - 4 - value / max * (canvas.height - 8);
+                    index === 0 ? context.moveTo(x, y) : context.lineTo(x, y);
+                });
+                context.stroke();
+            });
+        },
+
+        colorOf(playerId) {
+            return this.colors[playerId % this.colors.length];
+        }
+    },
+
+    mounted() {
+        this.reload();
+        this.timer = setInterval(this.poll, 1000);
+    },
+
+    beforeUnmount() {
+        clearInterval(this.timer);
+    }
+}).mount('#app');
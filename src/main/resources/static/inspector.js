@@ -0,0 +1,63 @@
+const { createApp } = Vue;
+
+const MAX_PACKETS = 1000;
+
+createApp({
+    data() {
+        return {
+            packets: [],
+            actor: '',
+            messageType: '',
+            eventSource: null
+        };
+    },
+
+    methods: {
+        filterParams() {
+            const params = new URLSearchParams();
+            if (this.actor) {
+                params.set('actor', this.actor);
+            }
+            if (this.messageType) {
+                params.set('messageType', this.messageType);
+            }
+            return params;
+        },
+
+        async connect() {
+            if (this.eventSource) {
+                this.eventSource.close();
+            }
+            const params = this.filterParams();
+            try {
+                const response = await fetch('/api/inspector?' + params);
+                if (response.ok) {
+                    this.packets = (await response.json()).reverse();
+                }
+            } catch (error) {
+                console.error('Error fetching packets:', error);
+            }
+
+            this.eventSource = new EventSource('/api/inspector/stream?' + params);
+            this.eventSource.addEventListener('packets', (event) => {
+                const received = JSON.parse(event.data).reverse();
+                this.packets = received.concat(this.packets).slice(0, MAX_PACKETS);
+            });
+        },
+
+        formatTime(millis) {
+            const date = new Date(millis);
+            return date.toLocaleTimeString() + '.' + String(date.getMilliseconds()).padStart(3, '0');
+        }
+    },
+
+    mounted() {
+        this.connect();
+    },
+
+    beforeUnmount() {
+        if (this.eventSource) {
+            this.eventSource.close();
+        }
+    }
+}).mount('#app');
@@ -0,0 +1,53 @@
+const { createApp } = Vue;
+
+createApp({
+    data() {
+        return {
+            summary: {
+                packetsIn: {},
+                packetsOut: {},
+                decodeFailures: 0,
+                deadEmitters: 0,
+                histograms: {},
+                gauges: {}
+            },
+            timer: null
+        };
+    },
+
+    computed: {
+        packetTypes() {
+            const types = new Set([...Object.keys(this.summary.packetsIn), ...Object.keys(this.summary.packetsOut)]);
+            return [...types].sort();
+        }
+    },
+
+    methods: {
+        async fetchSummary() {
+            try {
+                const response = await fetch('/api/metrics/summary');
+                if (response.ok) {
+                    this.summary = await response.json();
+                }
+            } catch (error) {
+                console.error('Error fetching metrics:', error);
+            }
+        },
+
+        formatValue(name, value) {
+            if (name.endsWith('_nanos')) {
+                return (value / 1000).toFixed(1);
+            }
+            return value;
+        }
+    },
+
+    mounted() {
+        this.fetchSummary();
+        this.timer = setInterval(this.fetchSummary, 1000);
+    },
+
+    beforeUnmount() {
+        clearInterval(this.timer);
+    }
+}).mount('#app');
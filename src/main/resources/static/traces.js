@@ -0,0 +1,69 @@
+const { createApp } = Vue;
+
+createApp({
+    data() {
+        return {
+            traces: [],
+            messageType: '',
+            messageTypes: ['GOT_HIT', 'YOU_KILLED', 'GOT_HEALTH', 'GOT_AMMO', 'FLAG_TAKEN', 'FLAG_CAPTURED', 'RESPAWN',
+                'PLAYER_PING', 'HEALTH_DISPENSER_PING', 'AMMO_DISPENSER_PING'],
+            paused: false,
+            timer: null
+        };
+    },
+
+    methods: {
+        async fetchTraces() {
+            const params = new URLSearchParams({ limit: 20 });
+            if (this.messageType) {
+                params.set('messageType', this.messageType);
+            }
+            try {
+                const response = await fetch('/api/traces?' + params);
+                if (response.ok) {
+                    this.traces = await response.json();
+                }
+            } catch (error) {
+                console.error('Error fetching traces:', error);
+            }
+        },
+
+        spanLabel(span) {
+            const parts = [span.name];
+            if (span.messageType) {
+                parts.push(span.messageType);
+            }
+            if (span.actorId >= 0) {
+                parts.push('→ ' + span.actorId);
+            }
+            return parts.join(' ');
+        },
+
+        barStyle(trace, span) {
+            const total = Math.max(trace.totalMicros, 1);
+            return {
+                left: (span.offsetMicros / total * 100) + '%',
+                width: Math.max(span.durationMicros / total * 100, 0.5) + '%'
+            };
+        },
+
+        formatTime(millis) {
+            return new Date(millis).toLocaleTimeString();
+        },
+
+        refresh() {
+            if (!this.paused) {
+                this.fetchTraces();
+            }
+        }
+    },
+
+    mounted() {
+        this.fetchTraces();
+        this.timer = setInterval(this.refresh, 2000);
+    },
+
+    beforeUnmount() {
+        clearInterval(this.timer);
+    }
+}).mount('#app');
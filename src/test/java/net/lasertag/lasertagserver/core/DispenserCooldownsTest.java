@@ -0,0 +1,93 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.Actor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispenserCooldownsTest {
+
+	private static final long START = 1_000_000;
+
+	private final DispenserCooldowns cooldowns = new DispenserCooldowns(new ActorRegistry());
+
+	@Test
+	void readyDispenserIsNotRejected() {
+		assertNull(cooldowns.checkReady(Actor.Type.HEALTH, 1, START));
+	}
+
+	@Test
+	void timeoutIsRoundedDownToTheDispenserStep() {
+		cooldowns.startCooldown(Actor.Type.HEALTH, 1, 25, START);
+
+		var reason = cooldowns.checkReady(Actor.Type.HEALTH, 1, START + 19_999);
+		assertNotNull(reason);
+		assertTrue(reason.contains("cooling down for 1 s"), reason);
+		assertNull(cooldowns.checkReady(Actor.Type.HEALTH, 1, START + 20_000));
+	}
+
+	@Test
+	void timeoutBelowOneStepMeansNoCooldown() {
+		cooldowns.startCooldown(Actor.Type.AMMO, 0, DispenserCooldowns.TIMEOUT_STEP_SECONDS - 1, START);
+
+		assertNull(cooldowns.checkReady(Actor.Type.AMMO, 0, START));
+	}
+
+	@Test
+	void kindsAndIdsCoolDownSeparately() {
+		cooldowns.startCooldown(Actor.Type.HEALTH, 2, 30, START);
+
+		assertNotNull(cooldowns.checkReady(Actor.Type.HEALTH, 2, START + 1));
+		assertNull(cooldowns.checkReady(Actor.Type.AMMO, 2, START + 1));
+		assertNull(cooldowns.checkReady(Actor.Type.HEALTH, 3, START + 1));
+		assertEquals(List.of(2), cooldowns.getCooling(START + 1).get("health"));
+		assertEquals(List.of(), cooldowns.getCooling(START + 1).get("ammo"));
+	}
+
+	@Test
+	void expiryIsReportedOnce() {
+		cooldowns.startCooldown(Actor.Type.AMMO, 1, 10, START);
+
+		assertFalse(cooldowns.expire(START + 9_999));
+		assertTrue(cooldowns.expire(START + 10_000));
+		assertFalse(cooldowns.expire(START + 11_000));
+		assertTrue(cooldowns.getCooling(START + 11_000).get("ammo").isEmpty());
+	}
+
+	@Test
+	void statsCountUsesRejectionsAndTimeCoolingDown() {
+		cooldowns.reset(START);
+		cooldowns.startCooldown(Actor.Type.HEALTH, 0, 10, START);
+		cooldowns.checkReady(Actor.Type.HEALTH, 0, START + 1_000);
+		cooldowns.checkReady(Actor.Type.HEALTH, 0, START + 2_000);
+
+		// 10 s of 20 cooling down; a second cooldown adds the 5 s of it already passed
+		var stats = statsOf(cooldowns.getStats(START + 20_000), Actor.Type.HEALTH, 0);
+		assertEquals(1, stats.uses());
+		assertEquals(2, stats.rejectedUses());
+		assertEquals(0.5, stats.utilization(), 0.001);
+		cooldowns.startCooldown(Actor.Type.HEALTH, 0, 10, START + 15_000);
+		assertEquals(0.75, statsOf(cooldowns.getStats(START + 20_000), Actor.Type.HEALTH, 0).utilization(), 0.001);
+	}
+
+	@Test
+	void resetStartsEveryDispenserOver() {
+		cooldowns.startCooldown(Actor.Type.HEALTH, 0, 60, START);
+		cooldowns.checkReady(Actor.Type.HEALTH, 0, START + 1);
+
+		cooldowns.reset(START + 2);
+
+		assertNull(cooldowns.checkReady(Actor.Type.HEALTH, 0, START + 2));
+		var stats = statsOf(cooldowns.getStats(START + 10_000), Actor.Type.HEALTH, 0);
+		assertEquals(0, stats.uses());
+		assertEquals(0, stats.rejectedUses());
+		assertEquals(0.0, stats.utilization(), 0.0);
+	}
+
+	private static DispenserCooldowns.DispenserStats statsOf(List<DispenserCooldowns.DispenserStats> stats, Actor.Type type, int id) {
+		return stats.stream().filter(s -> s.type() == type && s.id() == id).findFirst().orElseThrow();
+	}
+
+}
@@ -0,0 +1,103 @@
+package net.lasertag.lasertagserver.core;
+
+import net.lasertag.lasertagserver.model.MessageType;
+import net.lasertag.lasertagserver.model.Messaging;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngressGuardTest {
+
+	private static final long START = TimeUnit.SECONDS.toNanos(1);
+
+	private final IngressGuard guard = new IngressGuard(500);
+
+	@Test
+	void pingsAreLimitedToTheirBurstAndRefill() {
+		var ping = new byte[] {MessageType.PLAYER_PING.id(), 3, 0, 1};
+		for (int i = 0; i < 5; i++) {
+			assertTrue(guard.admit(ping, ping.length, START), "ping " + i);
+		}
+		assertFalse(guard.admit(ping, ping.length, START));
+
+		// 5 per second
+		assertTrue(guard.admit(ping, ping.length, START + TimeUnit.MILLISECONDS.toNanos(200)));
+		assertFalse(guard.admit(ping, ping.length, START + TimeUnit.MILLISECONDS.toNanos(200)));
+	}
+
+	@Test
+	void actorsHaveTheirOwnBuckets() {
+		var first = new byte[] {MessageType.PLAYER_PING.id(), 1, 0, 1};
+		var second = new byte[] {MessageType.PLAYER_PING.id(), 2, 0, 1};
+		for (int i = 0; i < 5; i++) {
+			guard.admit(first, first.length, START);
+		}
+
+		assertFalse(guard.admit(first, first.length, START));
+		assertTrue(guard.admit(second, second.length, START));
+	}
+
+	@Test
+	void repeatsWithinTheWindowAreDropped() {
+		var hit = new byte[] {MessageType.GOT_HIT.id(), 2, 4, 80};
+
+		assertTrue(guard.admit(hit, hit.length, START));
+		assertFalse(guard.admit(hit, hit.length, START + TimeUnit.MILLISECONDS.toNanos(499)));
+		assertTrue(guard.admit(hit, hit.length, START + TimeUnit.MILLISECONDS.toNanos(500)));
+
+		var stats = guard.getStats();
+		assertEquals(1, stats.actors().size());
+		assertEquals("PLAYER-2", stats.actors().get(0).actor());
+		assertEquals(1, stats.actors().get(0).duplicates());
+	}
+
+	@Test
+	void differentEventsAreNotRepeats() {
+		assertTrue(guard.admit(new byte[] {MessageType.GOT_HIT.id(), 2, 4, 80}, 4, START));
+		assertTrue(guard.admit(new byte[] {MessageType.GOT_HIT.id(), 2, 4, 70}, 4, START));
+	}
+
+	@Test
+	void pingsAreNeverRepeats() {
+		var ping = new byte[] {MessageType.ZONE_PING.id(), 0, 0, 1};
+
+		assertTrue(guard.admit(ping, ping.length, START));
+		assertTrue(guard.admit(ping, ping.length, START));
+	}
+
+	@Test
+	void compactFramesCountForTheirActor() {
+		byte compactZoneState = (byte) (MessageType.ZONE_STATE.id() | Messaging.COMPACT_FLAG);
+		for (int health = 0; health < 10; health++) {
+			assertTrue(guard.admit(new byte[] {compactZoneState, 1, 0, (byte) health}, 4, START));
+		}
+
+		assertFalse(guard.admit(new byte[] {compactZoneState, 1, 0, 10}, 4, START));
+		var drops = guard.getStats().actors();
+		assertEquals(1, drops.size());
+		assertEquals("ZONE-1", drops.get(0).actor());
+		assertEquals(1, drops.get(0).rateLimited());
+	}
+
+	@Test
+	void compactFramesShareTheClassOfTheirType() {
+		byte compactPickup = (byte) (MessageType.GOT_HEALTH.id() | Messaging.COMPACT_FLAG);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(guard.admit(new byte[] {compactPickup, 4, (byte) i, 100}, 4, START));
+		}
+
+		assertFalse(guard.admit(new byte[] {MessageType.GOT_HEALTH.id(), 4, 9, 100}, 4, START));
+		var pickups = guard.getStats().classes().stream()
+			.filter(drops -> drops.ingressClass().equals(IngressGuard.IngressClass.PICKUP.name()))
+			.findFirst().orElseThrow();
+		assertEquals(1, pickups.rateLimited());
+	}
+
+	@Test
+	void packetsTooShortToClassifyAreLeftToTheDecoder() {
+		assertTrue(guard.admit(new byte[] {MessageType.GOT_HIT.id()}, 1, START));
+	}
+
+}
@@ -0,0 +1,165 @@
+package net.lasertag.lasertagserver.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the queue against a standby engine, so no device port is bound, with a UdpServer that reports itself serving.
+ */
+class MatchQueueTest {
+
+	@TempDir
+	Path presets;
+
+	private LasertagEngine engine;
+	private Game game;
+	private GameSettings gameSettings;
+	private MatchQueue queue;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		var config = new EngineConfig(presets, false, 100, 20, 500, 3000, true, 0);
+		ThreadFactory threads = Thread.ofPlatform().daemon().factory();
+		// the only daemon job is saving server-state.json to the working directory, which must stay untouched
+		engine = new LasertagEngine(config, task -> {}, threads, threads);
+		game = engine.getGame();
+		gameSettings = engine.getGameSettings();
+		var udpServer = new UdpServer(engine.getActorRegistry(), gameSettings, threads, engine.getMetrics(), engine.getTracer(),
+			engine.getPacketInspector(), config) {
+			// the queue only moves on after matches the devices were served
+			@Override
+			public boolean isServing() {
+				return true;
+			}
+		};
+		queue = new MatchQueue(game, gameSettings, engine.getPresetRepository(), udpServer, engine.getMetrics(), game.getScheduler());
+		engine.setMatchObservers(List.of(queue));
+
+		var base = gameSettings.getCurrent();
+		engine.getPresetRepository().save("alpha", base.withMatch(5, 10, GameType.DM));
+		engine.getPresetRepository().save("bravo", base.withMatch(7, 20, GameType.TEAM_DM));
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.close();
+	}
+
+	@Test
+	void invalidQueuesAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> queue.start(List.of(), 0));
+		assertThrows(IllegalArgumentException.class, () -> queue.start(List.of(entry("alpha")), -1));
+		assertThrows(IllegalArgumentException.class, () -> queue.start(List.of(entry("alpha")), MatchQueue.MAX_INTERMISSION_SECONDS + 1));
+		assertThrows(IllegalArgumentException.class, () -> queue.start(List.of(entry("alpha"), entry("missing")), 0));
+		var withGap = new ArrayList<MatchQueue.Entry>();
+		withGap.add(null);
+		assertThrows(IllegalArgumentException.class, () -> queue.start(withGap, 0));
+
+		assertEquals(MatchQueue.Phase.IDLE, queue.getStatus().phase());
+	}
+
+	@Test
+	void firstMatchStartsRightAwayWhenNoneIsPlaying() throws InterruptedException {
+		queue.start(List.of(new MatchQueue.Entry("alpha", GameType.CTF, null, 15, null)), 0);
+
+		var status = awaitStatus(s -> s.phase() == MatchQueue.Phase.PLAYING);
+		assertEquals(0, status.currentIndex());
+		assertTrue(game.isGamePlaying());
+		assertEquals("alpha", gameSettings.getCurrentPresetName());
+		assertEquals(GameType.CTF, gameSettings.getCurrent().getGameType());
+		assertEquals(15, gameSettings.getCurrent().getFragLimit());
+		assertEquals(5, gameSettings.getCurrent().getTimeLimitMinutes());
+	}
+
+	@Test
+	void queuedMatchesFollowTheOneBeingPlayed() throws InterruptedException {
+		game.eventConsoleStartGame(5, 10, GameType.DM);
+		queue.start(List.of(entry("alpha"), entry("bravo")), 0);
+
+		assertEquals(MatchQueue.Phase.PLAYING, queue.getStatus().phase());
+		assertEquals(-1, queue.getStatus().currentIndex());
+
+		game.eventConsoleEndGame();
+		assertEquals(MatchQueue.Phase.INTERMISSION, queue.getStatus().phase());
+		awaitStatus(s -> s.phase() == MatchQueue.Phase.PLAYING && s.currentIndex() == 0);
+		assertEquals("alpha", gameSettings.getCurrentPresetName());
+
+		game.eventConsoleEndGame();
+		awaitStatus(s -> s.phase() == MatchQueue.Phase.PLAYING && s.currentIndex() == 1);
+		assertTrue(game.isGamePlaying());
+		assertEquals(GameType.TEAM_DM, gameSettings.getCurrent().getGameType());
+		assertEquals(20, gameSettings.getCurrent().getFragLimit());
+
+		game.eventConsoleEndGame();
+		assertEquals(MatchQueue.Phase.IDLE, queue.getStatus().phase());
+		assertTrue(queue.getStatus().entries().isEmpty());
+	}
+
+	@Test
+	void intermissionReportsTheNextStart() {
+		game.eventConsoleStartGame(5, 10, GameType.DM);
+		queue.start(List.of(entry("bravo")), 30);
+		long before = System.currentTimeMillis();
+
+		game.eventConsoleEndGame();
+
+		var status = queue.getStatus();
+		assertEquals(MatchQueue.Phase.INTERMISSION, status.phase());
+		assertTrue(status.nextStartMillis() >= before + 30_000, "next start " + (status.nextStartMillis() - before) + " ms away");
+	}
+
+	@Test
+	void startingByHandDuringTheIntermissionStopsTheQueue() {
+		game.eventConsoleStartGame(5, 10, GameType.DM);
+		queue.start(List.of(entry("alpha"), entry("bravo")), 30);
+		game.eventConsoleEndGame();
+
+		game.eventConsoleStartGame(5, 10, GameType.DM);
+
+		var status = queue.getStatus();
+		assertEquals(MatchQueue.Phase.IDLE, status.phase());
+		assertEquals(0, status.nextStartMillis());
+		assertTrue(game.isGamePlaying());
+	}
+
+	@Test
+	void stoppingLeavesTheMatchPlaying() throws InterruptedException {
+		queue.start(List.of(entry("alpha"), entry("bravo")), 0);
+		awaitStatus(s -> s.phase() == MatchQueue.Phase.PLAYING);
+
+		queue.stop();
+
+		assertEquals(MatchQueue.Phase.IDLE, queue.getStatus().phase());
+		assertTrue(game.isGamePlaying());
+		game.eventConsoleEndGame();
+		assertEquals(MatchQueue.Phase.IDLE, queue.getStatus().phase());
+	}
+
+	private static MatchQueue.Entry entry(String presetName) {
+		return new MatchQueue.Entry(presetName, null, null, null, null);
+	}
+
+	// the presync waits for GAME_OVER to go out, so this takes a little over a second after a match ends
+	private MatchQueue.Status awaitStatus(Predicate<MatchQueue.Status> condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		var status = queue.getStatus();
+		while (!condition.test(status)) {
+			assertTrue(System.currentTimeMillis() < deadline, "queue stuck at " + status);
+			Thread.sleep(10);
+			status = queue.getStatus();
+		}
+		return status;
+	}
+
+}
@@ -0,0 +1,123 @@
+package net.lasertag.lasertagserver.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactCodecTest {
+
+	@Test
+	void zigzagRoundTrips() {
+		for (int value : new int[] {0, 1, -1, 63, -64, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+			assertEquals(value, CompactCodec.unzigzag(CompactCodec.zigzag(value)));
+		}
+		assertEquals(1, CompactCodec.zigzag(-1));
+		assertEquals(2, CompactCodec.zigzag(1));
+	}
+
+	@Test
+	void eventIsTheFlaggedTypeAndSignedVarints() {
+		var bytes = CompactCodec.event(MessageType.YOU_KILLED.id(), 1, -1, 300);
+
+		// 300 zigzags to 600, two varint bytes
+		assertArrayEquals(new byte[] {(byte) (MessageType.YOU_KILLED.id() | Messaging.COMPACT_FLAG), 2, 1, (byte) 0xD8, 4}, bytes);
+		var in = new CompactCodec.Reader(bytes, bytes.length);
+		assertEquals(1, in.signed());
+		assertEquals(-1, in.signed());
+		assertEquals(300, in.signed());
+		assertFalse(in.hasMore());
+	}
+
+	@Test
+	void valuesAreNotTruncatedToAByte() {
+		var bytes = CompactCodec.event(MessageType.GAME_TIMER.id(), Integer.MAX_VALUE, Integer.MIN_VALUE);
+		var in = new CompactCodec.Reader(bytes, bytes.length);
+
+		assertEquals(Integer.MAX_VALUE, in.signed());
+		assertEquals(Integer.MIN_VALUE, in.signed());
+	}
+
+	@Test
+	void readerRejectsTruncatedAndOverlongVarints() {
+		byte type = (byte) (MessageType.GOT_HIT.id() | Messaging.COMPACT_FLAG);
+
+		assertThrows(IllegalArgumentException.class, () -> new CompactCodec.Reader(new byte[] {type, (byte) 0x80}, 2).unsigned());
+		var overlong = new byte[] {type, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1};
+		assertThrows(IllegalArgumentException.class, () -> new CompactCodec.Reader(overlong, overlong.length).unsigned());
+	}
+
+	@Test
+	void compactClientEventDecodes() {
+		// actor id unsigned, extra value and health zigzagged
+		var bytes = new byte[] {(byte) (MessageType.GOT_HIT.id() | Messaging.COMPACT_FLAG), 3, 3, (byte) 0xC8, 1};
+
+		var message = new Messaging.MessageFromClient(bytes, bytes.length);
+
+		assertTrue(message.isCompact());
+		assertEquals(MessageType.GOT_HIT, message.getType());
+		assertEquals(3, message.getActorId());
+		assertEquals(-2, message.getExtraValue());
+		assertEquals(100, message.getHealth());
+		assertEquals(Messaging.PROTOCOL_COMPACT, message.getProtocolVersion());
+	}
+
+	@Test
+	void compactPingsAndTrailingBytesAreRejected() {
+		var ping = new byte[] {(byte) (MessageType.PLAYER_PING.id() | Messaging.COMPACT_FLAG), 1, 0, 0};
+		var trailing = new byte[] {(byte) (MessageType.GOT_HIT.id() | Messaging.COMPACT_FLAG), 1, 0, 0, 0};
+
+		assertThrows(IllegalArgumentException.class, () -> new Messaging.MessageFromClient(ping, ping.length));
+		assertThrows(IllegalArgumentException.class, () -> new Messaging.MessageFromClient(trailing, trailing.length));
+	}
+
+	@Test
+	void statsCarryPerPlayerStateOnly() {
+		var player = new Player(2, "Ann", 100);
+		player.setHealth(-10);
+		player.setScore(7);
+		player.setAssignedRespawnPoint(-1);
+		player.setFlagCarrier(true);
+
+		var bytes = CompactCodec.stats(List.of(player), true, 2, 600, 5);
+
+		assertEquals((byte) (MessageType.FULL_STATS.id() | Messaging.COMPACT_FLAG), bytes[0]);
+		var in = new CompactCodec.Reader(bytes, bytes.length);
+		assertEquals(1, in.unsigned());
+		assertEquals(2, in.unsigned());
+		assertEquals(600, in.unsigned());
+		assertEquals(5, in.unsigned());
+		assertEquals(1, in.unsigned());
+		assertEquals(2, in.unsigned());
+		assertEquals(-10, in.signed());
+		assertEquals(7, in.signed());
+		assertEquals(-1, in.signed());
+		assertEquals(1, in.unsigned());
+		assertFalse(in.hasMore());
+		assertFalse(Messaging.carriesNames(bytes));
+	}
+
+	@Test
+	void rosterCarriesUtf8Names() {
+		var player = new Player(4, "Zoë", 100);
+		player.setTeamId(Messaging.TEAM_BLUE);
+
+		var bytes = CompactCodec.roster(List.of(player), 9);
+
+		var in = new CompactCodec.Reader(bytes, bytes.length);
+		assertEquals(9, in.unsigned());
+		assertEquals(1, in.unsigned());
+		assertEquals(4, in.unsigned());
+		assertEquals(Messaging.TEAM_BLUE, in.unsigned());
+		assertEquals(player.getDamage(), in.unsigned());
+		assertEquals(player.getBulletsMax(), in.unsigned());
+		byte[] name = "Zoë".getBytes(StandardCharsets.UTF_8);
+		assertEquals(name.length, in.unsigned());
+		assertArrayEquals(name, Arrays.copyOfRange(bytes, bytes.length - name.length, bytes.length));
+		assertTrue(Messaging.carriesNames(bytes));
+	}
+
+}
@@ -0,0 +1,59 @@
+package net.lasertag.lasertagserver.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessagingTest {
+
+	@Test
+	void batchToBytesFramesEveryEventWithItsLength() {
+		var batch = Messaging.batchToBytes(List.of(new byte[] {5, 1, 2, 3}, new byte[] {9}));
+
+		assertArrayEquals(new byte[] {MessageType.BATCH.id(), 2, 4, 0, 5, 1, 2, 3, 1, 0, 9}, batch);
+	}
+
+	@Test
+	void batchLengthsAreLittleEndian() {
+		var event = new byte[300];
+		event[0] = MessageType.FULL_STATS.id();
+
+		var batch = Messaging.batchToBytes(List.of(event));
+
+		assertEquals(Messaging.BATCH_HEADER_SIZE + Messaging.batchEntrySize(event), batch.length);
+		assertEquals(300 & 0xFF, batch[2] & 0xFF);
+		assertEquals(300 >> 8, batch[3] & 0xFF);
+	}
+
+	@Test
+	void forEachBatchedTypeVisitsEventsInOrder() {
+		var batch = Messaging.batchToBytes(List.of(new byte[] {MessageType.YOU_KILLED.id(), 1},
+			new byte[] {MessageType.GAME_OVER.id()}, new byte[] {MessageType.FULL_STATS.id(), 0, 0}));
+		List<Integer> types = new ArrayList<>();
+
+		Messaging.forEachBatchedType(batch, types::add);
+
+		assertEquals(List.of((int) MessageType.YOU_KILLED.id(), (int) MessageType.GAME_OVER.id(), (int) MessageType.FULL_STATS.id()), types);
+	}
+
+	@Test
+	void fitsInBatchStopsAtTheDatagramSize() {
+		int entryHeader = Messaging.batchEntrySize(new byte[0]);
+		var fillsDatagram = new byte[Messaging.MAX_DATAGRAM_SIZE - Messaging.BATCH_HEADER_SIZE - entryHeader];
+
+		assertTrue(Messaging.fitsInBatch(Messaging.BATCH_HEADER_SIZE, 0, fillsDatagram));
+		assertFalse(Messaging.fitsInBatch(Messaging.BATCH_HEADER_SIZE + 1, 1, fillsDatagram));
+	}
+
+	@Test
+	void fitsInBatchStopsAtTheCountByte() {
+		var event = new byte[] {MessageType.GAME_OVER.id()};
+
+		assertTrue(Messaging.fitsInBatch(Messaging.BATCH_HEADER_SIZE, 254, event));
+		assertFalse(Messaging.fitsInBatch(Messaging.BATCH_HEADER_SIZE, 255, event));
+	}
+
+}
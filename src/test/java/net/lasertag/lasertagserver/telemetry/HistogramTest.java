@@ -0,0 +1,92 @@
+package net.lasertag.lasertagserver.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+	private final Histogram histogram = new Histogram();
+
+	@Test
+	void emptyHistogramReportsZero() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtQuantile(0.99));
+		assertEquals(0.0, histogram.getMean(), 0.0);
+	}
+
+	@Test
+	void smallValuesAreExact() {
+		for (int value = 0; value < 16; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(7, histogram.getValueAtQuantile(0.5));
+		assertEquals(15, histogram.getValueAtQuantile(1.0));
+		assertEquals(120, histogram.getSum());
+		assertEquals(7.5, histogram.getMean(), 0.0);
+	}
+
+	@Test
+	void quantilesAreWithinTheBucketWidth() {
+		for (long value = 17; value < 1L << 40; value = value * 3 + 1) {
+			var single = new Histogram();
+			single.record(value);
+			// a larger max, so the bucket's upper bound is reported rather than the max
+			single.record(1L << 41);
+
+			long reported = single.getValueAtQuantile(0.5);
+			assertTrue(reported >= value && reported - value <= value / 16, value + " reported as " + reported);
+		}
+	}
+
+	@Test
+	void quantilesNeverExceedTheMax() {
+		histogram.record(1000);
+
+		assertEquals(1000, histogram.getValueAtQuantile(1.0));
+		assertEquals(1000, histogram.getMax());
+	}
+
+	@Test
+	void negativeValuesCountAsZero() {
+		histogram.record(-5);
+
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getSum());
+		assertEquals(0, histogram.getValueAtQuantile(1.0));
+	}
+
+	@Test
+	void hugeValuesLandInTheLastBucket() {
+		histogram.record(10);
+		histogram.record(Long.MAX_VALUE / 2);
+
+		assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+		assertEquals(10, histogram.getValueAtQuantile(0.5));
+		assertTrue(histogram.getValueAtQuantile(1.0) >= 1L << 40);
+	}
+
+	@Test
+	void concurrentRecordsAreAllCounted() throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(Thread.ofPlatform().start(() -> {
+				for (int i = 1; i <= 100_000; i++) {
+					histogram.record(i);
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(400_000, histogram.getCount());
+		assertEquals(4 * 100_000L * 100_001 / 2, histogram.getSum());
+		assertEquals(100_000, histogram.getMax());
+	}
+
+}
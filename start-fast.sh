@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Fast start for the field: AOT-processed beans, an AppCDS archive and lazily created web beans.
+# Build once with: ./mvnw -Pfast-start package
+# The first run trains the class data archive (the server must not be running, the training run binds the UDP port).
+
+JAR=lasertag-server-0.0.1-SNAPSHOT.jar
+APP_DIR=target/fast-start
+OPTS="-Dspring.aot.enabled=true -Dspring.profiles.active=fast-start"
+
+if [ ! -f "$APP_DIR/$JAR" ] || [ "target/$JAR" -nt "$APP_DIR/$JAR" ]; then
+    rm -rf "$APP_DIR"
+    java -Djarmode=tools -jar "target/$JAR" extract --destination "$APP_DIR" || exit 1
+fi
+
+# run from here like start.sh, so presets, saved state, replays and history are the ones next to this script;
+# target/fast-start only holds the extracted jar and the archive and is rebuilt with the jar
+if [ ! -f "$APP_DIR/application.jsa" ]; then
+    echo "Training the AppCDS archive..."
+    java -XX:ArchiveClassesAtExit="$APP_DIR/application.jsa" -Dspring.context.exit=onRefresh $OPTS -jar "$APP_DIR/$JAR" || exit 1
+fi
+
+java -XX:SharedArchiveFile="$APP_DIR/application.jsa" -Xshare:auto $OPTS -jar "$APP_DIR/$JAR"